@@ -0,0 +1,86 @@
+package com.chuwa.itemservice.cache;
+
+import com.chuwa.itemservice.model.Item;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A bounded, in-process read-through cache of items keyed by ID.
+ * Entries are evicted by size and by age; writes made through this instance
+ * refresh or invalidate the entry, so local reads never see stale stock.
+ * Hit, miss and eviction counts are published as {@code cache.*} metrics.
+ */
+@Component
+public class ItemCache {
+
+    public static final String NAME = "items";
+
+    private final boolean enabled;
+    private final Cache<String, Item> cache;
+
+    public ItemCache(@Value("${item.cache.enabled:true}") boolean enabled,
+                     @Value("${item.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${item.cache.expire-after-write:30s}") Duration expireAfterWrite,
+                     MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    /**
+     * Returns the cached item, or loads it with {@code loader} and caches it if present.
+     * Missing items are not cached.
+     */
+    public Optional<Item> get(String id, Function<String, Optional<Item>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Returns the cached item without loading it on a miss.
+     */
+    public Optional<Item> getIfPresent(String id) {
+        return enabled ? Optional.ofNullable(cache.getIfPresent(id)) : Optional.empty();
+    }
+
+    /**
+     * Replaces the cached copy of the item with the given, freshly written one.
+     */
+    public void put(Item item) {
+        if (enabled && item.getId() != null) {
+            cache.put(item.getId(), item);
+        }
+    }
+
+    public void evict(String id) {
+        cache.invalidate(id);
+    }
+
+    public void evictAll(Collection<String> ids) {
+        cache.invalidateAll(ids);
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,84 @@
+package com.chuwa.itemservice.config;
+
+import com.chuwa.itemservice.model.Item;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the indexes behind the catalog search API when the service starts,
+ * and converts prices that were stored as strings into Decimal128 so that
+ * price ranges and sorting work numerically. Items without a lastModified
+ * time get one. All steps are idempotent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemIndexInitializer {
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            migrateStringPrices();
+            backfillLastModified();
+            createIndexes();
+        } catch (RuntimeException e) {
+            // Searches still work without the indexes, only slower, so don't fail startup
+            log.warn("Could not prepare item indexes", e);
+        }
+    }
+
+    private void migrateStringPrices() {
+        // Sent as raw documents: the mapper would turn the $type operand into a Decimal128 like the field
+        long converted = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Item.class)).updateMany(
+                new Document("unitPrice", new Document("$type", "string")),
+                List.of(new Document("$set", new Document("unitPrice", new Document("$toDecimal", "$unitPrice")))))
+                .getModifiedCount();
+        if (converted > 0) {
+            log.info("Converted {} item prices to Decimal128", converted);
+        }
+    }
+
+    private void backfillLastModified() {
+        // Items written before lastModified existed are treated as modified now,
+        // so the next incremental export still picks them up once
+        long stamped = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("lastModified").exists(false)),
+                new Update().currentDate("lastModified"),
+                Item.class).getModifiedCount();
+        if (stamped > 0) {
+            log.info("Set lastModified on {} items", stamped);
+        }
+    }
+
+    private void createIndexes() {
+        IndexOperations indexes = mongoTemplate.indexOps(Item.class);
+        // Name prefix search and name-ordered keyset pagination
+        indexes.ensureIndex(new Index().on("itemName", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("itemName_id"));
+        // Price range filters and price-ordered keyset pagination
+        indexes.ensureIndex(new Index().on("unitPrice", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("unitPrice_id"));
+        // Exact lookup by UPC; sparse because not every item has one
+        indexes.ensureIndex(new Index().on("upc", Sort.Direction.ASC).unique().sparse().named("upc"));
+        // Incremental exports by modification time
+        indexes.ensureIndex(new Index().on("lastModified", Sort.Direction.ASC).named("lastModified"));
+        // Word search on item names
+        indexes.ensureIndex(TextIndexDefinition.builder().onField("itemName").named("itemName_text").build());
+    }
+}
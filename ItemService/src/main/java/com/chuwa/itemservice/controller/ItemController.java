@@ -1,12 +1,36 @@
 package com.chuwa.itemservice.controller;
 
+import com.chuwa.itemservice.dto.BatchInventoryRequest;
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import com.chuwa.itemservice.dto.ImportSummary;
+import com.chuwa.itemservice.dto.ItemPage;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.dto.ItemSearchCursor;
+import com.chuwa.itemservice.dto.ItemSummary;
 import com.chuwa.itemservice.dto.UpdateInventoryRequest;
+import com.chuwa.itemservice.limit.ConcurrencyLimited;
 import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.service.ItemExportService;
+import com.chuwa.itemservice.service.ItemImportService;
 import com.chuwa.itemservice.service.ItemService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/items")
@@ -14,33 +38,213 @@ import org.springframework.web.bind.annotation.*;
 public class ItemController {
 
     private final ItemService itemService;
+    private final ItemImportService itemImportService;
+    private final ItemExportService itemExportService;
 
     /**
-     * Handles the HTTP POST request to create a new item.
+     * Handles the HTTP POST request to create a new item. An item sent with the
+     * ID of an existing one replaces it.
      * @param item The item data sent in the request body.
-     * @return The created item with an HTTP 201 Created status.
+     * @return The created item with an HTTP 201 Created status, or 409 Conflict
+     *         if another write to the same ID got in first.
      */
     @PostMapping
     public ResponseEntity<Item> createItem(@RequestBody Item item) {
-        Item createdItem = itemService.createItem(item);
-        return new ResponseEntity<>(createdItem, HttpStatus.CREATED);
+        try {
+            Item createdItem = itemService.createItem(item);
+            return new ResponseEntity<>(createdItem, HttpStatus.CREATED);
+        } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Handles the HTTP POST request to load a catalog from newline-delimited JSON,
+     * one item per line. Items are matched by UPC: new ones are inserted, existing
+     * ones get their name, price and pictures updated.
+     * @param body The request body, read as a stream.
+     * @return Counts of inserted, updated and rejected rows with an HTTP 200 OK status.
+     */
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<ImportSummary> importNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(itemImportService.importItems(body, ItemImportService.Format.NDJSON));
+    }
+
+    /**
+     * Same as the NDJSON import, for CSV with a header row naming the columns
+     * (itemName, unitPrice, upc, availableUnits, pictureUrls separated by '|').
+     * @param body The request body, read as a stream.
+     * @return Counts of inserted, updated and rejected rows with an HTTP 200 OK status.
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<ImportSummary> importCsv(InputStream body) throws IOException {
+        return ResponseEntity.ok(itemImportService.importItems(body, ItemImportService.Format.CSV));
+    }
+
+    /**
+     * Handles the HTTP GET request to export the catalog as newline-delimited JSON.
+     * Items are streamed from a database cursor while the response is written, and
+     * the body is gzip-compressed when the client accepts it.
+     * @param modifiedSince Optional ISO-8601 time; only items written since then are exported.
+     * @param acceptEncoding The Accept-Encoding request header.
+     * @return The streamed items with an HTTP 200 OK status.
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportItems(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant modifiedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                // Closing frees the deflater's native memory even when the export fails; the container closes out
+                try (GZIPOutputStream compressed = new GZIPOutputStream(StreamUtils.nonClosing(out), 8192)) {
+                    itemExportService.exportItems(modifiedSince, compressed);
+                }
+            } else {
+                itemExportService.exportItems(modifiedSince, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
 
     /**
      * Handles the HTTP GET request to retrieve an item by its ID.
+     * The response carries an ETag; a request whose If-None-Match header still
+     * matches it is answered with 304 Not Modified and no body.
      * @param id The ID of the item, passed as a path variable.
-     * @return The found item with an HTTP 200 OK status, or a 404 Not Found status.
+     * @param ifNoneMatch The If-None-Match request header, if any.
+     * @return The found item with an HTTP 200 OK status, 304 Not Modified, or a 404 Not Found status.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Item> getItemById(@PathVariable String id) {
+    public ResponseEntity<Item> getItemById(@PathVariable String id,
+                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Revalidation only needs the version, not the whole document
+        if (ifNoneMatch != null) {
+            Optional<String> current = itemService.getItemVersion(id).map(ItemController::entityTag);
+            if (current.isPresent() && matches(ifNoneMatch, current.get())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(current.get()).build();
+            }
+        }
         return itemService.getItemById(id)
-                .map(ResponseEntity::ok) // If item is present, return 200 OK
+                .map(item -> ResponseEntity.ok().eTag(entityTag(item)).body(item)) // If item is present, return 200 OK
                 .orElse(ResponseEntity.notFound().build()); // Otherwise, return 404 Not Found
     }
 
+    /**
+     * Handles the HTTP GET request to look up several items at once, e.g. {@code /api/items?ids=a,b,c}.
+     * @param ids The IDs of the items, as a comma-separated query parameter.
+     * @return The price and stock of every item that exists, with an HTTP 200 OK status.
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<ItemSummary>> getItemSummaries(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(itemService.getItemSummaries(ids));
+    }
+
+    /**
+     * Handles the HTTP POST request to look up several items at once.
+     * Same as the GET variant, for carts too large to fit in a query string.
+     * @param ids The IDs of the items, sent in the request body.
+     * @return The price and stock of every item that exists, with an HTTP 200 OK status.
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<List<ItemSummary>> lookupItemSummaries(@RequestBody List<String> ids) {
+        return ResponseEntity.ok(itemService.getItemSummaries(ids));
+    }
+
+    /**
+     * Handles the HTTP GET request to browse and search the catalog.
+     * Results are ordered by name or price and paged with a keyset cursor:
+     * pass the {@code next} token of a page as {@code after} to get the following page.
+     * @param prefix Only items whose name starts with this text.
+     * @param q Only items whose name contains these words.
+     * @param upc Only the item with this Universal Product Code.
+     * @param minPrice Only items costing at least this much.
+     * @param maxPrice Only items costing at most this much.
+     * @param sort Sort by NAME (default) or PRICE.
+     * @param after The cursor returned with the previous page.
+     * @param limit The page size, at most 100.
+     * @return A page of items with an HTTP 200 OK status, or 400 Bad Request for an invalid cursor.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<ItemPage> searchItems(@RequestParam(required = false) String prefix,
+                                                @RequestParam(required = false) String q,
+                                                @RequestParam(required = false) String upc,
+                                                @RequestParam(required = false) BigDecimal minPrice,
+                                                @RequestParam(required = false) BigDecimal maxPrice,
+                                                @RequestParam(defaultValue = "NAME") ItemSearchCriteria.SortField sort,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(defaultValue = "20") int limit) {
+        ItemSearchCriteria criteria;
+        try {
+            ItemSearchCursor cursor = after == null ? null : ItemSearchCursor.decode(after);
+            criteria = new ItemSearchCriteria(prefix, q, upc, minPrice, maxPrice, sort, cursor);
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor token, or one that does not fit the sort order
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(itemService.searchItems(criteria, limit));
+    }
+
+    /**
+     * Handles the HTTP PUT request to change the stock of one item.
+     * @param id The ID of the item.
+     * @param request The number of units to add (negative to remove).
+     * @return The updated item with an HTTP 200 OK status, 404 Not Found for an unknown item,
+     *         409 Conflict if the stock would go below zero,
+     *         or 503 Service Unavailable when too many inventory updates are in progress.
+     */
     @PutMapping("/{id}/inventory")
+    @ConcurrencyLimited("inventory")
     public ResponseEntity<Item> updateInventory(@PathVariable String id, @RequestBody UpdateInventoryRequest request) {
-        Item updatedItem = itemService.updateInventory(id, request.quantityChange());
-        return ResponseEntity.ok(updatedItem);
+        try {
+            Item updatedItem = itemService.updateInventory(id, request.quantityChange());
+            return ResponseEntity.ok(updatedItem);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Handles the HTTP PUT request to change the stock of several items at once.
+     * The changes are applied all-or-nothing in a single database round trip.
+     * A request sent again with the same {@code Idempotency-Key} is answered with
+     * the first response and does not change stock again.
+     * @param idempotencyKey Optional key identifying the change across retries.
+     * @param request The list of (itemId, quantityChange) pairs.
+     * @return The per-item results with 200 OK if every change was applied, 409 Conflict otherwise
+     *         or while a request with the same key is in progress,
+     *         or 503 Service Unavailable when too many inventory updates are in progress.
+     */
+    @PutMapping("/inventory")
+    @ConcurrencyLimited("inventory")
+    public ResponseEntity<BatchInventoryResponse> updateInventoryBatch(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody BatchInventoryRequest request) {
+        BatchInventoryResponse response = idempotencyKey == null
+                ? itemService.updateInventoryBatch(request.adjustments())
+                : itemService.updateInventoryBatch(idempotencyKey, request.adjustments());
+        return new ResponseEntity<>(response, response.applied() ? HttpStatus.OK : HttpStatus.CONFLICT);
+    }
+
+    // Hot SKUs keep their document version while their stock changes in memory, so the stock is part of the tag
+    private static String entityTag(Item item) {
+        long version = item.getVersion() == null ? 0 : item.getVersion();
+        return "\"" + version + "-" + item.getAvailableUnits() + "\"";
+    }
+
+    // If-None-Match uses weak comparison, so a W/ prefix on either side is ignored
+    private static boolean matches(String ifNoneMatch, String entityTag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.chuwa.itemservice.deadline;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Starts the {@link RequestDeadline} of requests that carry the
+ * {@value RequestDeadline#HEADER} header. A request that arrives with no
+ * time left is answered with 504 Gateway Timeout straight away; requests
+ * without the header, or with a malformed one, have no deadline.
+ */
+@Component
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Long remaining = remainingMillis(request.getHeader(RequestDeadline.HEADER));
+        if (remaining == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (remaining <= 0) {
+            RequestDeadline.exceeded("inbound");
+            response.setStatus(HttpStatus.GATEWAY_TIMEOUT.value());
+            return;
+        }
+        RequestDeadline.start(Duration.ofMillis(remaining));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private static Long remainingMillis(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
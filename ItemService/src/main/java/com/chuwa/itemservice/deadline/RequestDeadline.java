@@ -0,0 +1,63 @@
+package com.chuwa.itemservice.deadline;
+
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * The point in time by which the request handled on the current thread must
+ * be answered, taken by {@link DeadlineFilter} from the {@value #HEADER}
+ * header that callers such as OrderService send. Work checks it before
+ * starting and gives up once the caller no longer waits for the answer.
+ * Requests dropped this way are counted in {@code item.deadline.exceeded},
+ * tagged with the stage that noticed it.
+ */
+public final class RequestDeadline {
+
+    // Time left in milliseconds, relative so that clock skew between services does not matter
+    public static final String HEADER = "X-Request-Timeout";
+    static final String METRIC = "item.deadline.exceeded";
+
+    // System.nanoTime() at which the deadline passes
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void start(Duration timeout) {
+        DEADLINE.set(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * @return The time left, zero or negative once the deadline passed, or empty if the request has no deadline.
+     */
+    public static Optional<Duration> remaining() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? Optional.empty() : Optional.of(Duration.ofNanos(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Throws if the deadline of the current request has passed.
+     * @param stage The work that is about to start, for the metric.
+     */
+    public static void check(String stage) {
+        Long deadline = DEADLINE.get();
+        if (deadline != null && deadline - System.nanoTime() <= 0) {
+            throw exceeded(stage);
+        }
+    }
+
+    /**
+     * Counts a request dropped at the given stage.
+     * @return The exception to throw; it is answered with 504 Gateway Timeout.
+     */
+    public static DeadlineExceededException exceeded(String stage) {
+        Metrics.counter(METRIC, "stage", stage).increment();
+        return new DeadlineExceededException("Request deadline passed before " + stage);
+    }
+}
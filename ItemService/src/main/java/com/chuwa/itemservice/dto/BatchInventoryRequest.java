@@ -0,0 +1,7 @@
+package com.chuwa.itemservice.dto;
+
+import java.util.List;
+
+// A list of inventory changes that must be applied all-or-nothing.
+public record BatchInventoryRequest(List<InventoryAdjustment> adjustments) {
+}
@@ -0,0 +1,7 @@
+package com.chuwa.itemservice.dto;
+
+import java.util.List;
+
+// The overall result of a batch inventory update, with one result per item.
+public record BatchInventoryResponse(boolean applied, List<InventoryAdjustmentResult> results) {
+}
@@ -0,0 +1,7 @@
+package com.chuwa.itemservice.dto;
+
+import java.util.List;
+
+// Counts of what a catalog import did, plus the first few reasons rows were rejected.
+public record ImportSummary(long inserted, long updated, long rejected, List<String> errors) {
+}
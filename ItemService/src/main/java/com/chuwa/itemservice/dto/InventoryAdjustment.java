@@ -0,0 +1,5 @@
+package com.chuwa.itemservice.dto;
+
+// One entry of a batch inventory update: the item and the quantity to add or remove.
+public record InventoryAdjustment(String itemId, int quantityChange) {
+}
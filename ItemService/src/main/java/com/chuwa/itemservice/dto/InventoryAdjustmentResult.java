@@ -0,0 +1,13 @@
+package com.chuwa.itemservice.dto;
+
+// The outcome of a single entry in a batch inventory update.
+public record InventoryAdjustmentResult(String itemId, int quantityChange, Outcome outcome) {
+
+    public enum Outcome {
+        APPLIED,            // The change is part of a batch that was fully applied
+        NOT_FOUND,          // No item exists with this ID
+        INSUFFICIENT_STOCK, // The change would have taken the stock below zero
+        ROLLED_BACK,        // The change was applied, then reverted because another entry failed
+        SKIPPED             // The change was never attempted because an earlier entry failed
+    }
+}
@@ -0,0 +1,9 @@
+package com.chuwa.itemservice.dto;
+
+import com.chuwa.itemservice.model.Item;
+
+import java.util.List;
+
+// One page of search results; next is null on the last page.
+public record ItemPage(List<Item> items, String next) {
+}
@@ -0,0 +1,39 @@
+package com.chuwa.itemservice.dto;
+
+import java.math.BigDecimal;
+
+// Filters and position for a catalog search. Null fields are not applied.
+public record ItemSearchCriteria(String namePrefix,
+                                 String text,
+                                 String upc,
+                                 BigDecimal minPrice,
+                                 BigDecimal maxPrice,
+                                 SortField sort,
+                                 ItemSearchCursor after) {
+
+    public ItemSearchCriteria {
+        // A cursor taken from a search sorted by name cannot continue one sorted by price
+        if (sort == SortField.PRICE && after != null && after.value() != null) {
+            try {
+                new BigDecimal(after.value());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid price in search cursor: " + after.value(), e);
+            }
+        }
+    }
+
+    public enum SortField {
+        NAME("itemName"),
+        PRICE("unitPrice");
+
+        private final String property;
+
+        SortField(String property) {
+            this.property = property;
+        }
+
+        public String property() {
+            return property;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chuwa.itemservice.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// The sort value and ID of the last item of a page. Encoded as an opaque token
+// for clients, it lets the next page start right after that item (keyset pagination).
+// The value is null when the last item has no name or price; such items sort first.
+public record ItemSearchCursor(String value, String id) {
+
+    private static final char SEPARATOR = '\n';
+    // Put in front of a value, so a null value (nothing) differs from any text, "null" included
+    private static final char VALUE = '=';
+
+    public String encode() {
+        String head = value == null ? "" : VALUE + value;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((head + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ItemSearchCursor decode(String token) {
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = decoded.lastIndexOf(SEPARATOR);
+        if (separator < 0 || (separator > 0 && decoded.charAt(0) != VALUE)) {
+            throw new IllegalArgumentException("Invalid search cursor: " + token);
+        }
+        String value = separator == 0 ? null : decoded.substring(1, separator);
+        return new ItemSearchCursor(value, decoded.substring(separator + 1));
+    }
+}
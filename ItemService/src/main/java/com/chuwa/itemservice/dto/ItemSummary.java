@@ -0,0 +1,7 @@
+package com.chuwa.itemservice.dto;
+
+import java.math.BigDecimal;
+
+// A compact view of an item holding only what is needed to price and reserve it.
+public record ItemSummary(String id, BigDecimal unitPrice, int availableUnits) {
+}
@@ -0,0 +1,236 @@
+package com.chuwa.itemservice.inventory;
+
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the stock of designated hot SKUs in memory so that flash-sale
+ * reservations do not serialize on a single MongoDB document.
+ * <p>
+ * Each reservation is a compare-and-set on the SKU's counter (so stock can
+ * never go negative), followed by a group-committed append to a local
+ * write-ahead log, which also sums the deltas of each segment. A scheduled
+ * commit rolls the segment and writes its aggregate per SKU back to MongoDB in
+ * one bulk update. On startup any log segments left by a crash are replayed
+ * before the counters are loaded.
+ * <p>
+ * Every commit stamps the documents with its segment number, which makes
+ * replaying a segment that already reached MongoDB a no-op. Segment numbers
+ * continue from the highest one stamped on the hot SKUs, so they keep
+ * increasing whatever the clock does. A segment that some item neither
+ * received now nor before is logged as an error and set aside as a
+ * {@code .rejected} file for reconciliation.
+ * <p>
+ * The in-memory counter is the source of truth for a hot SKU, so each hot SKU
+ * must be owned by exactly one ItemService instance. The mode is off unless
+ * {@code item.hot-sku.enabled} is set.
+ */
+@Slf4j
+@Component
+public class HotSkuLedger {
+
+    private final ItemRepository itemRepository;
+    private final boolean enabled;
+    private final Set<String> hotIds;
+    private final Path walDirectory;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Deque<InventoryWriteAheadLog.Segment> failedCommits = new ArrayDeque<>();
+    private InventoryWriteAheadLog wal;
+
+    public HotSkuLedger(ItemRepository itemRepository,
+                        @Value("${item.hot-sku.enabled:false}") boolean enabled,
+                        @Value("${item.hot-sku.ids:}") Set<String> hotIds,
+                        @Value("${item.hot-sku.wal-directory:inventory-wal}") String walDirectory) {
+        this.itemRepository = itemRepository;
+        this.enabled = enabled;
+        this.hotIds = Set.copyOf(hotIds);
+        this.walDirectory = Path.of(walDirectory);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        // 1. Replay segments that were not committed before the last shutdown
+        long lastSegment = 0;
+        for (long segment : InventoryWriteAheadLog.segments(walDirectory)) {
+            Map<String, Integer> deltas = InventoryWriteAheadLog.read(walDirectory, segment);
+            Set<String> missed = itemRepository.applyLedgerDeltas(segment, deltas);
+            if (missed.isEmpty()) {
+                InventoryWriteAheadLog.delete(walDirectory, segment);
+                log.info("Replayed inventory log segment {} ({} items)", segment, deltas.size());
+            } else {
+                reject(segment, missed);
+            }
+            lastSegment = segment;
+        }
+
+        // 2. Load the now up-to-date stock of every hot SKU
+        for (Item item : itemRepository.findAllById(hotIds)) {
+            counters.put(item.getId(), new Counter(item));
+        }
+
+        // 3. Continue the segment sequence past anything already stamped on the documents
+        lastSegment = Math.max(lastSegment, itemRepository.findLastLedgerSegment(hotIds));
+        wal = new InventoryWriteAheadLog(walDirectory, lastSegment + 1);
+        log.info("Hot SKU ledger tracking {} items", counters.size());
+    }
+
+    public boolean isHot(String id) {
+        return counters.containsKey(id);
+    }
+
+    /**
+     * Returns the hot SKU with its current in-memory stock.
+     */
+    public Optional<Item> getItem(String id) {
+        Counter counter = counters.get(id);
+        return counter == null ? Optional.empty() : Optional.of(counter.snapshot(counter.available.get()));
+    }
+
+    public int getAvailableUnits(String id) {
+        return counters.get(id).available.get();
+    }
+
+    /**
+     * Adds {@code quantityChange} to the stock of a hot SKU.
+     * @return The item with its new stock level.
+     * @throws InsufficientStockException if the change would take the stock below zero.
+     */
+    public Item adjust(String id, int quantityChange) {
+        return tryAdjust(id, quantityChange)
+                .orElseThrow(() -> new InsufficientStockException("Insufficient stock for item: " + id));
+    }
+
+    /**
+     * Same as {@link #adjust}, but returns empty instead of throwing when the
+     * stock is insufficient.
+     */
+    public Optional<Item> tryAdjust(String id, int quantityChange) {
+        Counter counter = counters.get(id);
+        // 1. Reserve in memory; the CAS loop never lets the stock go negative
+        int available;
+        do {
+            available = counter.available.get();
+            if (available + quantityChange < 0) {
+                return Optional.empty();
+            }
+        } while (!counter.available.compareAndSet(available, available + quantityChange));
+
+        // 2. Make the change durable before acknowledging it
+        try {
+            wal.append(id, quantityChange);
+        } catch (IOException e) {
+            counter.available.addAndGet(-quantityChange);
+            throw new UncheckedIOException("Failed to log inventory change for item: " + id, e);
+        }
+        return Optional.of(counter.snapshot(available + quantityChange));
+    }
+
+    /**
+     * Group-commits the deltas accumulated since the last run to MongoDB.
+     */
+    @Scheduled(fixedDelayString = "${item.hot-sku.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        // 1. Retry earlier commits first, so every item receives its segments in order
+        while (!failedCommits.isEmpty()) {
+            if (!commit(failedCommits.peek())) {
+                return;
+            }
+            failedCommits.poll();
+        }
+
+        // 2. Swap out the log segment together with the deltas it contains
+        if (!wal.isDirty()) {
+            return;
+        }
+        InventoryWriteAheadLog.Segment segment;
+        try {
+            segment = wal.roll();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll inventory log", e);
+        }
+
+        // 3. Write the aggregated deltas while reservations go on in the next segment
+        if (!commit(segment)) {
+            failedCommits.add(segment);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        wal.close();
+    }
+
+    private boolean commit(InventoryWriteAheadLog.Segment segment) {
+        try {
+            Set<String> missed = itemRepository.applyLedgerDeltas(segment.number(), segment.deltas());
+            if (missed.isEmpty()) {
+                wal.delete(segment.number());
+            } else {
+                reject(segment.number(), missed);
+            }
+            return true;
+        } catch (RuntimeException | IOException e) {
+            log.warn("Group commit of inventory log segment {} failed, will retry", segment.number(), e);
+            return false;
+        }
+    }
+
+    // Retrying cannot help when a document is gone or already past the segment, so keep the segment for a person to look at
+    private void reject(long segment, Set<String> missed) throws IOException {
+        log.error("Inventory log segment {} did not reach items {}: their documents are missing or already past it; "
+                + "set aside as {}.rejected in {} for reconciliation", segment, missed, segment, walDirectory);
+        InventoryWriteAheadLog.reject(walDirectory, segment);
+    }
+
+    private static final class Counter {
+
+        private final Item template;
+        private final AtomicInteger available;
+
+        private Counter(Item template) {
+            this.template = template;
+            this.available = new AtomicInteger(template.getAvailableUnits());
+        }
+
+        private Item snapshot(int availableUnits) {
+            Item item = new Item();
+            item.setId(template.getId());
+            item.setItemName(template.getItemName());
+            item.setUnitPrice(template.getUnitPrice());
+            item.setPictureUrls(template.getPictureUrls());
+            item.setUpc(template.getUpc());
+            item.setAvailableUnits(availableUnits);
+            item.setLastModified(template.getLastModified());
+            item.setVersion(template.getVersion());
+            return item;
+        }
+    }
+}
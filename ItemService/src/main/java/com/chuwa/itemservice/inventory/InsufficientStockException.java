@@ -0,0 +1,13 @@
+package com.chuwa.itemservice.inventory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// The change would take the item's stock below zero; a business outcome, not a server failure
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InsufficientStockException extends IllegalStateException {
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.chuwa.itemservice.inventory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Another request with the same Idempotency-Key is still being applied; the caller may retry
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InventoryRequestInProgressException extends IllegalStateException {
+
+    public InventoryRequestInProgressException(String message) {
+        super(message);
+    }
+}
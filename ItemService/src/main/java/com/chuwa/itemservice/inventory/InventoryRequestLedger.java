@@ -0,0 +1,105 @@
+package com.chuwa.itemservice.inventory;
+
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import com.chuwa.itemservice.model.InventoryRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Applies a batch inventory update at most once per {@code Idempotency-Key}.
+ * The key is claimed by inserting its document into {@code inventory_requests}
+ * before the batch runs, and the response is stored on it afterwards; the
+ * same key sent again gets that response without changing stock a second
+ * time. A batch that was rejected or threw gives the key back, so it can be
+ * retried. Keys expire after {@code item.inventory.idempotency-ttl}.
+ */
+@Slf4j
+@Component
+public class InventoryRequestLedger {
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration ttl;
+
+    public InventoryRequestLedger(MongoTemplate mongoTemplate,
+                                  @Value("${item.inventory.idempotency-ttl:24h}") Duration ttl) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttl = ttl;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndex() {
+        try {
+            mongoTemplate.indexOps(InventoryRequest.class).ensureIndex(
+                    new Index().on("createdAt", Sort.Direction.ASC).expire(ttl).named("createdAt_ttl"));
+        } catch (RuntimeException e) {
+            // Keys are still honoured without the index, they just never expire
+            log.warn("Could not create the inventory request TTL index", e);
+        }
+    }
+
+    /**
+     * @param key The caller's idempotency key.
+     * @param apply Applies the batch; called only by the request that claims the key.
+     * @return The response of the first request with this key that was applied.
+     * @throws InventoryRequestInProgressException if another request holds the key.
+     */
+    public BatchInventoryResponse execute(String key, Supplier<BatchInventoryResponse> apply) {
+        // 1. Claim the key, or answer with the stored response of the request that applied it
+        InventoryRequest request = new InventoryRequest();
+        request.setKey(key);
+        request.setCreatedAt(Instant.now());
+        try {
+            mongoTemplate.insert(request);
+        } catch (DuplicateKeyException e) {
+            InventoryRequest existing = mongoTemplate.findById(key, InventoryRequest.class);
+            if (existing != null && existing.getResponse() != null) {
+                return existing.getResponse();
+            }
+            throw new InventoryRequestInProgressException("Inventory request " + key + " is still in progress");
+        }
+
+        // 2. Apply the batch; nothing changed if it threw or was rejected, so the key is given back
+        BatchInventoryResponse response;
+        try {
+            response = apply.get();
+        } catch (RuntimeException e) {
+            release(key);
+            throw e;
+        }
+        if (!response.applied()) {
+            release(key);
+            return response;
+        }
+
+        // 3. Record the response for repeats of the key
+        request.setResponse(response);
+        try {
+            mongoTemplate.save(request);
+        } catch (RuntimeException e) {
+            // The stock did change; repeats get 409 until the claim expires rather than a second change
+            log.error("Inventory request {} was applied but its response could not be recorded", key, e);
+        }
+        return response;
+    }
+
+    private void release(String key) {
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(key)), InventoryRequest.class);
+        } catch (RuntimeException e) {
+            log.warn("Could not give back inventory request {}, it frees up when it expires", key, e);
+        }
+    }
+}
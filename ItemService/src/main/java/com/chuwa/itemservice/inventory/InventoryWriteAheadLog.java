@@ -0,0 +1,238 @@
+package com.chuwa.itemservice.inventory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * An append-only log of stock deltas, split into segment files numbered by a
+ * sequence that only moves forward. Each record is
+ * {@code [short idLength][id bytes][int delta]}.
+ * <p>
+ * Appends are group-committed: callers queue their records on a lock-free
+ * queue, and whichever caller gets the write lock writes everything queued so
+ * far with one channel write, so the others usually find their record already
+ * written. Records are written straight to the file channel so they survive a
+ * process crash; the segment is forced to disk when it is rolled over. The log
+ * also sums the deltas of the open segment, which are handed over with it.
+ */
+class InventoryWriteAheadLog implements Closeable {
+
+    private static final String SUFFIX = ".wal";
+    private static final String REJECTED_SUFFIX = ".rejected";
+
+    private final Path directory;
+    private final Queue<Record> queued = new ConcurrentLinkedQueue<>();
+    private final Object writeLock = new Object();
+    // Guarded by writeLock
+    private long segment;
+    private FileChannel channel;
+    private Map<String, Integer> deltas;
+    private boolean dirty;
+    private IOException broken;
+
+    InventoryWriteAheadLog(Path directory, long firstSegment) throws IOException {
+        this.directory = directory;
+        this.segment = firstSegment;
+        Files.createDirectories(directory);
+        open();
+    }
+
+    /**
+     * Lists the segment numbers found in the directory, oldest first.
+     */
+    static List<Long> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Reads a segment and sums its deltas per item. A record cut short by a
+     * crash is ignored, since the reservation it belonged to never completed.
+     */
+    static Map<String, Integer> read(Path directory, long segment) throws IOException {
+        Map<String, Integer> deltas = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file(directory, segment))))) {
+            while (true) {
+                byte[] id = new byte[in.readShort()];
+                in.readFully(id);
+                deltas.merge(new String(id, StandardCharsets.UTF_8), in.readInt(), Integer::sum);
+            }
+        } catch (EOFException e) {
+            return deltas;
+        }
+    }
+
+    static void delete(Path directory, long segment) throws IOException {
+        Files.deleteIfExists(file(directory, segment));
+    }
+
+    /**
+     * Sets a segment aside so it is no longer replayed, keeping it for manual
+     * reconciliation.
+     */
+    static void reject(Path directory, long segment) throws IOException {
+        Path file = file(directory, segment);
+        if (Files.exists(file)) {
+            Files.move(file, directory.resolve(segment + REJECTED_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Appends a record and returns once it is written, possibly by another caller.
+     */
+    void append(String itemId, int delta) throws IOException {
+        Record record = new Record(itemId, delta);
+        queued.add(record);
+        synchronized (writeLock) {
+            if (!record.done) {
+                writeQueued();
+            }
+        }
+        if (record.failure != null) {
+            throw record.failure;
+        }
+    }
+
+    boolean isDirty() {
+        synchronized (writeLock) {
+            return dirty;
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and starts the next one.
+     * @return The segment that was closed, with the summed deltas of its records.
+     */
+    Segment roll() throws IOException {
+        synchronized (writeLock) {
+            Segment closed = new Segment(segment, deltas);
+            closed.deltas().values().removeIf(delta -> delta == 0);
+            channel.force(false);
+            channel.close();
+            segment++;
+            open();
+            return closed;
+        }
+    }
+
+    void delete(long segment) throws IOException {
+        delete(directory, segment);
+    }
+
+    void reject(long segment) throws IOException {
+        reject(directory, segment);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    // Called with writeLock held: writes every queued record with a single channel write
+    private void writeQueued() {
+        List<Record> batch = new ArrayList<>();
+        int size = 0;
+        for (Record record = queued.poll(); record != null; record = queued.poll()) {
+            batch.add(record);
+            size += Short.BYTES + record.id.length + Integer.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Record record : batch) {
+            buffer.putShort((short) record.id.length).put(record.id).putInt(record.delta);
+        }
+        buffer.flip();
+
+        IOException failure = broken;
+        if (failure == null) {
+            long start = -1;
+            try {
+                start = channel.position();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                for (Record record : batch) {
+                    deltas.merge(record.itemId, record.delta, Integer::sum);
+                }
+                dirty = true;
+            } catch (IOException e) {
+                failure = e;
+                discardFrom(start, e);
+            }
+        }
+        for (Record record : batch) {
+            record.failure = failure;
+            record.done = true;
+        }
+    }
+
+    // The failed records are rolled back by their callers, so none of their bytes may stay in the segment
+    private void discardFrom(long start, IOException failure) {
+        try {
+            if (start < 0) {
+                throw failure;
+            }
+            channel.truncate(start);
+        } catch (IOException e) {
+            broken = new IOException("Inventory log is unusable after a failed write", failure);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file(directory, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        deltas = new HashMap<>();
+        dirty = false;
+    }
+
+    private static Path file(Path directory, long segment) {
+        return directory.resolve(segment + SUFFIX);
+    }
+
+    record Segment(long number, Map<String, Integer> deltas) {
+    }
+
+    private static final class Record {
+
+        private final String itemId;
+        private final byte[] id;
+        private final int delta;
+        // Set with writeLock held; the caller reads them after taking the lock itself
+        private boolean done;
+        private IOException failure;
+
+        private Record(String itemId, int delta) {
+            this.itemId = itemId;
+            this.id = itemId.getBytes(StandardCharsets.UTF_8);
+            this.delta = delta;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.chuwa.itemservice.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sheds load on endpoints marked {@link ConcurrencyLimited}: a request that
+ * finds its limiter full is answered at once with 503 Service Unavailable and
+ * a {@code Retry-After} header instead of queueing behind slow ones.
+ * <p>
+ * Each limiter is configured with {@code concurrency-limit.<name>.initial},
+ * {@code .min}, {@code .max}, {@code .latency-threshold}, {@code .backoff-ratio}
+ * and {@code .retry-after}, and publishes {@code concurrency.limit},
+ * {@code concurrency.in-flight} and {@code concurrency.rejected}, tagged with
+ * {@code limiter=<name>}.
+ * <p>
+ * Only server errors and slow responses lower the limit. Client errors such
+ * as 409 for insufficient stock are normal business outcomes; counting them
+ * would shed healthy traffic exactly when a sale drives the load up.
+ */
+@Component
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    private static final String STARTED = ConcurrencyLimitInterceptor.class.getName() + ".started";
+    private static final String LIMITER = ConcurrencyLimitInterceptor.class.getName() + ".limiter";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitInterceptor(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        ConcurrencyLimited annotation = method.getMethodAnnotation(ConcurrencyLimited.class);
+        if (annotation == null) {
+            return true;
+        }
+        Limiter limiter = limiters.computeIfAbsent(annotation.value(), this::newLimiter);
+        if (!limiter.delegate.tryAcquire()) {
+            limiter.rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limiter.retryAfterSeconds));
+            return false;
+        }
+        request.setAttribute(LIMITER, limiter);
+        request.setAttribute(STARTED, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(LIMITER) instanceof Limiter limiter) {
+            long latency = System.nanoTime() - (Long) request.getAttribute(STARTED);
+            // An exception that reaches this point was not mapped to a status and ends as a 500
+            limiter.delegate.release(latency, ex != null || response.getStatus() >= 500);
+        }
+    }
+
+    AdaptiveConcurrencyLimiter limiter(String name) {
+        return limiters.computeIfAbsent(name, this::newLimiter).delegate;
+    }
+
+    private Limiter newLimiter(String name) {
+        String prefix = "concurrency-limit." + name + ".";
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                environment.getProperty(prefix + "initial", Integer.class, 20),
+                environment.getProperty(prefix + "min", Integer.class, 4),
+                environment.getProperty(prefix + "max", Integer.class, 200),
+                duration(prefix + "latency-threshold", Duration.ofMillis(500)),
+                environment.getProperty(prefix + "backoff-ratio", Double.class, 0.9));
+        Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::limit)
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Gauge.builder("concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::inFlight)
+                .tag("limiter", name)
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("concurrency.rejected")
+                .tag("limiter", name)
+                .register(meterRegistry);
+        long retryAfter = Math.max(1, duration(prefix + "retry-after", Duration.ofSeconds(1)).toSeconds());
+        return new Limiter(limiter, rejected, retryAfter);
+    }
+
+    // Parsed like @Value durations ("500ms", "PT1S"); the environment alone has no String to Duration converter
+    private Duration duration(String key, Duration defaultValue) {
+        String value = environment.getProperty(key);
+        return value == null ? defaultValue : DurationStyle.detectAndParse(value);
+    }
+
+    private record Limiter(AdaptiveConcurrencyLimiter delegate, Counter rejected, long retryAfterSeconds) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.chuwa.itemservice.limit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a controller endpoint behind the {@link AdaptiveConcurrencyLimiter}
+ * of the given name; endpoints with the same name share one limit. Limits are
+ * tuned with {@code concurrency-limit.<name>.*} properties.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConcurrencyLimited {
+
+    String value();
+}
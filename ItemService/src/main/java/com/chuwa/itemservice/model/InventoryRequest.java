@@ -0,0 +1,20 @@
+package com.chuwa.itemservice.model;
+
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// A batch inventory update sent with an Idempotency-Key; removed by a TTL index on createdAt
+@Data
+@Document(collection = "inventory_requests")
+public class InventoryRequest {
+
+    @Id
+    private String key; // The caller's Idempotency-Key
+
+    private BatchInventoryResponse response; // Null while the batch is being applied
+    private Instant createdAt;
+}
@@ -2,8 +2,12 @@ package com.chuwa.itemservice.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 
 @Data
@@ -14,8 +18,12 @@ public class Item {
     private String id; // MongoDB uses String IDs by default
 
     private String itemName;
+    @Field(targetType = FieldType.DECIMAL128) // Stored as a number so it can be range-queried and sorted
     private BigDecimal unitPrice;
     private List<String> pictureUrls;
     private String upc; // Universal Product Code
     private int availableUnits; // For inventory management
+    private Instant lastModified; // Set on every write, used for incremental exports
+    @Version
+    private Long version; // Incremented on every write, exposed to clients as part of the ETag
 }
\ No newline at end of file
@@ -2,7 +2,13 @@ package com.chuwa.itemservice.repository;
 
 import com.chuwa.itemservice.model.Item;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
-public interface ItemRepository extends MongoRepository<Item, String> {
+import java.util.Optional;
 
-}
\ No newline at end of file
+public interface ItemRepository extends MongoRepository<Item, String>, ItemRepositoryCustom {
+
+    // Loads only what an ETag is built from, so revalidation skips the rest of the document
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'version': 1, 'availableUnits': 1 }")
+    Optional<Item> findVersionById(String id);
+}
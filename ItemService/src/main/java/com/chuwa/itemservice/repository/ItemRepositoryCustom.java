@@ -0,0 +1,93 @@
+package com.chuwa.itemservice.repository;
+
+import com.chuwa.itemservice.dto.ImportSummary;
+import com.chuwa.itemservice.dto.InventoryAdjustment;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.model.Item;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Operations on items that are executed as single server-side Mongo updates
+ * instead of a read-modify-write cycle in Java.
+ */
+public interface ItemRepositoryCustom {
+
+    /**
+     * Atomically adds {@code quantityChange} to the item's available units.
+     * The update only matches when the resulting stock would not be negative.
+     * @param id The ID of the item.
+     * @param quantityChange The number of units to add (negative to remove).
+     * @return The updated item, or empty if the item does not exist or has insufficient stock.
+     */
+    Optional<Item> adjustAvailableUnits(String id, int quantityChange);
+
+    /**
+     * Applies several stock changes with one ordered bulk write inside a
+     * multi-document transaction. Missing items are found up front, and if any
+     * change would take its stock below zero the transaction is aborted, so
+     * readers never see a batch partly applied.
+     * @param adjustments The changes to apply, at most one per item.
+     * @return One result per adjustment, in the same order.
+     */
+    List<InventoryAdjustmentResult> adjustAvailableUnitsInBulk(List<InventoryAdjustment> adjustments);
+
+    /**
+     * Loads several items with a single {@code $in} query, fetching only
+     * their price and stock.
+     * @param ids The IDs of the items.
+     * @return The items that exist, with all other fields left empty.
+     */
+    List<Item> findPriceAndStockByIds(Collection<String> ids);
+
+    /**
+     * Adds the stock deltas of one hot SKU ledger segment to the items in a single
+     * bulk write. Each item remembers the last segment applied to it, so applying
+     * the same segment twice (e.g. when replaying the log after a crash) has no effect.
+     * @param segment The number of the write-ahead log segment.
+     * @param deltas The summed stock change per item ID.
+     * @return The IDs of items that have not received the segment, now or before,
+     *         because their document is missing or already carries a later one.
+     */
+    Set<String> applyLedgerDeltas(long segment, Map<String, Integer> deltas);
+
+    /**
+     * @param ids The IDs of the hot SKUs.
+     * @return The highest ledger segment applied to any of the items, or 0 if none was.
+     */
+    long findLastLedgerSegment(Collection<String> ids);
+
+    /**
+     * Finds items matching the criteria, ordered by the sort field and then by ID,
+     * starting right after the criteria's cursor. Every combination is served by
+     * one of the indexes created by {@code ItemIndexInitializer}.
+     * @param criteria The filters, sort order and cursor.
+     * @param limit The maximum number of items to return.
+     * @return The matching items in sort order.
+     */
+    List<Item> search(ItemSearchCriteria criteria, int limit);
+
+    /**
+     * Inserts or updates items by UPC with one unordered bulk write. New items get
+     * all fields; existing items get their catalog fields replaced but keep their
+     * stock, which only changes through inventory updates.
+     * @param items The items to write, each with a UPC.
+     * @return How many items were inserted, updated or rejected by the database.
+     */
+    ImportSummary upsertByUpc(List<Item> items);
+
+    /**
+     * Streams items from a server-side cursor. The stream must be closed to
+     * release the cursor.
+     * @param modifiedSince Only return items written at or after this time, or null for all items.
+     * @return A lazily fetched stream of items.
+     */
+    Stream<Item> streamItems(Instant modifiedSince);
+}
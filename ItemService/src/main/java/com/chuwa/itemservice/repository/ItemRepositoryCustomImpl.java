@@ -0,0 +1,266 @@
+package com.chuwa.itemservice.repository;
+
+import com.chuwa.itemservice.deadline.RequestDeadline;
+import com.chuwa.itemservice.dto.ImportSummary;
+import com.chuwa.itemservice.dto.InventoryAdjustment;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult.Outcome;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.dto.ItemSearchCursor;
+import com.chuwa.itemservice.model.Item;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ItemRepositoryCustomImpl implements ItemRepositoryCustom {
+
+    private static final String LEDGER_SEGMENT = "ledgerSegment";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String VERSION = "version";
+    private static final int EXPORT_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionTemplate inventoryTransactions;
+
+    public ItemRepositoryCustomImpl(MongoTemplate mongoTemplate, MongoTransactionManager transactionManager) {
+        this.mongoTemplate = mongoTemplate;
+        this.inventoryTransactions = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public Optional<Item> adjustAvailableUnits(String id, int quantityChange) {
+        // Only match the document if the change keeps the stock at or above zero,
+        // so concurrent adjustments can never oversell.
+        Query query = stockCondition(id, quantityChange);
+        Update update = new Update().inc("availableUnits", quantityChange).currentDate(LAST_MODIFIED).inc(VERSION, 1);
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Item.class));
+    }
+
+    @Override
+    public List<InventoryAdjustmentResult> adjustAvailableUnitsInBulk(List<InventoryAdjustment> adjustments) {
+        List<String> ids = adjustments.stream().map(InventoryAdjustment::itemId).toList();
+
+        // 1. Every item must exist; otherwise nothing is written at all
+        Query existing = Query.query(Criteria.where("id").in(ids));
+        if (mongoTemplate.count(existing, Item.class) < ids.size()) {
+            Set<String> found = currentStock(ids).keySet();
+            return results(adjustments, a -> found.contains(a.itemId()) ? Outcome.SKIPPED : Outcome.NOT_FOUND);
+        }
+
+        // 2. One ordered bulk of conditional updates inside a transaction, committed only if every condition held
+        Boolean applied = inventoryTransactions.execute(status -> {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Item.class);
+            for (InventoryAdjustment adjustment : adjustments) {
+                bulk.updateOne(stockCondition(adjustment.itemId(), adjustment.quantityChange()),
+                        new Update().inc("availableUnits", adjustment.quantityChange()).currentDate(LAST_MODIFIED).inc(VERSION, 1));
+            }
+            if (bulk.execute().getMatchedCount() == adjustments.size()) {
+                return true;
+            }
+            status.setRollbackOnly();
+            return false;
+        });
+        if (Boolean.TRUE.equals(applied)) {
+            return results(adjustments, a -> Outcome.APPLIED);
+        }
+
+        // 3. The transaction was aborted; find the items whose stock was too low
+        Map<String, Integer> stock = currentStock(ids);
+        return results(adjustments, a -> {
+            Integer units = stock.get(a.itemId());
+            if (units == null) {
+                return Outcome.NOT_FOUND;
+            }
+            return units + a.quantityChange() < 0 ? Outcome.INSUFFICIENT_STOCK : Outcome.ROLLED_BACK;
+        });
+    }
+
+    @Override
+    public List<Item> findPriceAndStockByIds(Collection<String> ids) {
+        Query query = Query.query(Criteria.where("id").in(ids));
+        query.fields().include("unitPrice", "availableUnits");
+        // The server stops the query once the caller has given up on it
+        RequestDeadline.check("lookup");
+        RequestDeadline.remaining().ifPresent(query::maxTime);
+        try {
+            return mongoTemplate.find(query, Item.class);
+        } catch (DataAccessException e) {
+            if (e.getCause() instanceof MongoExecutionTimeoutException) {
+                throw RequestDeadline.exceeded("lookup");
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Set<String> applyLedgerDeltas(long segment, Map<String, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return Set.of();
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Item.class);
+        deltas.forEach((id, delta) -> bulk.updateOne(
+                Query.query(Criteria.where("id").is(id).orOperator(
+                        Criteria.where(LEDGER_SEGMENT).lt(segment),
+                        Criteria.where(LEDGER_SEGMENT).exists(false))),
+                new Update().inc("availableUnits", delta).set(LEDGER_SEGMENT, segment).currentDate(LAST_MODIFIED).inc(VERSION, 1)));
+        if (bulk.execute().getMatchedCount() == deltas.size()) {
+            return Set.of();
+        }
+
+        // An item stamped with exactly this segment got it, now or in an earlier attempt; the others did not
+        Query received = Query.query(Criteria.where("id").in(deltas.keySet()).and(LEDGER_SEGMENT).is(segment));
+        received.fields().include("id");
+        Set<String> missed = new HashSet<>(deltas.keySet());
+        mongoTemplate.find(received, Item.class).forEach(item -> missed.remove(item.getId()));
+        return missed;
+    }
+
+    @Override
+    public long findLastLedgerSegment(Collection<String> ids) {
+        Query query = Query.query(Criteria.where("id").in(ids).and(LEDGER_SEGMENT).exists(true))
+                .with(Sort.by(Sort.Direction.DESC, LEDGER_SEGMENT))
+                .limit(1);
+        query.fields().include(LEDGER_SEGMENT);
+        Document last = mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(Item.class));
+        return last == null ? 0 : ((Number) last.get(LEDGER_SEGMENT)).longValue();
+    }
+
+    @Override
+    public List<Item> search(ItemSearchCriteria criteria, int limit) {
+        Query query = criteria.text() != null
+                ? TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(criteria.text()))
+                : new Query();
+        String sortProperty = criteria.sort().property();
+
+        // 1. Filters, each backed by an index
+        List<Criteria> filters = new ArrayList<>();
+        if (criteria.upc() != null) {
+            filters.add(Criteria.where("upc").is(criteria.upc()));
+        }
+        if (criteria.namePrefix() != null) {
+            // An anchored, escaped regex is answered with a range scan on the itemName index
+            filters.add(Criteria.where("itemName").regex("^" + escapeRegex(criteria.namePrefix())));
+        }
+        if (criteria.minPrice() != null || criteria.maxPrice() != null) {
+            Criteria price = Criteria.where("unitPrice");
+            if (criteria.minPrice() != null) {
+                price.gte(new Decimal128(criteria.minPrice()));
+            }
+            if (criteria.maxPrice() != null) {
+                price.lte(new Decimal128(criteria.maxPrice()));
+            }
+            filters.add(price);
+        }
+
+        // 2. Keyset condition: strictly after the last (sort value, id) of the previous page
+        ItemSearchCursor after = criteria.after();
+        if (after != null && after.value() == null) {
+            // Items without a sort value come first, so every item that has one is still ahead
+            filters.add(new Criteria().orOperator(
+                    Criteria.where(sortProperty).ne(null),
+                    Criteria.where(sortProperty).is(null).and("id").gt(after.id())));
+        } else if (after != null) {
+            Object value = criteria.sort() == ItemSearchCriteria.SortField.PRICE
+                    ? new Decimal128(new BigDecimal(after.value()))
+                    : after.value();
+            filters.add(new Criteria().orOperator(
+                    Criteria.where(sortProperty).gt(value),
+                    Criteria.where(sortProperty).is(value).and("id").gt(after.id())));
+        }
+        if (!filters.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(filters));
+        }
+
+        query.with(Sort.by(Sort.Order.asc(sortProperty), Sort.Order.asc("id"))).limit(limit);
+        return mongoTemplate.find(query, Item.class);
+    }
+
+    @Override
+    public ImportSummary upsertByUpc(List<Item> items) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Item.class);
+        for (Item item : items) {
+            bulk.upsert(Query.query(Criteria.where("upc").is(item.getUpc())), new Update()
+                    .set("itemName", item.getItemName())
+                    .set("unitPrice", new Decimal128(item.getUnitPrice()))
+                    .set("pictureUrls", item.getPictureUrls())
+                    .setOnInsert("availableUnits", item.getAvailableUnits())
+                    .currentDate(LAST_MODIFIED).inc(VERSION, 1));
+        }
+
+        BulkWriteResult result;
+        List<String> errors = List.of();
+        try {
+            result = bulk.execute();
+        } catch (BulkOperationException e) {
+            // Unordered: every other item in the batch was still written
+            result = e.getResult();
+            errors = e.getErrors().stream()
+                    .map(error -> "upc " + items.get(error.getIndex()).getUpc() + ": " + error.getMessage())
+                    .toList();
+        }
+        int inserted = result.getUpserts().size();
+        return new ImportSummary(inserted, result.getMatchedCount(), errors.size(), errors);
+    }
+
+    @Override
+    public Stream<Item> streamItems(Instant modifiedSince) {
+        Query query = modifiedSince == null
+                ? new Query()
+                : Query.query(Criteria.where(LAST_MODIFIED).gte(modifiedSince));
+        // The driver fetches one cursor batch at a time while the stream is consumed
+        query.cursorBatchSize(EXPORT_BATCH_SIZE);
+        return mongoTemplate.stream(query, Item.class);
+    }
+
+    private static String escapeRegex(String literal) {
+        return literal.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
+    private Map<String, Integer> currentStock(Collection<String> ids) {
+        Query query = Query.query(Criteria.where("id").in(ids));
+        query.fields().include("availableUnits");
+        return mongoTemplate.find(query, Item.class).stream()
+                .collect(Collectors.toMap(Item::getId, Item::getAvailableUnits));
+    }
+
+    private static List<InventoryAdjustmentResult> results(List<InventoryAdjustment> adjustments,
+                                                           Function<InventoryAdjustment, Outcome> outcome) {
+        return adjustments.stream()
+                .map(a -> new InventoryAdjustmentResult(a.itemId(), a.quantityChange(), outcome.apply(a)))
+                .toList();
+    }
+
+    private Query stockCondition(String id, int quantityChange) {
+        return Query.query(Criteria.where("id").is(id)
+                .and("availableUnits").gte(-quantityChange));
+    }
+}
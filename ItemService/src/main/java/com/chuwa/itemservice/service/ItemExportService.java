@@ -0,0 +1,10 @@
+package com.chuwa.itemservice.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+
+public interface ItemExportService {
+
+    void exportItems(Instant modifiedSince, OutputStream out) throws IOException;
+}
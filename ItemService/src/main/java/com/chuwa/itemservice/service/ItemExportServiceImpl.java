@@ -0,0 +1,52 @@
+package com.chuwa.itemservice.service;
+
+import com.chuwa.itemservice.inventory.HotSkuLedger;
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the catalog as NDJSON, one item per line, straight from a Mongo
+ * cursor. Only the current cursor batch is held in memory.
+ */
+@Service
+@RequiredArgsConstructor
+public class ItemExportServiceImpl implements ItemExportService {
+
+    private final ItemRepository itemRepository;
+    private final HotSkuLedger hotSkuLedger;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void exportItems(Instant modifiedSince, OutputStream out) throws IOException {
+        // Let the generator buffer output instead of flushing after every item
+        ObjectWriter writer = objectMapper.writerFor(Item.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (Stream<Item> items = itemRepository.streamItems(modifiedSince);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // The caller owns the output stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            Iterator<Item> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                Item item = iterator.next();
+                // Hot SKUs may have reservations that are not written back yet
+                if (hotSkuLedger.isHot(item.getId())) {
+                    item.setAvailableUnits(hotSkuLedger.getAvailableUnits(item.getId()));
+                }
+                writer.writeValue(generator, item);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.chuwa.itemservice.service;
+
+import com.chuwa.itemservice.dto.ImportSummary;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ItemImportService {
+
+    enum Format { NDJSON, CSV }
+
+    ImportSummary importItems(InputStream body, Format format) throws IOException;
+}
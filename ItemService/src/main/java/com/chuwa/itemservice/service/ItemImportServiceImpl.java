@@ -0,0 +1,210 @@
+package com.chuwa.itemservice.service;
+
+import com.chuwa.itemservice.cache.ItemCache;
+import com.chuwa.itemservice.dto.ImportSummary;
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads a catalog from an NDJSON or CSV stream. The body is read one line at a
+ * time and written in bulk batches of {@code item.import.batch-size} rows, so
+ * memory use does not depend on the size of the upload.
+ */
+@Service
+public class ItemImportServiceImpl implements ItemImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final ItemRepository itemRepository;
+    private final ItemCache itemCache;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public ItemImportServiceImpl(ItemRepository itemRepository,
+                                 ItemCache itemCache,
+                                 ObjectMapper objectMapper,
+                                 @Value("${item.import.batch-size:1000}") int batchSize) {
+        this.itemRepository = itemRepository;
+        this.itemCache = itemCache;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public ImportSummary importItems(InputStream body, Format format) throws IOException {
+        Progress progress = new Progress();
+        List<Item> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            // CSV columns are identified by the header row, so their order does not matter
+            Map<String, Integer> columns = format == Format.CSV ? csvHeader(reader.readLine()) : Map.of();
+
+            String line;
+            long lineNumber = format == Format.CSV ? 1 : 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                // 1. Parse and validate the row; bad rows are counted and skipped
+                try {
+                    Item item = format == Format.CSV ? parseCsv(line, columns) : parseJson(line);
+                    validate(item);
+                    batch.add(item);
+                } catch (IllegalArgumentException e) {
+                    progress.reject("line " + lineNumber + ": " + e.getMessage());
+                }
+
+                // 2. Write a full batch and start a new one
+                if (batch.size() == batchSize) {
+                    progress.add(itemRepository.upsertByUpc(batch));
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            progress.add(itemRepository.upsertByUpc(batch));
+        }
+
+        // 3. Cached catalog data may have changed
+        itemCache.clear();
+        return progress.summary();
+    }
+
+    private Item parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, Item.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private Map<String, Integer> csvHeader(String header) {
+        if (header == null) {
+            return Map.of();
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsv(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim(), i);
+        }
+        return columns;
+    }
+
+    private Item parseCsv(String line, Map<String, Integer> columns) {
+        List<String> fields = splitCsv(line);
+        Item item = new Item();
+        item.setItemName(column(fields, columns, "itemName"));
+        item.setUpc(column(fields, columns, "upc"));
+        try {
+            String price = column(fields, columns, "unitPrice");
+            item.setUnitPrice(price == null ? null : new BigDecimal(price));
+            String units = column(fields, columns, "availableUnits");
+            item.setAvailableUnits(units == null ? 0 : Integer.parseInt(units));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid number: " + e.getMessage());
+        }
+        String pictureUrls = column(fields, columns, "pictureUrls");
+        if (pictureUrls != null) {
+            item.setPictureUrls(Arrays.asList(pictureUrls.split("\\|")));
+        }
+        return item;
+    }
+
+    private String column(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isBlank()) {
+            return null;
+        }
+        return fields.get(index).trim();
+    }
+
+    // Splits one CSV line, honouring double-quoted fields and "" escapes
+    private List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private void validate(Item item) {
+        if (item.getUpc() == null || item.getUpc().isBlank()) {
+            throw new IllegalArgumentException("upc is required");
+        }
+        if (item.getItemName() == null || item.getItemName().isBlank()) {
+            throw new IllegalArgumentException("itemName is required");
+        }
+        if (item.getUnitPrice() == null || item.getUnitPrice().signum() < 0) {
+            throw new IllegalArgumentException("unitPrice must be zero or more");
+        }
+        if (item.getAvailableUnits() < 0) {
+            throw new IllegalArgumentException("availableUnits must be zero or more");
+        }
+    }
+
+    private static final class Progress {
+
+        private long inserted;
+        private long updated;
+        private long rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        void add(ImportSummary batch) {
+            inserted += batch.inserted();
+            updated += batch.updated();
+            rejected += batch.rejected();
+            batch.errors().forEach(this::recordError);
+        }
+
+        void reject(String error) {
+            rejected++;
+            recordError(error);
+        }
+
+        private void recordError(String error) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+        }
+
+        ImportSummary summary() {
+            return new ImportSummary(inserted, updated, rejected, List.copyOf(errors));
+        }
+    }
+}
@@ -1,10 +1,23 @@
 package com.chuwa.itemservice.service;
 
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import com.chuwa.itemservice.dto.InventoryAdjustment;
+import com.chuwa.itemservice.dto.ItemPage;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.dto.ItemSummary;
 import com.chuwa.itemservice.model.Item;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ItemService {
     Item createItem(Item item);
     Optional<Item> getItemById(String id);
+    Optional<Item> getItemVersion(String id);
+    List<ItemSummary> getItemSummaries(Collection<String> ids);
+    ItemPage searchItems(ItemSearchCriteria criteria, int limit);
     Item updateInventory(String id, int quantityChange);
+    BatchInventoryResponse updateInventoryBatch(List<InventoryAdjustment> adjustments);
+    // Same as above, but a repeat of the key returns the first response instead of changing stock again
+    BatchInventoryResponse updateInventoryBatch(String idempotencyKey, List<InventoryAdjustment> adjustments);
 }
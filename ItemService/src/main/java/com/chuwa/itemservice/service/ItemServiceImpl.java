@@ -1,44 +1,200 @@
 package com.chuwa.itemservice.service;
 
+import com.chuwa.itemservice.cache.ItemCache;
+import com.chuwa.itemservice.deadline.RequestDeadline;
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import com.chuwa.itemservice.dto.InventoryAdjustment;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult.Outcome;
+import com.chuwa.itemservice.dto.ItemPage;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.dto.ItemSearchCursor;
+import com.chuwa.itemservice.dto.ItemSummary;
+import com.chuwa.itemservice.inventory.HotSkuLedger;
+import com.chuwa.itemservice.inventory.InsufficientStockException;
+import com.chuwa.itemservice.inventory.InventoryRequestLedger;
 import com.chuwa.itemservice.model.Item;
 import com.chuwa.itemservice.repository.ItemRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class ItemServiceImpl implements ItemService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ItemRepository itemRepository;
+    private final ItemCache itemCache;
+    private final HotSkuLedger hotSkuLedger;
+    private final InventoryRequestLedger inventoryRequestLedger;
 
     @Override
     public Item createItem(Item item) {
         // Here you could add validation logic before saving
-        return itemRepository.save(item);
+        item.setLastModified(Instant.now());
+        // An existing ID is overwritten as before; taking over its current version makes save() an update that bumps it
+        item.setVersion(item.getId() == null ? null
+                : itemRepository.findVersionById(item.getId()).map(Item::getVersion).orElse(null));
+        Item savedItem = itemRepository.save(item);
+        itemCache.put(savedItem);
+        return savedItem;
     }
 
     @Override
     public Optional<Item> getItemById(String id) {
-        return itemRepository.findById(id);
+        if (hotSkuLedger.isHot(id)) {
+            return hotSkuLedger.getItem(id);
+        }
+        return itemCache.get(id, itemRepository::findById);
+    }
+
+    @Override
+    public Optional<Item> getItemVersion(String id) {
+        // Cheapest source first: the ledger, then the cache, then a projection of the document
+        if (hotSkuLedger.isHot(id)) {
+            return hotSkuLedger.getItem(id);
+        }
+        return itemCache.getIfPresent(id).or(() -> itemRepository.findVersionById(id));
+    }
+
+    @Override
+    public List<ItemSummary> getItemSummaries(Collection<String> ids) {
+        return itemRepository.findPriceAndStockByIds(ids).stream()
+                .map(item -> new ItemSummary(item.getId(), item.getUnitPrice(), hotSkuLedger.isHot(item.getId())
+                        ? hotSkuLedger.getAvailableUnits(item.getId())
+                        : item.getAvailableUnits()))
+                .toList();
+    }
+
+    @Override
+    public ItemPage searchItems(ItemSearchCriteria criteria, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // 1. Fetch one extra item to find out whether there is a next page
+        List<Item> items = itemRepository.search(criteria, pageSize + 1);
+        boolean hasNext = items.size() > pageSize;
+        List<Item> page = (hasNext ? items.subList(0, pageSize) : items).stream()
+                .map(item -> hotSkuLedger.isHot(item.getId()) ? hotSkuLedger.getItem(item.getId()).orElse(item) : item)
+                .toList();
+
+        // 2. The next page starts after the sort value and ID of the last item
+        String next = null;
+        if (hasNext) {
+            Item last = page.get(page.size() - 1);
+            Object value = criteria.sort() == ItemSearchCriteria.SortField.PRICE ? last.getUnitPrice() : last.getItemName();
+            next = new ItemSearchCursor(value == null ? null : value.toString(), last.getId()).encode();
+        }
+        return new ItemPage(page, next);
     }
 
     @Override
     public Item updateInventory(String id, int quantityChange) {
-        // 1. Find the item in the database
-        Item item = itemRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Item not found with id: " + id));
+        // Do not take stock for a caller that has already given up and will not record the order;
+        // returning stock always goes ahead
+        if (quantityChange < 0) {
+            RequestDeadline.check("inventory");
+        }
+
+        // Hot SKUs are reserved in memory and written back to MongoDB in groups
+        if (hotSkuLedger.isHot(id)) {
+            return hotSkuLedger.adjust(id, quantityChange);
+        }
+
+        // 1. Apply the change as a single conditional increment in MongoDB
+        Item updatedItem = itemRepository.adjustAvailableUnits(id, quantityChange)
+                // 2. No match means the item is missing or the stock would go below zero
+                .orElseThrow(() -> itemRepository.existsById(id)
+                        ? new InsufficientStockException("Insufficient stock for item: " + id)
+                        : new IllegalArgumentException("Item not found with id: " + id));
+
+        // 3. Refresh the cached copy with the document returned by the update
+        itemCache.put(updatedItem);
+        return updatedItem;
+    }
+
+    @Override
+    public BatchInventoryResponse updateInventoryBatch(List<InventoryAdjustment> adjustments) {
+        if (adjustments.stream().anyMatch(adjustment -> adjustment.quantityChange() < 0)) {
+            RequestDeadline.check("inventory");
+        }
+
+        // 1. Combine repeated items so each document is updated exactly once
+        Map<String, Integer> changes = new LinkedHashMap<>();
+        for (InventoryAdjustment adjustment : adjustments) {
+            changes.merge(adjustment.itemId(), adjustment.quantityChange(), Integer::sum);
+        }
+        List<InventoryAdjustment> merged = changes.entrySet().stream()
+                .map(e -> new InventoryAdjustment(e.getKey(), e.getValue()))
+                .toList();
 
-        // 2. Calculate the new stock level
-        int newStock = item.getAvailableUnits() + quantityChange;
+        // 2. Reserve hot SKUs in memory first, stopping at the first shortage
+        Map<String, Outcome> outcomes = new HashMap<>();
+        List<InventoryAdjustment> reserved = new ArrayList<>();
+        List<InventoryAdjustment> stored = new ArrayList<>();
+        boolean failed = false;
+        for (InventoryAdjustment adjustment : merged) {
+            if (!hotSkuLedger.isHot(adjustment.itemId())) {
+                stored.add(adjustment);
+            } else if (!failed) {
+                if (hotSkuLedger.tryAdjust(adjustment.itemId(), adjustment.quantityChange()).isPresent()) {
+                    reserved.add(adjustment);
+                } else {
+                    outcomes.put(adjustment.itemId(), Outcome.INSUFFICIENT_STOCK);
+                    failed = true;
+                }
+            }
+        }
+
+        // 3. Apply the remaining items all-or-nothing in a single bulk write
+        if (!failed && !stored.isEmpty()) {
+            List<InventoryAdjustmentResult> storedResults;
+            try {
+                storedResults = itemRepository.adjustAvailableUnitsInBulk(stored);
+            } catch (RuntimeException e) {
+                // The transaction was aborted, so none of the stored items changed; the reservations go back too
+                giveBack(reserved);
+                throw e;
+            } finally {
+                itemCache.evictAll(stored.stream().map(InventoryAdjustment::itemId).toList());
+            }
+            for (InventoryAdjustmentResult result : storedResults) {
+                outcomes.put(result.itemId(), result.outcome());
+                failed |= result.outcome() != Outcome.APPLIED;
+            }
+        }
 
-        // 3. Validate that stock does not go below zero
-        if (newStock < 0) {
-            throw new IllegalStateException("Insufficient stock for item: " + item.getItemName());
+        // 4. If anything failed, give back the units reserved in memory
+        if (failed) {
+            giveBack(reserved);
+            reserved.forEach(adjustment -> outcomes.put(adjustment.itemId(), Outcome.ROLLED_BACK));
         }
 
-        // 4. Update the stock and save the item
-        item.setAvailableUnits(newStock);
-        return itemRepository.save(item);
+        Outcome remaining = failed ? Outcome.SKIPPED : Outcome.APPLIED;
+        List<InventoryAdjustmentResult> results = merged.stream()
+                .map(a -> new InventoryAdjustmentResult(a.itemId(), a.quantityChange(),
+                        outcomes.getOrDefault(a.itemId(), remaining)))
+                .toList();
+        return new BatchInventoryResponse(!failed, results);
+    }
+
+    @Override
+    public BatchInventoryResponse updateInventoryBatch(String idempotencyKey, List<InventoryAdjustment> adjustments) {
+        return inventoryRequestLedger.execute(idempotencyKey, () -> updateInventoryBatch(adjustments));
+    }
+
+    private void giveBack(List<InventoryAdjustment> reserved) {
+        for (InventoryAdjustment adjustment : reserved) {
+            hotSkuLedger.adjust(adjustment.itemId(), -adjustment.quantityChange());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package com.chuwa.itemservice;
+
+import com.chuwa.itemservice.dto.UpdateInventoryRequest;
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers a single item with parallel inventory updates through the REST API
+ * and checks that no units are lost or oversold. It checks correctness only and
+ * makes no claim about speed. Requires a running MongoDB,
+ * like the other {@code @SpringBootTest} classes. The inventory concurrency
+ * limit is raised above the number of client threads, so that every request
+ * reaches the database instead of being shed with 503.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "concurrency-limit.inventory.initial=128",
+        "concurrency-limit.inventory.min=128",
+        "concurrency-limit.inventory.max=128"})
+class ItemInventoryConcurrencyTests {
+
+    private static final int INITIAL_STOCK = 3_000;
+    private static final int REQUESTS = 4_000;
+    private static final int THREADS = 64;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    private String itemId;
+
+    @AfterEach
+    void cleanUp() {
+        if (itemId != null) {
+            itemRepository.deleteById(itemId);
+        }
+    }
+
+    @Test
+    void parallelDecrements_shouldNeitherLoseUpdatesNorOversell() throws Exception {
+        // Arrange: one item with less stock than the number of incoming requests
+        Item item = new Item();
+        item.setItemName("Flash Sale Gadget");
+        item.setUnitPrice(new BigDecimal("9.99"));
+        item.setAvailableUnits(INITIAL_STOCK);
+        itemId = itemRepository.save(item).getId();
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger otherwise = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        HttpEntity<UpdateInventoryRequest> body = new HttpEntity<>(new UpdateInventoryRequest(-1));
+
+        // Act: fire all requests at once against the same item
+        for (int i = 0; i < REQUESTS; i++) {
+            pool.submit(() -> {
+                start.await();
+                ResponseEntity<Item> response = restTemplate.exchange(
+                        "/api/items/{id}/inventory", HttpMethod.PUT, body, Item.class, itemId);
+                if (response.getStatusCode().is2xxSuccessful()) {
+                    succeeded.incrementAndGet();
+                } else if (response.getStatusCode() == HttpStatus.CONFLICT) {
+                    rejected.incrementAndGet(); // Sold out
+                } else {
+                    otherwise.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+
+        // Assert: every unit is accounted for and the stock never went negative
+        int finalStock = itemRepository.findById(itemId).orElseThrow().getAvailableUnits();
+        assertThat(succeeded.get()).isEqualTo(INITIAL_STOCK);
+        assertThat(rejected.get()).isEqualTo(REQUESTS - INITIAL_STOCK);
+        assertThat(otherwise.get()).isZero();
+        assertThat(finalStock).isZero();
+    }
+}
@@ -0,0 +1,74 @@
+package com.chuwa.itemservice;
+
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import com.chuwa.itemservice.service.ItemService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the p99 latency of item reads served by the cache with reads
+ * that go straight to MongoDB. Requires a running MongoDB, like the other
+ * {@code @SpringBootTest} classes.
+ */
+@SpringBootTest
+class ItemReadLatencyTests {
+
+    private static final int WARMUP = 1_000;
+    private static final int READS = 10_000;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    private String itemId;
+
+    @AfterEach
+    void cleanUp() {
+        if (itemId != null) {
+            itemRepository.deleteById(itemId);
+        }
+    }
+
+    @Test
+    void cachedReads_shouldHaveLowerP99ThanDatabaseReads() {
+        // Arrange
+        Item item = new Item();
+        item.setItemName("Catalog Gadget");
+        item.setUnitPrice(new BigDecimal("19.99"));
+        item.setAvailableUnits(10);
+        itemId = itemService.createItem(item).getId();
+
+        // Act
+        long uncachedP99 = p99Nanos(() -> itemRepository.findById(itemId));
+        long cachedP99 = p99Nanos(() -> itemService.getItemById(itemId));
+        System.out.printf("item read p99: database %d us, cache %d us%n", uncachedP99 / 1_000, cachedP99 / 1_000);
+
+        // Assert
+        assertThat(cachedP99).isLessThan(uncachedP99);
+    }
+
+    private long p99Nanos(Supplier<?> read) {
+        for (int i = 0; i < WARMUP; i++) {
+            read.get();
+        }
+        long[] samples = new long[READS];
+        for (int i = 0; i < READS; i++) {
+            long start = System.nanoTime();
+            read.get();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples[(int) (READS * 0.99)];
+    }
+}
@@ -0,0 +1,111 @@
+package com.chuwa.itemservice;
+
+import com.chuwa.itemservice.config.ItemIndexInitializer;
+import com.chuwa.itemservice.dto.ItemPage;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.dto.ItemSearchCursor;
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.service.ItemService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures catalog search latency over a large collection: name prefix,
+ * price range, UPC lookup, and a page deep into a keyset-paginated scan.
+ * Seeds {@code -Dbenchmark.items} items (one million by default) into the
+ * configured MongoDB, so it only runs with {@code -Dbenchmark=true}.
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ItemSearchBenchmarkTests {
+
+    private static final String PREFIX = "bench-";
+    private static final int ITEMS = Integer.getInteger("benchmark.items", 1_000_000);
+    private static final int BATCH = 10_000;
+    private static final int RUNS = 200;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ItemIndexInitializer indexInitializer;
+
+    @Autowired
+    private ItemService itemService;
+
+    @BeforeAll
+    void seed() {
+        for (int start = 0; start < ITEMS; start += BATCH) {
+            List<Item> batch = new ArrayList<>(BATCH);
+            for (int i = start; i < Math.min(start + BATCH, ITEMS); i++) {
+                Item item = new Item();
+                item.setItemName(PREFIX + String.format("%07d", i));
+                item.setUnitPrice(BigDecimal.valueOf(i % 100_000, 2));
+                item.setUpc(PREFIX + i);
+                item.setAvailableUnits(i % 50);
+                batch.add(item);
+            }
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Item.class).insert(batch).execute();
+        }
+        indexInitializer.initialize();
+    }
+
+    @AfterAll
+    void cleanUp() {
+        mongoTemplate.remove(Query.query(Criteria.where("itemName").regex("^" + PREFIX)), Item.class);
+    }
+
+    @Test
+    void searchLatency() {
+        report("name prefix", () -> itemService.searchItems(criteria(PREFIX + "05", null, null, null), 20));
+        report("price range", () -> itemService.searchItems(
+                criteria(null, new BigDecimal("100.00"), new BigDecimal("120.00"), null), 20));
+        report("upc lookup", () -> itemService.searchItems(
+                new ItemSearchCriteria(null, null, PREFIX + (ITEMS / 2), null, null,
+                        ItemSearchCriteria.SortField.NAME, null), 1));
+
+        // Walk 50 pages, then time the page after that: keyset pages cost the same at any depth
+        ItemPage page = itemService.searchItems(criteria(PREFIX, null, null, null), 100);
+        for (int i = 0; i < 50; i++) {
+            page = itemService.searchItems(criteria(PREFIX, null, null, ItemSearchCursor.decode(page.next())), 100);
+        }
+        ItemSearchCursor deep = ItemSearchCursor.decode(page.next());
+        report("page 51", () -> itemService.searchItems(criteria(PREFIX, null, null, deep), 100));
+        assertThat(page.items()).hasSize(100);
+    }
+
+    private ItemSearchCriteria criteria(String prefix, BigDecimal min, BigDecimal max, ItemSearchCursor after) {
+        ItemSearchCriteria.SortField sort = min != null ? ItemSearchCriteria.SortField.PRICE : ItemSearchCriteria.SortField.NAME;
+        return new ItemSearchCriteria(prefix, null, null, min, max, sort, after);
+    }
+
+    private void report(String name, Supplier<ItemPage> search) {
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            search.get();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        System.out.printf("%-12s over %d items: p50 %d us, p99 %d us%n",
+                name, ITEMS, samples[RUNS / 2] / 1_000, samples[RUNS * 99 / 100] / 1_000);
+    }
+}
@@ -0,0 +1,85 @@
+package com.chuwa.itemservice.cache;
+
+import com.chuwa.itemservice.model.Item;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void get_shouldLoadOnceAndRecordHitsAndMisses() {
+        // Arrange
+        ItemCache cache = new ItemCache(true, 100, Duration.ofMinutes(1), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        cache.get("item-1", id -> { loads.incrementAndGet(); return Optional.of(item(id)); });
+        cache.get("item-1", id -> { loads.incrementAndGet(); return Optional.of(item(id)); });
+
+        // Assert
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+        assertThat(meterRegistry.find("cache.gets").tag("cache", ItemCache.NAME).meters()).isNotEmpty();
+    }
+
+    @Test
+    void get_whenItemIsMissing_shouldNotCacheAbsence() {
+        // Arrange
+        ItemCache cache = new ItemCache(true, 100, Duration.ofMinutes(1), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        cache.get("missing", id -> { loads.incrementAndGet(); return Optional.empty(); });
+        Optional<Item> result = cache.get("missing", id -> { loads.incrementAndGet(); return Optional.empty(); });
+
+        // Assert
+        assertThat(result).isEmpty();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void putAndEvict_shouldReplaceAndDropEntries() {
+        // Arrange
+        ItemCache cache = new ItemCache(true, 100, Duration.ofMinutes(1), meterRegistry);
+        Item fresh = item("item-1");
+        fresh.setAvailableUnits(3);
+
+        // Act & Assert: put replaces what a later read returns
+        cache.put(fresh);
+        assertThat(cache.get("item-1", id -> Optional.of(item(id)))).containsSame(fresh);
+
+        // Act & Assert: after eviction the loader runs again
+        cache.evictAll(List.of("item-1"));
+        assertThat(cache.get("item-1", id -> Optional.of(item(id)))).get().isNotSameAs(fresh);
+    }
+
+    @Test
+    void get_whenDisabled_shouldAlwaysCallLoader() {
+        // Arrange
+        ItemCache cache = new ItemCache(false, 100, Duration.ofMinutes(1), meterRegistry);
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        cache.get("item-1", id -> { loads.incrementAndGet(); return Optional.of(item(id)); });
+        cache.get("item-1", id -> { loads.incrementAndGet(); return Optional.of(item(id)); });
+
+        // Assert
+        assertThat(loads).hasValue(2);
+    }
+
+    private Item item(String id) {
+        Item item = new Item();
+        item.setId(id);
+        return item;
+    }
+}
@@ -1,30 +1,66 @@
 package com.chuwa.itemservice.controller;
 
+import com.chuwa.itemservice.deadline.RequestDeadline;
+import com.chuwa.itemservice.dto.BatchInventoryRequest;
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import com.chuwa.itemservice.dto.ImportSummary;
+import com.chuwa.itemservice.dto.InventoryAdjustment;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult.Outcome;
+import com.chuwa.itemservice.dto.ItemPage;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.dto.ItemSearchCursor;
+import com.chuwa.itemservice.dto.ItemSummary;
 import com.chuwa.itemservice.dto.UpdateInventoryRequest;
+import com.chuwa.itemservice.inventory.InsufficientStockException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.service.ItemExportService;
+import com.chuwa.itemservice.service.ItemImportService;
 import com.chuwa.itemservice.service.ItemService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(ItemController.class) // Loads only the controller layer
+@Import(SimpleMeterRegistry.class) // The slice has no metrics auto-configuration; the concurrency limiter registers its meters here
 class ItemControllerTest {
 
     @Autowired
@@ -36,6 +72,12 @@ class ItemControllerTest {
     @MockBean // Mocks the ItemService in the Spring context
     private ItemService itemService;
 
+    @MockBean
+    private ItemImportService itemImportService;
+
+    @MockBean
+    private ItemExportService itemExportService;
+
     @Test
     void createItem_shouldReturnCreatedItem() throws Exception {
         // Arrange
@@ -53,6 +95,48 @@ class ItemControllerTest {
                 .andExpect(jsonPath("$.itemName").value("New Gadget"));
     }
 
+    @Test
+    void importCsv_shouldStreamBodyToImportService() throws Exception {
+        // Arrange
+        when(itemImportService.importItems(any(), eq(ItemImportService.Format.CSV)))
+                .thenReturn(new ImportSummary(2, 1, 0, List.of()));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/items/import")
+                        .contentType("text/csv")
+                        .content("itemName,unitPrice,upc\nA,1.00,111\nB,2.00,222\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(2))
+                .andExpect(jsonPath("$.updated").value(1));
+    }
+
+    @Test
+    void exportItems_withGzip_shouldStreamCompressedNdjson() throws Exception {
+        // Arrange
+        doAnswer(inv -> {
+            OutputStream out = inv.getArgument(1);
+            out.write("{\"id\":\"item-1\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(itemExportService).exportItems(eq(Instant.parse("2026-01-01T00:00:00Z")), any());
+
+        // Act
+        MvcResult started = mockMvc.perform(get("/api/items/export")
+                        .param("modifiedSince", "2026-01-01T00:00:00Z")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        // Assert
+        byte[] body = result.getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":\"item-1\"}\n");
+        }
+    }
+
     @Test
     void getItemById_whenItemExists_shouldReturnItem() throws Exception {
         // Arrange
@@ -68,6 +152,54 @@ class ItemControllerTest {
                 .andExpect(jsonPath("$.itemName").value("Found Gadget"));
     }
 
+    @Test
+    void getItemById_shouldReturnVersionAsETag() throws Exception {
+        // Arrange
+        Item item = new Item();
+        item.setId("item-123");
+        item.setVersion(7L);
+        item.setAvailableUnits(3);
+        when(itemService.getItemById("item-123")).thenReturn(Optional.of(item));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/items/item-123"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"7-3\""));
+    }
+
+    @Test
+    void getItemById_whenETagStillMatches_shouldReturnNotModifiedWithoutLoadingItem() throws Exception {
+        // Arrange
+        Item version = new Item();
+        version.setVersion(7L);
+        version.setAvailableUnits(3);
+        when(itemService.getItemVersion("item-123")).thenReturn(Optional.of(version));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/items/item-123").header(HttpHeaders.IF_NONE_MATCH, "\"6-4\", W/\"7-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"7-3\""))
+                .andExpect(content().string(""));
+        verify(itemService, never()).getItemById(any());
+    }
+
+    @Test
+    void getItemById_whenETagIsStale_shouldReturnItem() throws Exception {
+        // Arrange
+        Item item = new Item();
+        item.setId("item-123");
+        item.setVersion(8L);
+        item.setAvailableUnits(2);
+        when(itemService.getItemVersion("item-123")).thenReturn(Optional.of(item));
+        when(itemService.getItemById("item-123")).thenReturn(Optional.of(item));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/items/item-123").header(HttpHeaders.IF_NONE_MATCH, "\"7-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"8-2\""))
+                .andExpect(jsonPath("$.availableUnits").value(2));
+    }
+
     @Test
     void getItemById_whenItemDoesNotExist_shouldReturnNotFound() throws Exception {
         // Arrange
@@ -78,6 +210,114 @@ class ItemControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void getItemSummaries_shouldReturnPriceAndStockForAllIds() throws Exception {
+        // Arrange
+        when(itemService.getItemSummaries(List.of("a", "b"))).thenReturn(List.of(
+                new ItemSummary("a", new BigDecimal("1.50"), 4),
+                new ItemSummary("b", new BigDecimal("2.00"), 0)));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/items").param("ids", "a,b"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("a"))
+                .andExpect(jsonPath("$[0].unitPrice").value(1.50))
+                .andExpect(jsonPath("$[1].availableUnits").value(0));
+    }
+
+    @Test
+    void lookupItemSummaries_shouldAcceptIdsInBody() throws Exception {
+        // Arrange
+        when(itemService.getItemSummaries(List.of("a"))).thenReturn(List.of(
+                new ItemSummary("a", new BigDecimal("1.50"), 4)));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/items/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of("a"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].availableUnits").value(4));
+    }
+
+    @Test
+    void lookupItemSummaries_withNoTimeLeft_shouldReturnGatewayTimeoutWithoutLookingUp() throws Exception {
+        // Act & Assert: the caller has already given up
+        mockMvc.perform(post("/api/items/lookup")
+                        .header(RequestDeadline.HEADER, "0")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of("a"))))
+                .andExpect(status().isGatewayTimeout());
+
+        verify(itemService, never()).getItemSummaries(any());
+    }
+
+    @Test
+    void updateInventoryBatch_whenDeadlinePasses_shouldReturnGatewayTimeout() throws Exception {
+        // Arrange
+        when(itemService.updateInventoryBatch(anyList())).thenThrow(RequestDeadline.exceeded("inventory"));
+
+        // Act & Assert
+        mockMvc.perform(put("/api/items/inventory")
+                        .header(RequestDeadline.HEADER, "200")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchInventoryRequest(
+                                List.of(new InventoryAdjustment("a", -1))))))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    void searchItems_shouldPassFiltersAndDecodedCursor() throws Exception {
+        // Arrange
+        String cursor = new ItemSearchCursor("9.99", "item-7").encode();
+        Item item = new Item();
+        item.setId("item-8");
+        when(itemService.searchItems(argThat(c -> c.minPrice().compareTo(new BigDecimal("5")) == 0
+                        && c.sort() == ItemSearchCriteria.SortField.PRICE
+                        && c.after().id().equals("item-7")), eq(10)))
+                .thenReturn(new ItemPage(List.of(item), "next-token"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/items/search")
+                        .param("minPrice", "5")
+                        .param("sort", "PRICE")
+                        .param("after", cursor)
+                        .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("item-8"))
+                .andExpect(jsonPath("$.next").value("next-token"));
+    }
+
+    @Test
+    void searchItems_whenCursorIsMalformed_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/items/search").param("after", "%%%"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchItems_whenNameCursorIsUsedForPriceSort_shouldReturnBadRequest() throws Exception {
+        // Arrange
+        String cursor = new ItemSearchCursor("Gadget", "item-7").encode();
+
+        // Act & Assert
+        mockMvc.perform(get("/api/items/search").param("sort", "PRICE").param("after", cursor))
+                .andExpect(status().isBadRequest());
+        verify(itemService, never()).searchItems(any(), anyInt());
+    }
+
+    @Test
+    void createItem_whenAnotherWriteGetsInFirst_shouldReturnConflict() throws Exception {
+        // Arrange
+        Item item = new Item();
+        item.setId("item-123");
+        when(itemService.createItem(any(Item.class))).thenThrow(new OptimisticLockingFailureException("Version changed"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/items")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(item)))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void updateInventory_shouldReturnUpdatedItem() throws Exception {
         // Arrange
@@ -98,4 +338,72 @@ class ItemControllerTest {
                 .andExpect(jsonPath("$.id").value("item-123"))
                 .andExpect(jsonPath("$.availableUnits").value(15));
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateInventory_whenStockRunsOut_shouldReturnConflict() throws Exception {
+        // Arrange
+        when(itemService.updateInventory(eq("item-123"), eq(-5)))
+                .thenThrow(new InsufficientStockException("Insufficient stock for item: item-123"));
+
+        // Act & Assert
+        mockMvc.perform(put("/api/items/item-123/inventory")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UpdateInventoryRequest(-5))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void updateInventoryBatch_whenAllApplied_shouldReturnOk() throws Exception {
+        // Arrange
+        BatchInventoryRequest request = new BatchInventoryRequest(List.of(
+                new InventoryAdjustment("item-1", -2),
+                new InventoryAdjustment("item-2", -1)));
+        when(itemService.updateInventoryBatch(anyList())).thenReturn(new BatchInventoryResponse(true, List.of(
+                new InventoryAdjustmentResult("item-1", -2, Outcome.APPLIED),
+                new InventoryAdjustmentResult("item-2", -1, Outcome.APPLIED))));
+
+        // Act & Assert
+        mockMvc.perform(put("/api/items/inventory")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(true))
+                .andExpect(jsonPath("$.results[1].outcome").value("APPLIED"));
+    }
+
+    @Test
+    void updateInventoryBatch_whenAnyItemFails_shouldReturnConflict() throws Exception {
+        // Arrange
+        BatchInventoryRequest request = new BatchInventoryRequest(List.of(
+                new InventoryAdjustment("item-1", -2),
+                new InventoryAdjustment("missing", -1)));
+        when(itemService.updateInventoryBatch(anyList())).thenReturn(new BatchInventoryResponse(false, List.of(
+                new InventoryAdjustmentResult("item-1", -2, Outcome.ROLLED_BACK),
+                new InventoryAdjustmentResult("missing", -1, Outcome.NOT_FOUND))));
+
+        // Act & Assert
+        mockMvc.perform(put("/api/items/inventory")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.applied").value(false))
+                .andExpect(jsonPath("$.results[1].outcome").value("NOT_FOUND"));
+    }
+
+    @Test
+    void updateInventoryBatch_withIdempotencyKey_shouldApplyOnceForTheKey() throws Exception {
+        // Arrange
+        BatchInventoryRequest request = new BatchInventoryRequest(List.of(new InventoryAdjustment("item-1", 2)));
+        when(itemService.updateInventoryBatch(eq("order-1-restock"), anyList())).thenReturn(new BatchInventoryResponse(true,
+                List.of(new InventoryAdjustmentResult("item-1", 2, Outcome.APPLIED))));
+
+        // Act & Assert
+        mockMvc.perform(put("/api/items/inventory")
+                        .header("Idempotency-Key", "order-1-restock")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(true));
+        verify(itemService, never()).updateInventoryBatch(anyList());
+    }
+}
@@ -0,0 +1,157 @@
+package com.chuwa.itemservice.inventory;
+
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HotSkuLedgerTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @TempDir
+    private Path walDirectory;
+
+    @Test
+    void adjust_underContention_shouldNeverOversell() throws Exception {
+        // Arrange
+        HotSkuLedger ledger = startLedger(1_000);
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+
+        // Act: 4000 concurrent single-unit reservations against 1000 units
+        for (int i = 0; i < 4_000; i++) {
+            pool.submit(() -> ledger.tryAdjust("hot-1", -1).ifPresent(item -> reserved.incrementAndGet()));
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        // Assert
+        assertThat(reserved).hasValue(1_000);
+        assertThat(ledger.getAvailableUnits("hot-1")).isZero();
+        assertThrows(IllegalStateException.class, () -> ledger.adjust("hot-1", -1));
+
+        // Assert: the group-committed log holds exactly the successful reservations
+        List<Long> segments = InventoryWriteAheadLog.segments(walDirectory);
+        assertThat(InventoryWriteAheadLog.read(walDirectory, segments.get(0))).isEqualTo(Map.of("hot-1", -1_000));
+        ledger.flush();
+        verify(itemRepository).applyLedgerDeltas(segments.get(0), Map.of("hot-1", -1_000));
+    }
+
+    @Test
+    void flush_shouldGroupCommitAggregatedDeltas() throws Exception {
+        // Arrange
+        HotSkuLedger ledger = startLedger(100);
+        ledger.adjust("hot-1", -3);
+        ledger.adjust("hot-1", -2);
+        ledger.adjust("hot-1", 1);
+
+        // Act
+        ledger.flush();
+        ledger.flush(); // Nothing new to commit
+
+        // Assert: one bulk write with the net change, and the committed segment is gone
+        verify(itemRepository, times(1)).applyLedgerDeltas(anyLong(), eq(Map.of("hot-1", -4)));
+        assertThat(InventoryWriteAheadLog.segments(walDirectory)).hasSize(1); // only the open segment
+    }
+
+    @Test
+    void flush_whenMongoFails_shouldRetrySameSegmentLater() throws Exception {
+        // Arrange
+        HotSkuLedger ledger = startLedger(100);
+        ledger.adjust("hot-1", -3);
+        doThrow(new IllegalStateException("mongo down")).doReturn(Set.of())
+                .when(itemRepository).applyLedgerDeltas(anyLong(), anyMap());
+
+        // Act
+        ledger.flush();
+        ledger.flush();
+
+        // Assert: both attempts used the same segment, so the retry is idempotent
+        verify(itemRepository, times(2)).applyLedgerDeltas(anyLong(), eq(Map.of("hot-1", -3)));
+    }
+
+    @Test
+    void start_shouldReplayUncommittedLogBeforeLoadingStock() throws Exception {
+        // Arrange: reserve units, then "crash" without flushing
+        HotSkuLedger crashed = startLedger(50);
+        crashed.adjust("hot-1", -7);
+        crashed.adjust("hot-1", -3);
+        List<Long> leftover = InventoryWriteAheadLog.segments(walDirectory);
+
+        // Act
+        startLedger(40);
+
+        // Assert: the leftover segment is applied to MongoDB and removed
+        verify(itemRepository).applyLedgerDeltas(leftover.get(0), Map.of("hot-1", -10));
+        assertThat(InventoryWriteAheadLog.segments(walDirectory)).doesNotContain(leftover.get(0));
+    }
+
+    @Test
+    void start_shouldContinueSegmentsFromTheLastOneStampedOnTheDocuments() throws Exception {
+        // Arrange: MongoDB already holds segment 500, e.g. numbered before the clock stepped back
+        when(itemRepository.findLastLedgerSegment(Set.of("hot-1"))).thenReturn(500L);
+        HotSkuLedger ledger = startLedger(100);
+        ledger.adjust("hot-1", -1);
+
+        // Act
+        ledger.flush();
+        ledger.adjust("hot-1", -2);
+        ledger.flush();
+
+        // Assert
+        verify(itemRepository).applyLedgerDeltas(501L, Map.of("hot-1", -1));
+        verify(itemRepository).applyLedgerDeltas(502L, Map.of("hot-1", -2));
+    }
+
+    @Test
+    void flush_whenSegmentDoesNotReachAnItem_shouldSetItAsideInsteadOfDroppingIt() throws Exception {
+        // Arrange: the document already carries a later segment, so the update matches nothing
+        HotSkuLedger ledger = startLedger(100);
+        ledger.adjust("hot-1", -3);
+        long segment = InventoryWriteAheadLog.segments(walDirectory).get(0);
+        when(itemRepository.applyLedgerDeltas(segment, Map.of("hot-1", -3))).thenReturn(Set.of("hot-1"));
+
+        // Act
+        ledger.flush();
+        ledger.flush();
+
+        // Assert: kept for reconciliation, neither replayed nor retried
+        assertThat(InventoryWriteAheadLog.segments(walDirectory)).doesNotContain(segment);
+        assertThat(walDirectory.resolve(segment + ".rejected")).exists();
+        verify(itemRepository, times(1)).applyLedgerDeltas(anyLong(), anyMap());
+    }
+
+    private HotSkuLedger startLedger(int stock) throws Exception {
+        Item item = new Item();
+        item.setId("hot-1");
+        item.setItemName("Flash Sale Gadget");
+        item.setAvailableUnits(stock);
+        when(itemRepository.findAllById(Set.of("hot-1"))).thenReturn(List.of(item));
+
+        HotSkuLedger ledger = new HotSkuLedger(itemRepository, true, Set.of("hot-1"), walDirectory.toString());
+        ledger.start();
+        return ledger;
+    }
+}
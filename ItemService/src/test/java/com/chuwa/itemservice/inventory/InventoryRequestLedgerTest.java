@@ -0,0 +1,101 @@
+package com.chuwa.itemservice.inventory;
+
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult.Outcome;
+import com.chuwa.itemservice.model.InventoryRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryRequestLedgerTest {
+
+    private static final BatchInventoryResponse APPLIED = new BatchInventoryResponse(true,
+            List.of(new InventoryAdjustmentResult("item-1", 2, Outcome.APPLIED)));
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private InventoryRequestLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new InventoryRequestLedger(mongoTemplate, Duration.ofHours(24));
+    }
+
+    @Test
+    void execute_whenKeyIsNew_shouldApplyAndRecordTheResponse() {
+        // Act
+        BatchInventoryResponse response = ledger.execute("order-1-restock", () -> APPLIED);
+
+        // Assert
+        assertThat(response).isEqualTo(APPLIED);
+        ArgumentCaptor<InventoryRequest> saved = ArgumentCaptor.forClass(InventoryRequest.class);
+        verify(mongoTemplate).save(saved.capture());
+        assertThat(saved.getValue().getKey()).isEqualTo("order-1-restock");
+        assertThat(saved.getValue().getResponse()).isEqualTo(APPLIED);
+    }
+
+    @Test
+    void execute_whenKeyWasApplied_shouldReturnStoredResponseWithoutApplyingAgain() {
+        // Arrange
+        InventoryRequest existing = new InventoryRequest();
+        existing.setKey("order-1-restock");
+        existing.setResponse(APPLIED);
+        when(mongoTemplate.insert(any(InventoryRequest.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        when(mongoTemplate.findById("order-1-restock", InventoryRequest.class)).thenReturn(existing);
+        AtomicInteger applied = new AtomicInteger();
+
+        // Act
+        BatchInventoryResponse response = ledger.execute("order-1-restock", () -> {
+            applied.incrementAndGet();
+            return APPLIED;
+        });
+
+        // Assert
+        assertThat(response).isEqualTo(APPLIED);
+        assertThat(applied).hasValue(0);
+    }
+
+    @Test
+    void execute_whenKeyIsStillBeingApplied_shouldThrow() {
+        // Arrange
+        when(mongoTemplate.insert(any(InventoryRequest.class))).thenThrow(new DuplicateKeyException("duplicate"));
+        when(mongoTemplate.findById("order-1-restock", InventoryRequest.class)).thenReturn(new InventoryRequest());
+
+        // Act & Assert
+        assertThrows(InventoryRequestInProgressException.class, () -> ledger.execute("order-1-restock", () -> APPLIED));
+    }
+
+    @Test
+    void execute_whenBatchThrows_shouldGiveTheKeyBack() {
+        // Act
+        assertThrows(TransientDataAccessResourceException.class, () -> ledger.execute("order-1-restock", () -> {
+            throw new TransientDataAccessResourceException("primary stepped down");
+        }));
+
+        // Assert
+        verify(mongoTemplate).remove(any(Query.class), eq(InventoryRequest.class));
+        verify(mongoTemplate, never()).save(any(InventoryRequest.class));
+    }
+}
@@ -0,0 +1,110 @@
+package com.chuwa.itemservice.limit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitInterceptorTest {
+
+    private final ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(new MockEnvironment()
+            .withProperty("concurrency-limit.inventory.initial", "1")
+            .withProperty("concurrency-limit.inventory.min", "1")
+            .withProperty("concurrency-limit.inventory.retry-after", "3s")
+            .withProperty("concurrency-limit.checkout.initial", "10")
+            .withProperty("concurrency-limit.checkout.min", "1"), new SimpleMeterRegistry());
+
+    @Test
+    void preHandle_whenLimitIsInUse_shouldShedWithRetryAfter() throws Exception {
+        // Arrange: one inventory update in progress
+        HandlerMethod handler = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("updateInventory"));
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        assertThat(interceptor.preHandle(first, new MockHttpServletResponse(), handler)).isTrue();
+
+        // Act
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        boolean proceeded = interceptor.preHandle(new MockHttpServletRequest(), shed, handler);
+
+        // Assert
+        assertThat(proceeded).isFalse();
+        assertThat(shed.getStatus()).isEqualTo(503);
+        assertThat(shed.getHeader("Retry-After")).isEqualTo("3");
+    }
+
+    @Test
+    void afterCompletion_shouldFreeTheSlot() throws Exception {
+        // Arrange
+        HandlerMethod handler = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("updateInventory"));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, handler);
+
+        // Act
+        interceptor.afterCompletion(request, response, handler, null);
+
+        // Assert
+        assertThat(interceptor.limiter("inventory").inFlight()).isZero();
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler)).isTrue();
+    }
+
+    @Test
+    void afterCompletion_whenRequestIsRejectedForBusinessReasons_shouldKeepTheLimit() throws Exception {
+        // Arrange
+        HandlerMethod handler = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("checkout"));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse soldOut = new MockHttpServletResponse();
+        interceptor.preHandle(request, soldOut, handler);
+        soldOut.setStatus(409);
+
+        // Act
+        interceptor.afterCompletion(request, soldOut, handler, null);
+
+        // Assert
+        assertThat(interceptor.limiter("checkout").limit()).isEqualTo(10);
+    }
+
+    @Test
+    void afterCompletion_whenServerFails_shouldLowerTheLimit() throws Exception {
+        // Arrange
+        HandlerMethod handler = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("checkout"));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse failed = new MockHttpServletResponse();
+        interceptor.preHandle(request, failed, handler);
+        failed.setStatus(500);
+
+        // Act
+        interceptor.afterCompletion(request, failed, handler, null);
+
+        // Assert
+        assertThat(interceptor.limiter("checkout").limit()).isEqualTo(9);
+    }
+
+    @Test
+    void preHandle_shouldLeaveEndpointsWithoutLimitAlone() throws Exception {
+        // Arrange
+        HandlerMethod handler = new HandlerMethod(new Endpoints(), Endpoints.class.getMethod("getItem"));
+
+        // Act & Assert
+        for (int i = 0; i < 3; i++) {
+            assertThat(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler)).isTrue();
+        }
+    }
+
+    static class Endpoints {
+
+        @ConcurrencyLimited("inventory")
+        public void updateInventory() {
+        }
+
+        @ConcurrencyLimited("checkout")
+        public void checkout() {
+        }
+
+        public void getItem() {
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.chuwa.itemservice.repository;
+
+import com.chuwa.itemservice.dto.InventoryAdjustment;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult.Outcome;
+import com.chuwa.itemservice.model.Item;
+import com.mongodb.bulk.BulkWriteResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItemRepositoryCustomImplTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoTransactionManager transactionManager;
+
+    @Mock
+    private BulkOperations bulk;
+
+    @Mock
+    private BulkWriteResult bulkResult;
+
+    private final SimpleTransactionStatus transaction = new SimpleTransactionStatus();
+
+    private ItemRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new ItemRepositoryCustomImpl(mongoTemplate, transactionManager);
+    }
+
+    @Test
+    void adjustAvailableUnitsInBulk_whenAllConditionsHold_shouldCommitOneBulkWrite() {
+        // Arrange
+        List<InventoryAdjustment> adjustments = List.of(new InventoryAdjustment("item-1", -2), new InventoryAdjustment("item-2", 5));
+        when(mongoTemplate.count(any(Query.class), eq(Item.class))).thenReturn(2L);
+        when(transactionManager.getTransaction(any())).thenReturn(transaction);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Item.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(bulkResult);
+        when(bulkResult.getMatchedCount()).thenReturn(2);
+
+        // Act
+        List<InventoryAdjustmentResult> results = repository.adjustAvailableUnitsInBulk(adjustments);
+
+        // Assert
+        assertThat(results).extracting(InventoryAdjustmentResult::outcome).containsExactly(Outcome.APPLIED, Outcome.APPLIED);
+        verify(bulk, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(bulk, never()).upsert(any(Query.class), any(Update.class));
+        assertThat(transaction.isRollbackOnly()).isFalse();
+    }
+
+    @Test
+    void adjustAvailableUnitsInBulk_whenAnItemIsMissing_shouldWriteNothing() {
+        // Arrange
+        List<InventoryAdjustment> adjustments = List.of(new InventoryAdjustment("item-1", -2), new InventoryAdjustment("ghost", -1));
+        when(mongoTemplate.count(any(Query.class), eq(Item.class))).thenReturn(1L);
+        when(mongoTemplate.find(any(Query.class), eq(Item.class))).thenReturn(List.of(item("item-1", 10)));
+
+        // Act
+        List<InventoryAdjustmentResult> results = repository.adjustAvailableUnitsInBulk(adjustments);
+
+        // Assert
+        assertThat(results).extracting(InventoryAdjustmentResult::outcome).containsExactly(Outcome.SKIPPED, Outcome.NOT_FOUND);
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Item.class));
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void adjustAvailableUnitsInBulk_whenStockIsTooLow_shouldAbortTheTransaction() {
+        // Arrange: item-2 has 1 unit left, so only one of the two updates matches
+        List<InventoryAdjustment> adjustments = List.of(new InventoryAdjustment("item-1", -2), new InventoryAdjustment("item-2", -3));
+        when(mongoTemplate.count(any(Query.class), eq(Item.class))).thenReturn(2L);
+        when(transactionManager.getTransaction(any())).thenReturn(transaction);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Item.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(bulkResult);
+        when(bulkResult.getMatchedCount()).thenReturn(1);
+        when(mongoTemplate.find(any(Query.class), eq(Item.class))).thenReturn(List.of(item("item-1", 10), item("item-2", 1)));
+
+        // Act
+        List<InventoryAdjustmentResult> results = repository.adjustAvailableUnitsInBulk(adjustments);
+
+        // Assert
+        assertThat(transaction.isRollbackOnly()).isTrue();
+        assertThat(results).extracting(InventoryAdjustmentResult::outcome)
+                .containsExactly(Outcome.ROLLED_BACK, Outcome.INSUFFICIENT_STOCK);
+    }
+
+    @Test
+    void applyLedgerDeltas_shouldReportItemsThatNeverReceivedTheSegment() {
+        // Arrange: item-1 got segment 7 in an earlier attempt, item-2 already carries a later segment
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Item.class)).thenReturn(bulk);
+        when(bulk.execute()).thenReturn(bulkResult);
+        when(bulkResult.getMatchedCount()).thenReturn(0);
+        when(mongoTemplate.find(any(Query.class), eq(Item.class))).thenReturn(List.of(item("item-1", 10)));
+
+        // Act
+        Set<String> missed = repository.applyLedgerDeltas(7, Map.of("item-1", -2, "item-2", -1));
+
+        // Assert
+        assertThat(missed).containsExactly("item-2");
+    }
+
+    private static Item item(String id, int availableUnits) {
+        Item item = new Item();
+        item.setId(id);
+        item.setAvailableUnits(availableUnits);
+        return item;
+    }
+}
@@ -0,0 +1,66 @@
+package com.chuwa.itemservice.service;
+
+import com.chuwa.itemservice.inventory.HotSkuLedger;
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ItemExportServiceTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private HotSkuLedger hotSkuLedger;
+
+    @Test
+    void exportItems_shouldWriteOneJsonLinePerItemAndCloseCursor() throws Exception {
+        // Arrange
+        Instant since = Instant.parse("2026-01-01T00:00:00Z");
+        AtomicBoolean closed = new AtomicBoolean();
+        when(itemRepository.streamItems(since)).thenReturn(
+                Stream.of(item("item-1", 5), item("item-2", 9)).onClose(() -> closed.set(true)));
+        when(hotSkuLedger.isHot(anyString())).thenReturn(false);
+        when(hotSkuLedger.isHot("item-2")).thenReturn(true);
+        when(hotSkuLedger.getAvailableUnits("item-2")).thenReturn(3);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        ItemExportServiceImpl exportService = new ItemExportServiceImpl(itemRepository, hotSkuLedger, objectMapper);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        exportService.exportItems(since, out);
+
+        // Assert: hot SKUs report the in-memory stock
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], Item.class).getAvailableUnits()).isEqualTo(5);
+        assertThat(objectMapper.readValue(lines[1], Item.class).getAvailableUnits()).isEqualTo(3);
+        assertThat(closed).isTrue();
+    }
+
+    private Item item(String id, int availableUnits) {
+        Item item = new Item();
+        item.setId(id);
+        item.setItemName("Item " + id);
+        item.setUnitPrice(new BigDecimal("10.00"));
+        item.setAvailableUnits(availableUnits);
+        return item;
+    }
+}
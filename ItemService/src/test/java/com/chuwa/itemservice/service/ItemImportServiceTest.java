@@ -0,0 +1,98 @@
+package com.chuwa.itemservice.service;
+
+import com.chuwa.itemservice.cache.ItemCache;
+import com.chuwa.itemservice.dto.ImportSummary;
+import com.chuwa.itemservice.model.Item;
+import com.chuwa.itemservice.repository.ItemRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItemImportServiceTest {
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private ItemCache itemCache;
+
+    private ItemImportServiceImpl importService;
+
+    private final List<List<Item>> writtenBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        importService = new ItemImportServiceImpl(itemRepository, itemCache, new ObjectMapper(), 2);
+        // Copy each batch, since the service reuses its batch list
+        when(itemRepository.upsertByUpc(anyList())).thenAnswer(inv -> {
+            List<Item> batch = List.copyOf(inv.getArgument(0));
+            writtenBatches.add(batch);
+            return new ImportSummary(batch.size(), 0, 0, List.of());
+        });
+    }
+
+    @Test
+    void importNdjson_shouldWriteInBatchesAndRejectInvalidRows() throws Exception {
+        // Arrange: three valid rows, one without a UPC and one that is not JSON
+        String body = """
+                {"itemName":"A","unitPrice":1.00,"upc":"111","availableUnits":5}
+                {"itemName":"B","unitPrice":2.00,"availableUnits":5}
+                {"itemName":"C","unitPrice":3.00,"upc":"333"}
+                not json
+                {"itemName":"D","unitPrice":4.00,"upc":"444"}
+                """;
+
+        // Act
+        ImportSummary summary = importService.importItems(stream(body), ItemImportService.Format.NDJSON);
+
+        // Assert
+        assertThat(writtenBatches).hasSize(2);
+        assertThat(writtenBatches.get(0)).extracting(Item::getUpc).containsExactly("111", "333");
+        assertThat(writtenBatches.get(1)).extracting(Item::getUpc).containsExactly("444");
+        assertThat(summary.inserted()).isEqualTo(3);
+        assertThat(summary.rejected()).isEqualTo(2);
+        assertThat(summary.errors()).hasSize(2).first().asString().startsWith("line 2");
+        verify(itemCache).clear();
+    }
+
+    @Test
+    void importCsv_shouldMapColumnsByHeaderAndHandleQuotes() throws Exception {
+        // Arrange: columns in a different order, a quoted name containing a comma
+        String body = """
+                upc,itemName,unitPrice,availableUnits,pictureUrls
+                111,"Gadget, large ""XL""\",19.99,7,http://a/1.png|http://a/2.png
+                222,Widget,abc,1,
+                """;
+
+        // Act
+        ImportSummary summary = importService.importItems(stream(body), ItemImportService.Format.CSV);
+
+        // Assert
+        Item item = writtenBatches.get(0).get(0);
+        assertThat(item.getItemName()).isEqualTo("Gadget, large \"XL\"");
+        assertThat(item.getUnitPrice()).isEqualByComparingTo(new BigDecimal("19.99"));
+        assertThat(item.getAvailableUnits()).isEqualTo(7);
+        assertThat(item.getPictureUrls()).containsExactly("http://a/1.png", "http://a/2.png");
+        assertThat(summary.inserted()).isEqualTo(1);
+        assertThat(summary.rejected()).isEqualTo(1);
+    }
+
+    private ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
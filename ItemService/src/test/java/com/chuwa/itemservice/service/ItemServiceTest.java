@@ -1,19 +1,39 @@
 package com.chuwa.itemservice.service;
 
+import com.chuwa.itemservice.cache.ItemCache;
+import com.chuwa.itemservice.deadline.DeadlineExceededException;
+import com.chuwa.itemservice.deadline.RequestDeadline;
+import com.chuwa.itemservice.dto.BatchInventoryResponse;
+import com.chuwa.itemservice.dto.InventoryAdjustment;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult;
+import com.chuwa.itemservice.dto.InventoryAdjustmentResult.Outcome;
+import com.chuwa.itemservice.dto.ItemPage;
+import com.chuwa.itemservice.dto.ItemSearchCriteria;
+import com.chuwa.itemservice.dto.ItemSearchCursor;
+import com.chuwa.itemservice.dto.ItemSummary;
+import com.chuwa.itemservice.inventory.HotSkuLedger;
 import com.chuwa.itemservice.model.Item;
 import com.chuwa.itemservice.repository.ItemRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.TransientDataAccessResourceException;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class) // Enables Mockito for JUnit 5
@@ -22,6 +42,12 @@ class ItemServiceTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Mock
+    private HotSkuLedger hotSkuLedger;
+
+    @Spy
+    private ItemCache itemCache = new ItemCache(true, 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
     @InjectMocks
     private ItemServiceImpl itemService;
 
@@ -44,6 +70,42 @@ class ItemServiceTest {
         verify(itemRepository).save(newItem); // Verify the save method was called
     }
 
+    @Test
+    void createItem_withExistingId_shouldOverwriteAtTheCurrentVersion() {
+        // Arrange: the client sends a stale version along with the ID of an existing item
+        Item stored = new Item();
+        stored.setId("test-id");
+        stored.setVersion(4L);
+        Item replacement = new Item();
+        replacement.setId("test-id");
+        replacement.setItemName("Replacement");
+        replacement.setVersion(1L);
+        when(itemRepository.findVersionById("test-id")).thenReturn(Optional.of(stored));
+        when(itemRepository.save(any(Item.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        itemService.createItem(replacement);
+
+        // Assert: save() updates the existing document instead of inserting a duplicate
+        verify(itemRepository).save(argThat(item -> item.getVersion() == 4L && item.getItemName().equals("Replacement")));
+    }
+
+    @Test
+    void createItem_withNewId_shouldInsert() {
+        // Arrange
+        Item newItem = new Item();
+        newItem.setId("new-id");
+        newItem.setVersion(3L);
+        when(itemRepository.findVersionById("new-id")).thenReturn(Optional.empty());
+        when(itemRepository.save(any(Item.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        itemService.createItem(newItem);
+
+        // Assert
+        verify(itemRepository).save(argThat(item -> item.getVersion() == null));
+    }
+
     @Test
     void getItemById_whenItemExists_shouldReturnItem() {
         // Arrange
@@ -73,29 +135,183 @@ class ItemServiceTest {
         assertThat(foundItem).isNotPresent();
     }
 
+    @Test
+    void getItemById_whenCalledTwice_shouldHitRepositoryOnce() {
+        // Arrange
+        Item item = new Item();
+        item.setId("cached-id");
+        when(itemRepository.findById("cached-id")).thenReturn(Optional.of(item));
+
+        // Act
+        itemService.getItemById("cached-id");
+        Optional<Item> secondRead = itemService.getItemById("cached-id");
+
+        // Assert
+        assertThat(secondRead).containsSame(item);
+        verify(itemRepository, times(1)).findById("cached-id");
+        assertThat(itemCache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getItemVersion_whenItemIsCached_shouldNotQueryRepository() {
+        // Arrange
+        Item item = new Item();
+        item.setId("test-id");
+        item.setVersion(4L);
+        when(itemRepository.findById("test-id")).thenReturn(Optional.of(item));
+        itemService.getItemById("test-id");
+
+        // Act
+        Optional<Item> version = itemService.getItemVersion("test-id");
+
+        // Assert
+        assertThat(version).get().extracting(Item::getVersion).isEqualTo(4L);
+        verify(itemRepository, never()).findVersionById(anyString());
+    }
+
+    @Test
+    void getItemVersion_whenItemIsNotCached_shouldUseProjection() {
+        // Arrange
+        Item projection = new Item();
+        projection.setVersion(9L);
+        when(itemRepository.findVersionById("test-id")).thenReturn(Optional.of(projection));
+
+        // Act
+        Optional<Item> version = itemService.getItemVersion("test-id");
+
+        // Assert
+        assertThat(version).contains(projection);
+        verify(itemRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void updateInventory_shouldRefreshCachedItem() {
+        // Arrange: warm the cache with the old stock level
+        Item before = new Item();
+        before.setId("item-1");
+        before.setAvailableUnits(10);
+        Item after = new Item();
+        after.setId("item-1");
+        after.setAvailableUnits(7);
+        when(itemRepository.findById("item-1")).thenReturn(Optional.of(before));
+        when(itemRepository.adjustAvailableUnits("item-1", -3)).thenReturn(Optional.of(after));
+        itemService.getItemById("item-1");
+
+        // Act
+        itemService.updateInventory("item-1", -3);
+
+        // Assert: the next read sees the new stock without going to the database
+        assertThat(itemService.getItemById("item-1")).get()
+                .extracting(Item::getAvailableUnits).isEqualTo(7);
+        verify(itemRepository, times(1)).findById("item-1");
+    }
+
+    @Test
+    void getItemSummaries_shouldUseSingleQueryAndReturnCompactView() {
+        // Arrange
+        Item first = new Item();
+        first.setId("item-1");
+        first.setUnitPrice(new BigDecimal("5.00"));
+        first.setAvailableUnits(3);
+        Item second = new Item();
+        second.setId("item-2");
+        second.setUnitPrice(new BigDecimal("7.50"));
+        second.setAvailableUnits(0);
+        when(itemRepository.findPriceAndStockByIds(List.of("item-1", "item-2", "missing")))
+                .thenReturn(List.of(first, second));
+
+        // Act
+        List<ItemSummary> summaries = itemService.getItemSummaries(List.of("item-1", "item-2", "missing"));
+
+        // Assert
+        assertThat(summaries).containsExactly(
+                new ItemSummary("item-1", new BigDecimal("5.00"), 3),
+                new ItemSummary("item-2", new BigDecimal("7.50"), 0));
+        verify(itemRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void searchItems_whenMoreResultsExist_shouldReturnCursorAfterLastItem() {
+        // Arrange: the repository returns one item more than the page size
+        ItemSearchCriteria criteria = new ItemSearchCriteria("Gad", null, null, null, null,
+                ItemSearchCriteria.SortField.PRICE, null);
+        Item first = new Item();
+        first.setId("a");
+        first.setUnitPrice(new BigDecimal("1.00"));
+        Item second = new Item();
+        second.setId("b");
+        second.setUnitPrice(new BigDecimal("2.50"));
+        Item extra = new Item();
+        extra.setId("c");
+        when(itemRepository.search(criteria, 3)).thenReturn(List.of(first, second, extra));
+
+        // Act
+        ItemPage page = itemService.searchItems(criteria, 2);
+
+        // Assert
+        assertThat(page.items()).containsExactly(first, second);
+        assertThat(ItemSearchCursor.decode(page.next())).isEqualTo(new ItemSearchCursor("2.50", "b"));
+    }
+
+    @Test
+    void searchItems_whenLastItemHasNoPrice_shouldReturnCursorWithoutValue() {
+        // Arrange
+        ItemSearchCriteria criteria = new ItemSearchCriteria(null, null, null, null, null,
+                ItemSearchCriteria.SortField.PRICE, null);
+        Item unpriced = new Item();
+        unpriced.setId("a");
+        Item extra = new Item();
+        extra.setId("b");
+        when(itemRepository.search(criteria, 2)).thenReturn(List.of(unpriced, extra));
+
+        // Act
+        ItemPage page = itemService.searchItems(criteria, 1);
+
+        // Assert
+        assertThat(ItemSearchCursor.decode(page.next())).isEqualTo(new ItemSearchCursor(null, "a"));
+    }
+
+    @Test
+    void searchItems_onLastPage_shouldReturnNoCursor() {
+        // Arrange
+        ItemSearchCriteria criteria = new ItemSearchCriteria(null, null, "0123456789", null, null,
+                ItemSearchCriteria.SortField.NAME, null);
+        Item item = new Item();
+        item.setId("a");
+        when(itemRepository.search(criteria, 21)).thenReturn(List.of(item));
+
+        // Act
+        ItemPage page = itemService.searchItems(criteria, 20);
+
+        // Assert
+        assertThat(page.items()).containsExactly(item);
+        assertThat(page.next()).isNull();
+    }
+
     @Test
     void updateInventory_shouldUpdateStockAndReturnItem() {
         // Arrange
-        Item existingItem = new Item();
-        existingItem.setId("item-1");
-        existingItem.setAvailableUnits(10); // Start with 10 units
+        Item updated = new Item();
+        updated.setId("item-1");
+        updated.setAvailableUnits(6); // 10 - 4 = 6, computed by MongoDB
 
-        when(itemRepository.findById("item-1")).thenReturn(Optional.of(existingItem));
-        when(itemRepository.save(any(Item.class))).thenReturn(existingItem);
+        when(itemRepository.adjustAvailableUnits("item-1", -4)).thenReturn(Optional.of(updated));
 
         // Act: Decrease stock by 4
         Item updatedItem = itemService.updateInventory("item-1", -4);
 
         // Assert
         assertThat(updatedItem).isNotNull();
-        assertThat(updatedItem.getAvailableUnits()).isEqualTo(6); // 10 - 4 = 6
-        verify(itemRepository).save(existingItem);
+        assertThat(updatedItem.getAvailableUnits()).isEqualTo(6);
+        verify(itemRepository, never()).findById(anyString()); // No read before the write
+        verify(itemRepository, never()).save(any(Item.class));
     }
 
     @Test
     void updateInventory_whenItemNotFound_shouldThrowException() {
         // Arrange
-        when(itemRepository.findById("not-found-id")).thenReturn(Optional.empty());
+        when(itemRepository.adjustAvailableUnits("not-found-id", -5)).thenReturn(Optional.empty());
+        when(itemRepository.existsById("not-found-id")).thenReturn(false);
 
         // Act & Assert
         assertThrows(IllegalArgumentException.class, () -> {
@@ -106,12 +322,9 @@ class ItemServiceTest {
 
     @Test
     void updateInventory_whenStockIsInsufficient_shouldThrowException() {
-        // Arrange
-        Item existingItem = new Item();
-        existingItem.setId("item-1");
-        existingItem.setAvailableUnits(5); // Start with 5 units
-
-        when(itemRepository.findById("item-1")).thenReturn(Optional.of(existingItem));
+        // Arrange: the conditional update does not match because only 5 units are left
+        when(itemRepository.adjustAvailableUnits("item-1", -10)).thenReturn(Optional.empty());
+        when(itemRepository.existsById("item-1")).thenReturn(true);
 
         // Act & Assert: Try to decrease stock by 10
         assertThrows(IllegalStateException.class, () -> {
@@ -119,4 +332,117 @@ class ItemServiceTest {
         });
         verify(itemRepository, never()).save(any(Item.class)); // Ensure save was never called
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateInventoryBatch_shouldMergeRepeatedItemsIntoOneBulkWrite() {
+        // Arrange: item-1 appears twice in the request
+        List<InventoryAdjustment> merged = List.of(
+                new InventoryAdjustment("item-1", -3),
+                new InventoryAdjustment("item-2", -1));
+        when(itemRepository.adjustAvailableUnitsInBulk(merged)).thenReturn(List.of(
+                new InventoryAdjustmentResult("item-1", -3, Outcome.APPLIED),
+                new InventoryAdjustmentResult("item-2", -1, Outcome.APPLIED)));
+
+        // Act
+        BatchInventoryResponse response = itemService.updateInventoryBatch(List.of(
+                new InventoryAdjustment("item-1", -1),
+                new InventoryAdjustment("item-2", -1),
+                new InventoryAdjustment("item-1", -2)));
+
+        // Assert
+        assertThat(response.applied()).isTrue();
+        assertThat(response.results()).hasSize(2);
+        verify(itemRepository).adjustAvailableUnitsInBulk(merged);
+        verify(itemCache).evictAll(List.of("item-1", "item-2"));
+    }
+
+    @Test
+    void updateInventoryBatch_whenAnyItemFails_shouldReportNotApplied() {
+        // Arrange
+        List<InventoryAdjustment> adjustments = List.of(
+                new InventoryAdjustment("item-1", -1),
+                new InventoryAdjustment("item-2", -50));
+        when(itemRepository.adjustAvailableUnitsInBulk(adjustments)).thenReturn(List.of(
+                new InventoryAdjustmentResult("item-1", -1, Outcome.ROLLED_BACK),
+                new InventoryAdjustmentResult("item-2", -50, Outcome.INSUFFICIENT_STOCK)));
+
+        // Act
+        BatchInventoryResponse response = itemService.updateInventoryBatch(adjustments);
+
+        // Assert
+        assertThat(response.applied()).isFalse();
+        assertThat(response.results().get(1).outcome()).isEqualTo(Outcome.INSUFFICIENT_STOCK);
+    }
+
+    @Test
+    void updateInventory_whenItemIsHot_shouldUseLedgerInsteadOfMongo() {
+        // Arrange
+        Item reserved = new Item();
+        reserved.setId("hot-1");
+        reserved.setAvailableUnits(99);
+        when(hotSkuLedger.isHot("hot-1")).thenReturn(true);
+        when(hotSkuLedger.adjust("hot-1", -1)).thenReturn(reserved);
+
+        // Act
+        Item result = itemService.updateInventory("hot-1", -1);
+
+        // Assert
+        assertThat(result.getAvailableUnits()).isEqualTo(99);
+        verify(itemRepository, never()).adjustAvailableUnits(anyString(), anyInt());
+    }
+
+    @Test
+    void updateInventoryBatch_whenStoredItemFails_shouldReleaseHotReservation() {
+        // Arrange: one hot SKU reserved in memory, one regular item that is out of stock
+        List<InventoryAdjustment> stored = List.of(new InventoryAdjustment("item-2", -5));
+        when(hotSkuLedger.isHot("hot-1")).thenReturn(true);
+        when(hotSkuLedger.tryAdjust("hot-1", -1)).thenReturn(Optional.of(new Item()));
+        when(itemRepository.adjustAvailableUnitsInBulk(stored)).thenReturn(List.of(
+                new InventoryAdjustmentResult("item-2", -5, Outcome.INSUFFICIENT_STOCK)));
+
+        // Act
+        BatchInventoryResponse response = itemService.updateInventoryBatch(List.of(
+                new InventoryAdjustment("hot-1", -1),
+                new InventoryAdjustment("item-2", -5)));
+
+        // Assert
+        assertThat(response.applied()).isFalse();
+        assertThat(response.results()).extracting(InventoryAdjustmentResult::outcome)
+                .containsExactly(Outcome.ROLLED_BACK, Outcome.INSUFFICIENT_STOCK);
+        verify(hotSkuLedger).adjust("hot-1", 1);
+    }
+
+    @Test
+    void updateInventoryBatch_whenBulkWriteThrows_shouldReleaseHotReservation() {
+        // Arrange: the transaction around the stored items aborts
+        List<InventoryAdjustment> stored = List.of(new InventoryAdjustment("item-2", -5));
+        when(hotSkuLedger.isHot("hot-1")).thenReturn(true);
+        when(hotSkuLedger.tryAdjust("hot-1", -1)).thenReturn(Optional.of(new Item()));
+        when(itemRepository.adjustAvailableUnitsInBulk(stored)).thenThrow(new TransientDataAccessResourceException("WriteConflict"));
+
+        // Act & Assert
+        assertThrows(TransientDataAccessResourceException.class, () -> itemService.updateInventoryBatch(List.of(
+                new InventoryAdjustment("hot-1", -1),
+                new InventoryAdjustment("item-2", -5))));
+        verify(hotSkuLedger).adjust("hot-1", 1);
+    }
+
+    @Test
+    void updateInventoryBatch_whenDeadlinePassed_shouldNotTakeStockButStillReturnIt() {
+        // Arrange
+        RequestDeadline.start(Duration.ZERO);
+        try {
+            // Act & Assert: a reservation is refused, giving stock back still goes ahead
+            assertThrows(DeadlineExceededException.class,
+                    () -> itemService.updateInventoryBatch(List.of(new InventoryAdjustment("item-1", -1))));
+            verifyNoInteractions(itemRepository);
+
+            when(itemRepository.adjustAvailableUnitsInBulk(anyList())).thenReturn(List.of(
+                    new InventoryAdjustmentResult("item-1", 1, Outcome.APPLIED)));
+            BatchInventoryResponse response = itemService.updateInventoryBatch(List.of(new InventoryAdjustment("item-1", 1)));
+            assertThat(response.applied()).isTrue();
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chuwa.orderservice.client;
+
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.OptionalLong;
+
+/**
+ * Sends the time left of the current request with every {@link ItemServiceClient}
+ * call, so ItemService can stop working on it once the caller has given up.
+ * A call whose deadline already passed is not sent at all; it fails with
+ * {@code DeadlineExceededException} before reaching the circuit breaker.
+ */
+@Component
+public class DeadlineRequestInterceptor implements RequestInterceptor {
+
+    @Override
+    public void apply(RequestTemplate template) {
+        OptionalLong remaining = RequestDeadline.remainingMillis();
+        if (remaining.isEmpty()) {
+            return;
+        }
+        if (remaining.getAsLong() <= 0) {
+            throw RequestDeadline.exceeded("item-service");
+        }
+        template.header(RequestDeadline.HEADER, String.valueOf(remaining.getAsLong()));
+    }
+}
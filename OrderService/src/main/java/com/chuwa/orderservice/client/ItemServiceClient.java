@@ -3,20 +3,46 @@ package com.chuwa.orderservice.client;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+
+import java.util.List;
 
 // name should match the target service's application name
-// url points to where the ItemService is running
-@FeignClient(name = "item-service", url = "http://localhost:8082/api/items")
+// url points to where the ItemService is running; the HTTP transport is set up in ItemServiceClientConfig
+@FeignClient(name = "item-service", url = "${item-service.url:http://localhost:8082/api/items}")
 public interface ItemServiceClient {
 
     @GetMapping("/{id}")
     Item getItemById(@PathVariable String id);
 
+    // Looks up the price and stock of many items in one call; unknown IDs are left out of the result
+    @PostMapping("/lookup")
+    List<ItemSummary> getItemSummaries(@RequestBody List<String> ids);
+
     // We'll need a simple request DTO for the body of this PUT request
     record UpdateInventoryRequest(int quantityChange) {}
 
     @PutMapping("/{id}/inventory")
     void updateInventory(@PathVariable String id, @RequestBody UpdateInventoryRequest request);
-}
\ No newline at end of file
+
+    // Request and response DTOs for changing the stock of several items in one call
+    record InventoryAdjustment(String itemId, int quantityChange) {}
+
+    record BatchInventoryRequest(List<InventoryAdjustment> adjustments) {}
+
+    record InventoryAdjustmentResult(String itemId, int quantityChange, String outcome) {}
+
+    record BatchInventoryResponse(boolean applied, List<InventoryAdjustmentResult> results) {}
+
+    // Applies all changes or none of them; a failed batch is answered with 409 Conflict
+    @PutMapping("/inventory")
+    BatchInventoryResponse updateInventoryBatch(@RequestBody BatchInventoryRequest request);
+
+    // The same, but ItemService applies a change at most once per key, however often it is sent
+    @PutMapping("/inventory")
+    BatchInventoryResponse updateInventoryBatch(@RequestHeader("Idempotency-Key") String idempotencyKey,
+                                                @RequestBody BatchInventoryRequest request);
+}
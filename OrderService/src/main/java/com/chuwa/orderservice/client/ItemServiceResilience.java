@@ -0,0 +1,118 @@
+package com.chuwa.orderservice.client;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Guards every {@link ItemServiceClient} call, applied by Feign to its HTTP client.
+ * <p>
+ * Reads (GET and the POST lookup) and inventory writes (PUT) get separate
+ * bulkheads, so a backlog of one cannot take all connections and threads
+ * from the other; a call that finds its bulkhead full for longer than
+ * {@code item-service.bulkhead.max-wait} fails with {@code BulkheadFullException}.
+ * <p>
+ * One circuit breaker watches all calls. Connection errors, timeouts, 5xx
+ * responses and slow calls count as failures; once too many of the recent
+ * calls failed, calls fail immediately with {@code CallNotPermittedException}
+ * until a few trial calls succeed again. 4xx responses such as 404 or 409 are
+ * answers, not failures.
+ * <p>
+ * State and usage are exported as {@code resilience4j.bulkhead.*} and
+ * {@code resilience4j.circuitbreaker.*} metrics.
+ */
+@Component
+public class ItemServiceResilience implements Capability {
+
+    static final String LOOKUP_BULKHEAD = "item-service-lookup";
+    static final String INVENTORY_BULKHEAD = "item-service-inventory";
+    static final String CIRCUIT_BREAKER = "item-service";
+
+    private final Bulkhead lookups;
+    private final Bulkhead inventoryWrites;
+    private final CircuitBreaker circuitBreaker;
+
+    public ItemServiceResilience(MeterRegistry meterRegistry,
+                                 @Value("${item-service.bulkhead.lookup.max-concurrent-calls:64}") int lookupCalls,
+                                 @Value("${item-service.bulkhead.inventory.max-concurrent-calls:32}") int inventoryCalls,
+                                 @Value("${item-service.bulkhead.max-wait:50ms}") Duration maxWait,
+                                 @Value("${item-service.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+                                 @Value("${item-service.circuit-breaker.slow-call-duration:1s}") Duration slowCallDuration,
+                                 @Value("${item-service.circuit-breaker.sliding-window-size:50}") int slidingWindowSize,
+                                 @Value("${item-service.circuit-breaker.minimum-calls:20}") int minimumCalls,
+                                 @Value("${item-service.circuit-breaker.open-duration:5s}") Duration openDuration) {
+        BulkheadRegistry bulkheads = BulkheadRegistry.ofDefaults();
+        this.lookups = bulkheads.bulkhead(LOOKUP_BULKHEAD, BulkheadConfig.custom()
+                .maxConcurrentCalls(lookupCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+        this.inventoryWrites = bulkheads.bulkhead(INVENTORY_BULKHEAD, BulkheadConfig.custom()
+                .maxConcurrentCalls(inventoryCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+        this.circuitBreaker = circuitBreakers.circuitBreaker(CIRCUIT_BREAKER, CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .waitDurationInOpenState(openDuration)
+                .permittedNumberOfCallsInHalfOpenState(5)
+                .build());
+
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return (request, options) -> execute(client, request, options);
+    }
+
+    private Response execute(Client client, Request request, Request.Options options) throws IOException {
+        Bulkhead bulkhead = request.httpMethod() == Request.HttpMethod.PUT ? inventoryWrites : lookups;
+        bulkhead.acquirePermission();
+        try {
+            circuitBreaker.acquirePermission();
+            long start = System.nanoTime();
+            try {
+                Response response = client.execute(request, options);
+                long elapsed = System.nanoTime() - start;
+                if (response.status() >= 500) {
+                    circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS,
+                            new IOException("ItemService answered " + response.status()));
+                } else {
+                    circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                }
+                return response;
+            } catch (IOException | RuntimeException e) {
+                circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                throw e;
+            }
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+}
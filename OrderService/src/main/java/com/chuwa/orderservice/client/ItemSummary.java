@@ -0,0 +1,7 @@
+package com.chuwa.orderservice.client;
+
+import java.math.BigDecimal;
+
+// This DTO represents one entry of the ItemService multi-item lookup response
+public record ItemSummary(String id, BigDecimal unitPrice, int availableUnits) {
+}
@@ -0,0 +1,51 @@
+package com.chuwa.orderservice.client;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link ItemServiceClient} for the reactive order
+ * stack. Error responses (such as 409 for a rejected inventory batch) are
+ * signalled as {@code WebClientResponseException}s.
+ */
+@Component
+public class ReactiveItemServiceClient {
+
+    private final WebClient webClient;
+
+    public ReactiveItemServiceClient(WebClient.Builder webClientBuilder,
+                                     @Value("${item-service.url:http://localhost:8082/api/items}") String baseUrl) {
+        this.webClient = webClientBuilder.baseUrl(baseUrl).build();
+    }
+
+    // Looks up the price and stock of many items in one call; unknown IDs are left out of the result
+    public Mono<List<ItemSummary>> getItemSummaries(List<String> ids) {
+        return webClient.post().uri("/lookup")
+                .bodyValue(ids)
+                .retrieve()
+                .bodyToFlux(ItemSummary.class)
+                .collectList();
+    }
+
+    // Applies all changes or none of them
+    public Mono<ItemServiceClient.BatchInventoryResponse> updateInventoryBatch(ItemServiceClient.BatchInventoryRequest request) {
+        return webClient.put().uri("/inventory")
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(ItemServiceClient.BatchInventoryResponse.class);
+    }
+
+    // The same, but ItemService applies a change at most once per key, however often it is sent
+    public Mono<ItemServiceClient.BatchInventoryResponse> updateInventoryBatch(String idempotencyKey,
+                                                                               ItemServiceClient.BatchInventoryRequest request) {
+        return webClient.put().uri("/inventory")
+                .header("Idempotency-Key", idempotencyKey)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(ItemServiceClient.BatchInventoryResponse.class);
+    }
+}
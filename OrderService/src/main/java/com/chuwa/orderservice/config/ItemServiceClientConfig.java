@@ -0,0 +1,77 @@
+package com.chuwa.orderservice.config;
+
+import feign.Client;
+import feign.Request;
+import feign.hc5.ApacheHttp5Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * HTTP transport behind {@code ItemServiceClient}: a pooled Apache HttpClient 5
+ * that keeps connections alive between calls, with connect and read timeouts so
+ * a slow ItemService cannot hold request threads indefinitely. Pool usage is
+ * exported as {@code httpcomponents.httpclient.pool.*} metrics.
+ */
+@Configuration
+public class ItemServiceClientConfig {
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient itemServiceHttpClient(
+            MeterRegistry meterRegistry,
+            @Value("${item-service.http.max-connections:200}") int maxConnections,
+            @Value("${item-service.http.max-connections-per-route:100}") int maxConnectionsPerRoute,
+            @Value("${item-service.http.connect-timeout:500ms}") Duration connectTimeout,
+            @Value("${item-service.http.keep-alive:30s}") Duration keepAlive,
+            @Value("${item-service.http.idle-timeout:60s}") Duration idleTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        // Re-check connections that sat idle, the server may have closed them
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "item-service").bindTo(meterRegistry);
+
+        DefaultConnectionKeepAliveStrategy serverKeepAlive = new DefaultConnectionKeepAliveStrategy();
+        TimeValue maxKeepAlive = TimeValue.of(keepAlive);
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                // Honour a shorter Keep-Alive from the server, otherwise keep the connection for keep-alive
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue offered = serverKeepAlive.getKeepAliveDuration(response, context);
+                    return TimeValue.isPositive(offered) && offered.compareTo(maxKeepAlive) < 0 ? offered : maxKeepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                // Feign decides about retries
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @Bean
+    public Client feignClient(CloseableHttpClient itemServiceHttpClient) {
+        return new ApacheHttp5Client(itemServiceHttpClient);
+    }
+
+    @Bean
+    public Request.Options feignRequestOptions(
+            @Value("${item-service.http.connect-timeout:500ms}") Duration connectTimeout,
+            @Value("${item-service.http.read-timeout:2s}") Duration readTimeout) {
+        return new Request.Options(connectTimeout, readTimeout, true);
+    }
+}
@@ -0,0 +1,53 @@
+package com.chuwa.orderservice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+import java.util.Map;
+
+/**
+ * Producer settings for the outbox relay, which sends events in bursts: a short
+ * linger lets each burst fill larger batches, and batches are compressed.
+ * Idempotence keeps retries from duplicating or reordering messages. Keys are
+ * order IDs, so all events of one order go to the same partition in order;
+ * values are events already encoded by OrderEventCodec. The order topics are
+ * created with {@code order.kafka.partitions} partitions, which bounds how many
+ * consumers of a group can share them.
+ */
+@Configuration
+public class KafkaProducerConfig {
+
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer outboxProducerCustomizer(
+            @Value("${order.kafka.compression-type:lz4}") String compressionType,
+            @Value("${order.kafka.linger-ms:5}") int lingerMs,
+            @Value("${order.kafka.batch-size:65536}") int batchSize) {
+        return producerFactory -> producerFactory.updateConfigs(Map.of(
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType,
+                ProducerConfig.LINGER_MS_CONFIG, lingerMs,
+                ProducerConfig.BATCH_SIZE_CONFIG, batchSize,
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true,
+                ProducerConfig.ACKS_CONFIG, "all"));
+    }
+
+    @Bean
+    public NewTopic orderCreatedTopic(@Value("${order.kafka.partitions:12}") int partitions,
+                                      @Value("${order.kafka.replication-factor:1}") short replicationFactor) {
+        return TopicBuilder.name("order-created-topic").partitions(partitions).replicas(replicationFactor).build();
+    }
+
+    @Bean
+    public NewTopic orderCancelledTopic(@Value("${order.kafka.partitions:12}") int partitions,
+                                        @Value("${order.kafka.replication-factor:1}") short replicationFactor) {
+        return TopicBuilder.name("order-cancelled-topic").partitions(partitions).replicas(replicationFactor).build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.chuwa.orderservice.config;
+
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Copies orders written before {@code orders_by_user} existed into it. This
+ * scans the whole {@code orders} table, so it only runs when
+ * {@code order.summary.backfill} is set; rerunning it rewrites the same rows.
+ */
+@Slf4j
+@Component
+public class OrderSummaryBackfill {
+
+    private final CassandraOperations cassandraOperations;
+    private final boolean enabled;
+
+    public OrderSummaryBackfill(CassandraOperations cassandraOperations,
+                                @Value("${order.summary.backfill:false}") boolean enabled) {
+        this.cassandraOperations = cassandraOperations;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        AtomicLong copied = new AtomicLong();
+        // The driver pages through the table while the stream is consumed
+        try (Stream<Order> orders = cassandraOperations.stream(Query.empty(), Order.class)) {
+            orders.filter(order -> order.getUserId() != null && order.getCreatedAt() != null)
+                    .forEach(order -> {
+                        cassandraOperations.insert(OrderSummary.of(order));
+                        copied.incrementAndGet();
+                    });
+        }
+        log.info("Backfilled {} orders into orders_by_user", copied.get());
+    }
+}
@@ -1,11 +1,16 @@
 package com.chuwa.orderservice.controller;
 
+import com.chuwa.orderservice.deadline.DeadlineExceededException;
+import com.chuwa.orderservice.deadline.RequestTimeout;
+import com.chuwa.orderservice.dto.OrderHistoryPage;
 import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.idempotency.IdempotencyStore;
+import com.chuwa.orderservice.limit.ConcurrencyLimited;
 import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderStatus;
 import com.chuwa.orderservice.service.OrderService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Slice;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,41 +21,95 @@ import java.util.UUID;
 @RestController
 @RequestMapping("/api/orders")
 @RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) // ReactiveOrderController serves the reactive stack
 public class OrderController {
 
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final OrderService orderService;
+    private final IdempotencyStore idempotencyStore;
 
     /**
      * Handles the HTTP POST request to create a new order.
      * The request body should contain the userId and a list of products.
      * @param orderRequest The order data sent in the request body.
-     * @return The created order with an HTTP 201 Created status.
+     * @param idempotencyKey Optional client-chosen key, scoped to the user; a retry with the same key and body returns the
+     *                       first order instead of creating another.
+     * @return The created order with an HTTP 201 Created status, 400 Bad Request for an invalid key or an unknown product,
+     *         409 Conflict if a product does not have enough stock,
+     *         409 Conflict while another request with the key is in progress, 422 Unprocessable Entity if the key was
+     *         used for a different body,
+     *         503 Service Unavailable when too many checkouts are in progress,
+     *         or 504 Gateway Timeout if the request deadline passed before ItemService was called.
      */
     @PostMapping
-    public ResponseEntity<Order> createOrder(@RequestBody OrderRequest orderRequest) {
-        Order createdOrder = orderService.createOrder(orderRequest);
-        return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
+    @RequestTimeout("${order.deadline.create:3s}")
+    @ConcurrencyLimited("checkout")
+    public ResponseEntity<Order> createOrder(@RequestBody OrderRequest orderRequest,
+                                             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            Order createdOrder = idempotencyKey == null
+                    ? orderService.createOrder(orderRequest)
+                    : idempotencyStore.execute(idempotencyKey, orderRequest, () -> orderService.createOrder(orderRequest));
+            return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            // Unknown product
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
-     * Handles the HTTP GET request to retrieve all orders for a specific user.
+     * Handles the HTTP GET request to retrieve the order history of a specific user.
+     * Pages are chained with cursors: pass the {@code next} token of one page as
+     * {@code cursor} to get the following one.
      * @param userId The ID of the user, passed as a path variable.
-     * @return A list of orders belonging to the user with an HTTP 200 OK status.
+     * @param size The maximum number of orders per page.
+     * @param cursor The {@code next} token of the previous page; omit it for the first page.
+     * @return The user's order summaries, newest first, with an HTTP 200 OK status, or 400 Bad Request for an invalid cursor.
      */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<Slice<Order>> getOrdersByUserId(@PathVariable Long userId, Pageable pageable) {
-        Slice<Order> orders = orderService.findOrdersByUserId(userId, pageable);
-        return ResponseEntity.ok(orders);
+    @RequestTimeout("${order.deadline.history:1s}")
+    public ResponseEntity<OrderHistoryPage> getOrdersByUserId(@PathVariable Long userId,
+                                                              @RequestParam(defaultValue = "20") int size,
+                                                              @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(orderService.findOrdersByUserId(userId, size, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PutMapping("/{orderId}/cancel")
+    @RequestTimeout("${order.deadline.cancel:2s}")
     public ResponseEntity<Order> cancelOrder(@PathVariable UUID orderId) {
         try {
             Order cancelledOrder = orderService.cancelOrder(orderId);
             return ResponseEntity.ok(cancelledOrder);
+        } catch (DeadlineExceededException e) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
         } catch (Exception e) {
             // Handle exceptions like order not found or invalid state
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * Handles the HTTP PUT request to move an order to its next status
+     * (CREATED to PAID, or PAID to COMPLETED).
+     * @param orderId The ID of the order, passed as a path variable.
+     * @param status The new status.
+     * @return The updated order with an HTTP 200 OK status, or 400 Bad Request if the order is missing or cannot make this transition.
+     */
+    @PutMapping("/{orderId}/status")
+    @RequestTimeout("${order.deadline.update-status:1s}")
+    public ResponseEntity<Order> updateStatus(@PathVariable UUID orderId, @RequestParam OrderStatus status) {
+        try {
+            return ResponseEntity.ok(orderService.updateStatus(orderId, status));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.chuwa.orderservice.controller;
+
+import com.chuwa.orderservice.dto.OrderHistoryPage;
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.service.InsufficientStockException;
+import com.chuwa.orderservice.service.ReactiveOrderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * The order API on the reactive stack, active when the service is started with
+ * {@code spring.main.web-application-type=reactive}. Requests are served on
+ * the event loop and never block. The endpoints and their error statuses
+ * match {@link OrderController}'s, but the servlet-only features are missing:
+ * there is no {@code Idempotency-Key} support, no request deadline is set or
+ * passed on to ItemService, and checkouts are not concurrency limited.
+ */
+@RestController
+@RequestMapping("/api/orders")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveOrderController {
+
+    private final ReactiveOrderService orderService;
+
+    /**
+     * Handles the HTTP POST request to create a new order.
+     * @param orderRequest The order data sent in the request body.
+     * @return The created order with an HTTP 201 Created status, 400 Bad Request for an unknown product,
+     *         or 409 Conflict if a product does not have enough stock.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Order>> createOrder(@RequestBody OrderRequest orderRequest) {
+        return orderService.createOrder(orderRequest)
+                .map(createdOrder -> new ResponseEntity<>(createdOrder, HttpStatus.CREATED))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
+                .onErrorResume(InsufficientStockException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).build()));
+    }
+
+    /**
+     * Handles the HTTP GET request to retrieve the order history of a specific user.
+     * @param userId The ID of the user, passed as a path variable.
+     * @param size The maximum number of orders per page.
+     * @param cursor The {@code next} token of the previous page; omit it for the first page.
+     * @return The user's order summaries, newest first, with an HTTP 200 OK status, or 400 Bad Request for an invalid cursor.
+     */
+    @GetMapping("/user/{userId}")
+    public Mono<ResponseEntity<OrderHistoryPage>> getOrdersByUserId(@PathVariable Long userId,
+                                                                    @RequestParam(defaultValue = "20") int size,
+                                                                    @RequestParam(required = false) String cursor) {
+        return orderService.findOrdersByUserId(userId, size, cursor)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    @PutMapping("/{orderId}/cancel")
+    public Mono<ResponseEntity<Order>> cancelOrder(@PathVariable UUID orderId) {
+        return orderService.cancelOrder(orderId)
+                .map(ResponseEntity::ok)
+                // Handle exceptions like order not found or invalid state
+                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+
+    /**
+     * Handles the HTTP PUT request to move an order to its next status
+     * (CREATED to PAID, or PAID to COMPLETED).
+     * @param orderId The ID of the order, passed as a path variable.
+     * @param status The new status.
+     * @return The updated order with an HTTP 200 OK status, or 400 Bad Request if the order is missing or cannot make this transition.
+     */
+    @PutMapping("/{orderId}/status")
+    public Mono<ResponseEntity<Order>> updateStatus(@PathVariable UUID orderId, @RequestParam OrderStatus status) {
+        return orderService.updateStatus(orderId, status)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> e instanceof IllegalArgumentException || e instanceof IllegalStateException,
+                        e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+}
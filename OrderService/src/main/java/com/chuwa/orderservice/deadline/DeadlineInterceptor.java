@@ -0,0 +1,82 @@
+package com.chuwa.orderservice.deadline;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringValueResolver;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Starts the {@link RequestDeadline} of each request: the endpoint's
+ * {@link RequestTimeout}, shortened to the caller's {@value RequestDeadline#HEADER}
+ * header if that asks for less. A request that arrives with no time left is
+ * answered with 504 Gateway Timeout without reaching the controller; a
+ * malformed header is ignored.
+ */
+@Component
+public class DeadlineInterceptor implements HandlerInterceptor, EmbeddedValueResolverAware {
+
+    private final Map<Method, Optional<Duration>> endpointTimeouts = new ConcurrentHashMap<>();
+    private StringValueResolver valueResolver;
+
+    @Override
+    public void setEmbeddedValueResolver(StringValueResolver resolver) {
+        this.valueResolver = resolver;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Duration timeout = handler instanceof HandlerMethod method ? endpointTimeout(method).orElse(null) : null;
+        Long requested = requestedMillis(request.getHeader(RequestDeadline.HEADER));
+        if (requested != null) {
+            if (requested <= 0) {
+                RequestDeadline.exceeded("inbound");
+                response.setStatus(HttpStatus.GATEWAY_TIMEOUT.value());
+                return false;
+            }
+            Duration asked = Duration.ofMillis(requested);
+            timeout = timeout == null || asked.compareTo(timeout) < 0 ? asked : timeout;
+        }
+        if (timeout != null) {
+            RequestDeadline.start(timeout);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestDeadline.clear();
+    }
+
+    private Optional<Duration> endpointTimeout(HandlerMethod handler) {
+        return endpointTimeouts.computeIfAbsent(handler.getMethod(), method -> {
+            RequestTimeout annotation = handler.getMethodAnnotation(RequestTimeout.class);
+            if (annotation == null) {
+                return Optional.empty();
+            }
+            String value = valueResolver != null ? valueResolver.resolveStringValue(annotation.value()) : annotation.value();
+            return Optional.of(DurationStyle.detectAndParse(value));
+        });
+    }
+
+    private static Long requestedMillis(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
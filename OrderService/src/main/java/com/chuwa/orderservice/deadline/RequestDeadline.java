@@ -0,0 +1,124 @@
+package com.chuwa.orderservice.deadline;
+
+import io.micrometer.core.instrument.Metrics;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * The point in time by which the request handled on the current thread must
+ * be answered. It is set by {@link DeadlineInterceptor} from the
+ * {@value #HEADER} header or the endpoint's {@link RequestTimeout}, and the
+ * time left is sent along with every ItemService call in the same header.
+ * <p>
+ * Work handed to other threads keeps the deadline when wrapped with
+ * {@link #wrap(Supplier)} or {@link #wrapCallable(Callable)}; compensating calls run
+ * {@link #detached(Supplier)} from it. Requests dropped because
+ * their deadline passed are counted in {@code order.deadline.exceeded},
+ * tagged with the stage that noticed it.
+ */
+public final class RequestDeadline {
+
+    // Time left in milliseconds, relative so that clock skew between services does not matter
+    public static final String HEADER = "X-Request-Timeout";
+    static final String METRIC = "order.deadline.exceeded";
+
+    // System.nanoTime() at which the deadline passes
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void start(Duration timeout) {
+        DEADLINE.set(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static void set(OptionalLong deadline) {
+        if (deadline.isPresent()) {
+            DEADLINE.set(deadline.getAsLong());
+        } else {
+            DEADLINE.remove();
+        }
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * @return The deadline as a {@link System#nanoTime()} value, or empty if the current request has none.
+     */
+    public static OptionalLong current() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? OptionalLong.empty() : OptionalLong.of(deadline);
+    }
+
+    /**
+     * @return The whole milliseconds left, zero or less once the deadline passed, or empty without a deadline.
+     */
+    public static OptionalLong remainingMillis() {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? OptionalLong.empty() : OptionalLong.of((deadline - System.nanoTime()) / 1_000_000);
+    }
+
+    public static boolean expired(OptionalLong deadline) {
+        return deadline.isPresent() && deadline.getAsLong() - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Counts a request dropped at the given stage.
+     * @return The exception to throw; it is answered with 504 Gateway Timeout.
+     */
+    public static DeadlineExceededException exceeded(String stage) {
+        Metrics.counter(METRIC, "stage", stage).increment();
+        return new DeadlineExceededException("Request deadline passed before " + stage);
+    }
+
+    /**
+     * Runs work that must finish even after the caller gave up, such as giving
+     * reserved stock back, without the deadline of the current request.
+     */
+    public static <T> T detached(Supplier<T> task) {
+        OptionalLong previous = current();
+        DEADLINE.remove();
+        try {
+            return task.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> task) {
+        OptionalLong deadline = current();
+        if (deadline.isEmpty()) {
+            return task;
+        }
+        return () -> {
+            OptionalLong previous = current();
+            set(deadline);
+            try {
+                return task.get();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    public static <T> Callable<T> wrapCallable(Callable<T> task) {
+        OptionalLong deadline = current();
+        if (deadline.isEmpty()) {
+            return task;
+        }
+        return () -> {
+            OptionalLong previous = current();
+            set(deadline);
+            try {
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+}
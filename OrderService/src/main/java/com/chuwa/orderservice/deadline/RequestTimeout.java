@@ -0,0 +1,20 @@
+package com.chuwa.orderservice.deadline;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Default deadline of a controller endpoint, such as {@code "2s"} or a
+ * placeholder like {@code "${order.deadline.create:3s}"}. A caller may ask
+ * for less time with the {@value RequestDeadline#HEADER} header, never for more.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequestTimeout {
+
+    String value();
+}
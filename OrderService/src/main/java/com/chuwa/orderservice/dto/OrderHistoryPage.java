@@ -0,0 +1,12 @@
+package com.chuwa.orderservice.dto;
+
+import com.chuwa.orderservice.model.OrderSummary;
+
+import java.util.List;
+
+/**
+ * One page of a user's order history. {@code next} is an opaque cursor for the
+ * following page, or null on the last page.
+ */
+public record OrderHistoryPage(List<OrderSummary> orders, String next) {
+}
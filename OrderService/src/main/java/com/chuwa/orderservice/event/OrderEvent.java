@@ -0,0 +1,49 @@
+package com.chuwa.orderservice.event;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * An order or payment event as exchanged over Kafka. The same type, with the
+ * same wire format, exists in PaymentService; see {@link OrderEventCodec}.
+ * @param userId The ordering user, or 0 when unknown.
+ * @param amount The order total or the paid amount.
+ */
+public record OrderEvent(Type type, UUID orderId, long userId, BigDecimal amount, Instant timestamp) {
+
+    public enum Type {
+        ORDER_CREATED(1),
+        ORDER_CANCELLED(2),
+        PAYMENT_PROCESSED(3),
+        PAYMENT_REFUNDED(4);
+
+        private static final Type[] BY_CODE = new Type[5];
+
+        static {
+            for (Type type : values()) {
+                BY_CODE[type.code] = type;
+            }
+        }
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte code() {
+            return code;
+        }
+
+        /**
+         * @throws IllegalArgumentException if no event type has this code.
+         */
+        public static Type of(byte code) {
+            if (code <= 0 || code >= BY_CODE.length) {
+                throw new IllegalArgumentException("Unknown order event type: " + code);
+            }
+            return BY_CODE[code];
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.chuwa.orderservice.idempotency;
+
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.IdempotencyRecord;
+import com.chuwa.orderservice.model.Order;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.DeleteOptions;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Runs an order creation at most once per user and {@code Idempotency-Key},
+ * across all instances. Before the order is created the key is claimed with
+ * an {@code INSERT ... IF NOT EXISTS} row in {@code order_idempotency} that
+ * lives for {@code order.idempotency.claim-ttl}; the outcome then replaces it
+ * for {@code order.idempotency.ttl}. A bounded in-memory cache answers recent
+ * retries without a query.
+ * <p>
+ * A duplicate that finds the key claimed waits up to
+ * {@code order.idempotency.wait-timeout} for the outcome and then gets 409
+ * Conflict. A key sent again with a different request body gets 422. Failed
+ * attempts give the claim back and may be retried. If the order was created
+ * but its outcome could not be recorded, the request fails and the key stays
+ * claimed until the claim expires.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final CassandraOperations cassandraOperations;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Outcome> recent;
+    private final Duration ttl;
+    private final Duration claimTtl;
+    private final Duration waitTimeout;
+
+    public IdempotencyStore(CassandraOperations cassandraOperations,
+                            ObjectMapper objectMapper,
+                            @Value("${order.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${order.idempotency.claim-ttl:5m}") Duration claimTtl,
+                            @Value("${order.idempotency.cache-size:10000}") long cacheSize,
+                            @Value("${order.idempotency.wait-timeout:10s}") Duration waitTimeout) {
+        this.cassandraOperations = cassandraOperations;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.claimTtl = claimTtl;
+        this.waitTimeout = waitTimeout;
+        this.recent = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(ttl).build();
+    }
+
+    /**
+     * @param key The client's idempotency key.
+     * @param request The order request; the key is scoped to its user and tied to its content.
+     * @param createOrder Creates the order; called only by the request that claims the key.
+     * @return The order created by the first request with this key.
+     */
+    public Order execute(String key, OrderRequest request, Supplier<Order> createOrder) {
+        // Orders without a user share one scope
+        long userId = request.getUserId() == null ? 0 : request.getUserId();
+        String requestHash = fingerprint(request);
+        String scopedKey = userId + ":" + key;
+
+        // 1. Answer from memory when the key was seen recently
+        Outcome cached = recent.getIfPresent(scopedKey);
+        if (cached != null) {
+            checkSameRequest(key, cached.requestHash(), requestHash);
+            return cached.order();
+        }
+
+        // 2. Claim the key, or follow the request that holds it, possibly on another instance
+        long waitUntil = System.nanoTime() + waitTimeout.toNanos();
+        while (!claim(userId, key, requestHash)) {
+            IdempotencyRecord existing = load(userId, key);
+            if (existing != null) {
+                checkSameRequest(key, existing.getRequestHash(), requestHash);
+                if (existing.getResponse() != null) {
+                    Order order = read(key, existing.getResponse());
+                    recent.put(scopedKey, new Outcome(requestHash, order));
+                    return order;
+                }
+            }
+            // Without a row the claim was just given back by a failed attempt, so claim again
+            if (System.nanoTime() - waitUntil >= 0) {
+                throw new IdempotencyKeyInProgressException("Request with Idempotency-Key " + key + " is still in progress");
+            }
+            if (existing != null) {
+                pause(key);
+            }
+        }
+
+        // 3. This request holds the key: create the order, then record the outcome
+        Order order;
+        try {
+            order = createOrder.get();
+        } catch (RuntimeException e) {
+            release(userId, key, requestHash);
+            throw e;
+        }
+        complete(userId, key, requestHash, order);
+        recent.put(scopedKey, new Outcome(requestHash, order));
+        return order;
+    }
+
+    private boolean claim(long userId, String key, String requestHash) {
+        IdempotencyRecord record = record(userId, key, requestHash);
+        return cassandraOperations.insert(record, InsertOptions.builder().withIfNotExists().ttl(claimTtl).build())
+                .wasApplied();
+    }
+
+    private void complete(long userId, String key, String requestHash, Order order) {
+        IdempotencyRecord record = record(userId, key, requestHash);
+        try {
+            record.setResponse(objectMapper.writeValueAsString(order));
+            // Every column is rewritten, so the whole row now lives for the full TTL
+            boolean applied = cassandraOperations.update(record, UpdateOptions.builder().ttl(ttl)
+                    .ifCondition(Criteria.where("request_hash").is(requestHash)).build()).wasApplied();
+            if (!applied) {
+                throw new IllegalStateException("Claim on Idempotency-Key " + key + " expired before the order was recorded");
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Retries get 409 until the claim expires, rather than a second order
+            log.error("Order {} was created but Idempotency-Key {} of user {} could not be recorded",
+                    order.getId(), key, userId, e);
+            throw e instanceof RuntimeException runtime ? runtime
+                    : new IllegalStateException("Could not record Idempotency-Key " + key, e);
+        }
+    }
+
+    private void release(long userId, String key, String requestHash) {
+        try {
+            cassandraOperations.delete(record(userId, key, requestHash),
+                    DeleteOptions.builder().ifCondition(Criteria.where("request_hash").is(requestHash)).build());
+        } catch (RuntimeException e) {
+            log.warn("Could not give back Idempotency-Key {} of user {}, it frees up when the claim expires", key, userId, e);
+        }
+    }
+
+    private IdempotencyRecord load(long userId, String key) {
+        return cassandraOperations.selectOne(Query.query(Criteria.where("user_id").is(userId))
+                .and(Criteria.where("idempotency_key").is(key)), IdempotencyRecord.class);
+    }
+
+    private Order read(String key, String response) {
+        try {
+            return objectMapper.readValue(response, Order.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable response stored for Idempotency-Key " + key, e);
+        }
+    }
+
+    String fingerprint(OrderRequest request) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the order request", e);
+        }
+    }
+
+    private static void checkSameRequest(String key, String storedHash, String requestHash) {
+        if (!requestHash.equals(storedHash)) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key " + key + " was already used for a different order");
+        }
+    }
+
+    private static IdempotencyRecord record(long userId, String key, String requestHash) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setUserId(userId);
+        record.setKey(key);
+        record.setRequestHash(requestHash);
+        record.setCreatedAt(Instant.now());
+        return record;
+    }
+
+    private static void pause(String key) {
+        try {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Idempotency-Key " + key);
+        }
+    }
+
+    private record Outcome(String requestHash, Order order) {
+    }
+}
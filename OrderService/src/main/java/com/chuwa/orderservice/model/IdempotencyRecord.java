@@ -0,0 +1,36 @@
+package com.chuwa.orderservice.model;
+
+import lombok.Data;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * An order creation made with an {@code Idempotency-Key}, scoped to the user
+ * who sent it. The row is claimed with {@code IF NOT EXISTS} before the order
+ * is created and holds no response until the order exists. Rows are written
+ * with a TTL, so the table never outgrows the retry window.
+ */
+@Data
+@Table("order_idempotency")
+public class IdempotencyRecord {
+
+    @PrimaryKeyColumn(name = "user_id", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private Long userId;
+
+    @PrimaryKeyColumn(name = "idempotency_key", ordinal = 1, type = PrimaryKeyType.PARTITIONED)
+    private String key;
+
+    // SHA-256 of the request body, so a key reused for a different order is recognised
+    @Column("request_hash")
+    private String requestHash;
+
+    // The created order as it was returned to the first caller, as JSON; null while it is being created
+    private String response;
+
+    @Column("created_at")
+    private Instant createdAt;
+}
@@ -4,5 +4,14 @@ public enum OrderStatus {
     CREATED,
     PAID,
     COMPLETED,
-    CANCELLED
+    CANCELLED;
+
+    // CREATED -> PAID -> COMPLETED, or CREATED -> CANCELLED
+    public boolean canTransitionTo(OrderStatus next) {
+        return switch (this) {
+            case CREATED -> next == PAID || next == CANCELLED;
+            case PAID -> next == COMPLETED;
+            case COMPLETED, CANCELLED -> false;
+        };
+    }
 }
\ No newline at end of file
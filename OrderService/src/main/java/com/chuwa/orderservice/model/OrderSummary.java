@@ -0,0 +1,41 @@
+package com.chuwa.orderservice.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.Data;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.math.BigDecimal;
+
+/**
+ * A row of a user's order history. This is a copy of the fields the history
+ * page shows, kept in sync with {@link Order} whenever the order is written.
+ */
+@Data
+@Table("orders_by_user")
+public class OrderSummary {
+
+    @PrimaryKey
+    @JsonUnwrapped // Serialized as userId, createdAt and orderId next to the other fields
+    private OrderSummaryKey key;
+
+    @Column("total_amount")
+    private BigDecimal totalAmount;
+
+    private OrderStatus status;
+
+    // Total number of units across all lines of the order
+    @Column("item_count")
+    private int itemCount;
+
+    public static OrderSummary of(Order order) {
+        OrderSummary summary = new OrderSummary();
+        summary.setKey(new OrderSummaryKey(order.getUserId(), order.getCreatedAt(), order.getId()));
+        summary.setTotalAmount(order.getTotalAmount());
+        summary.setStatus(order.getStatus());
+        summary.setItemCount(order.getItems() == null ? 0
+                : order.getItems().stream().mapToInt(OrderItem::getQuantity).sum());
+        return summary;
+    }
+}
@@ -0,0 +1,42 @@
+package com.chuwa.orderservice.model;
+
+import lombok.Data;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.CassandraType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A Kafka message waiting to be published. It is written in the same logged
+ * batch as the order change it describes, so it survives a crash before the send.
+ */
+@Data
+@Table("order_outbox")
+public class OutboxEvent {
+
+    // Events are spread over a fixed number of partitions so no single one grows without bound
+    @PrimaryKeyColumn(name = "bucket", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private int bucket;
+
+    // Time-based, so rows within a bucket are read back in the order they were written
+    @PrimaryKeyColumn(name = "id", ordinal = 1, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    @CassandraType(type = CassandraType.Name.TIMEUUID)
+    private UUID id;
+
+    private String topic;
+
+    @Column("message_key")
+    private String messageKey;
+
+    // An OrderEventCodec-encoded event
+    private ByteBuffer payload;
+
+    @Column("created_at")
+    private Instant createdAt;
+}
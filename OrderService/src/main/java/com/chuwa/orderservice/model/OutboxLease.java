@@ -0,0 +1,21 @@
+package com.chuwa.orderservice.model;
+
+import lombok.Data;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * Which OrderService instance relays an outbox bucket. The row is taken with
+ * {@code IF NOT EXISTS}, renewed with {@code IF owner = ?} and written with a
+ * TTL, so a bucket whose owner died is free again once the lease runs out.
+ */
+@Data
+@Table("order_outbox_lease")
+public class OutboxLease {
+
+    @PrimaryKeyColumn(name = "bucket", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private int bucket;
+
+    private String owner;
+}
@@ -0,0 +1,28 @@
+package com.chuwa.orderservice.model;
+
+import lombok.Data;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.CassandraType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.util.UUID;
+
+/**
+ * How far an outbox bucket has been relayed. The next read starts near this
+ * event instead of at the head of the partition, where the deleted rows of
+ * everything sent before pile up as tombstones.
+ */
+@Data
+@Table("order_outbox_position")
+public class OutboxPosition {
+
+    @PrimaryKeyColumn(name = "bucket", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private int bucket;
+
+    // ID of the newest event known to be published
+    @Column("relayed_up_to")
+    @CassandraType(type = CassandraType.Name.TIMEUUID)
+    private UUID relayedUpTo;
+}
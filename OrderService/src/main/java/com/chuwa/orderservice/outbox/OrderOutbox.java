@@ -0,0 +1,78 @@
+package com.chuwa.orderservice.outbox;
+
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.model.OutboxEvent;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Saves an order together with its {@code orders_by_user} summary row and the
+ * event announcing the change. All rows go into one logged batch, so either all
+ * are written or none is; {@link OutboxRelay} publishes the event afterwards.
+ */
+@Component
+public class OrderOutbox {
+
+    private final CassandraOperations cassandraOperations;
+    private final int buckets;
+
+    public OrderOutbox(CassandraOperations cassandraOperations,
+                       @Value("${order.outbox.buckets:16}") int buckets) {
+        this.cassandraOperations = cassandraOperations;
+        this.buckets = buckets;
+    }
+
+    /**
+     * @param order The order to insert or overwrite.
+     * @param topic The Kafka topic of the event.
+     * @param payload The encoded event; the order ID is used as the message key.
+     * @return The saved order.
+     */
+    public Order save(Order order, String topic, byte[] payload) {
+        cassandraOperations.batchOps()
+                .insert(order)
+                .insert(OrderSummary.of(order))
+                .insert(event(order, topic, payload))
+                .execute();
+        return order;
+    }
+
+    /**
+     * Records a status change that was already applied to the {@code orders}
+     * row: updates the summary row and queues the event, without rewriting the order.
+     * @param order The order, carrying its new status.
+     * @param topic The Kafka topic of the event.
+     * @param payload The encoded event; the order ID is used as the message key.
+     * @return The order.
+     */
+    public Order recordStatusChange(Order order, String topic, byte[] payload) {
+        cassandraOperations.batchOps()
+                .insert(OrderSummary.of(order))
+                .insert(event(order, topic, payload))
+                .execute();
+        return order;
+    }
+
+    OutboxEvent event(Order order, String topic, byte[] payload) {
+        String key = order.getId().toString();
+        OutboxEvent event = new OutboxEvent();
+        // All events of one order land in the same bucket, keeping them in order
+        event.setBucket(Math.floorMod(key.hashCode(), buckets));
+        event.setId(Uuids.timeBased());
+        event.setTopic(topic);
+        event.setMessageKey(key);
+        event.setPayload(ByteBuffer.wrap(payload));
+        event.setCreatedAt(Instant.now());
+        return event;
+    }
+
+    int buckets() {
+        return buckets;
+    }
+}
@@ -0,0 +1,287 @@
+package com.chuwa.orderservice.outbox;
+
+import com.chuwa.orderservice.model.OutboxEvent;
+import com.chuwa.orderservice.model.OutboxLease;
+import com.chuwa.orderservice.model.OutboxPosition;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.DeleteOptions;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the outbox to Kafka. Each run reads up to
+ * {@code order.outbox.batch-size} events per bucket, sends them all before
+ * waiting, so the producer can pack them into compressed batches, and deletes
+ * the rows once Kafka has acknowledged them.
+ * <p>
+ * Delivery is at least once: an event whose acknowledgement or delete is lost
+ * is sent again on the next run. Events of one order share a bucket and a
+ * message key, so they stay in order within a partition.
+ * <p>
+ * Deleted rows stay behind as tombstones until compaction, so a bucket is not
+ * read from its start: the ID of the last published event is kept as an
+ * {@link OutboxPosition}, and reads begin {@code order.outbox.late-write-window}
+ * before it. The window covers events that commit late or come from a writer
+ * whose clock is behind; an event older than the position by more than the
+ * window would not be seen.
+ * <p>
+ * Each bucket is relayed by one instance at a time: the instance holds an
+ * {@link OutboxLease} row for it, taken with a lightweight transaction and
+ * renewed every {@code order.outbox.lease-renew-interval-ms} for
+ * {@code order.outbox.lease-ttl}. Buckets of an instance that stopped are
+ * picked up by another one once the lease runs out, or at once after a clean
+ * shutdown.
+ * <p>
+ * {@code order.outbox.lag} reports how long the oldest unsent event in the
+ * buckets this instance owns has been waiting, measured when it is read, and
+ * {@code order.outbox.relayed} counts published events.
+ */
+@Slf4j
+@Component
+public class OutboxRelay {
+
+    private final CassandraOperations cassandraOperations;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final OrderOutbox orderOutbox;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration leaseTtl;
+    private final long lateWriteWindowMillis;
+    private final String instanceId = UUID.randomUUID().toString();
+    // Owned bucket -> System.nanoTime() until which its lease is certainly still ours
+    private final Map<Integer, Long> leases = new ConcurrentHashMap<>();
+    // Owned bucket -> creation time of its oldest unsent event; absent while the bucket is drained
+    private final Map<Integer, Instant> oldestUnsent = new ConcurrentHashMap<>();
+    // Owned bucket -> ID of the newest published event; absent while nothing was published yet
+    private final Map<Integer, UUID> positions = new ConcurrentHashMap<>();
+    private final Counter relayed;
+
+    public OutboxRelay(CassandraOperations cassandraOperations,
+                       KafkaTemplate<String, byte[]> kafkaTemplate,
+                       OrderOutbox orderOutbox,
+                       MeterRegistry meterRegistry,
+                       @Value("${order.outbox.batch-size:500}") int batchSize,
+                       @Value("${order.outbox.send-timeout:10s}") Duration sendTimeout,
+                       @Value("${order.outbox.lease-ttl:15s}") Duration leaseTtl,
+                       @Value("${order.outbox.late-write-window:1m}") Duration lateWriteWindow) {
+        this.cassandraOperations = cassandraOperations;
+        this.kafkaTemplate = kafkaTemplate;
+        this.orderOutbox = orderOutbox;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.leaseTtl = leaseTtl;
+        this.lateWriteWindowMillis = lateWriteWindow.toMillis();
+        Gauge.builder("order.outbox.lag", this, OutboxRelay::lagMillis)
+                .description("Age in milliseconds of the oldest event not yet published")
+                .register(meterRegistry);
+        this.relayed = Counter.builder("order.outbox.relayed")
+                .description("Outbox events published to Kafka")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval-ms:100}")
+    public void relay() {
+        for (int bucket = 0; bucket < orderOutbox.buckets(); bucket++) {
+            if (!owns(bucket)) {
+                continue;
+            }
+            Instant oldest = relayBucket(bucket);
+            if (oldest == null) {
+                oldestUnsent.remove(bucket);
+            } else {
+                oldestUnsent.put(bucket, oldest);
+            }
+        }
+    }
+
+    /**
+     * Takes free buckets and renews the leases this instance holds. A lease
+     * that another instance took over is dropped; one that could not be
+     * renewed because of an error is tried again and lapses on its own.
+     */
+    @Scheduled(fixedDelayString = "${order.outbox.lease-renew-interval-ms:5000}")
+    public void renewLeases() {
+        for (int bucket = 0; bucket < orderOutbox.buckets(); bucket++) {
+            // The row lives for leaseTtl from a write that happens after this point, so this bound is safe
+            long validUntil = System.nanoTime() + leaseTtl.toNanos();
+            try {
+                if (leases.containsKey(bucket)) {
+                    if (renew(bucket)) {
+                        leases.put(bucket, validUntil);
+                    } else {
+                        drop(bucket);
+                    }
+                } else if (acquire(bucket)) {
+                    // The previous owner may have moved the position on since this instance last held the bucket
+                    loadPosition(bucket);
+                    leases.put(bucket, validUntil);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not take or renew the lease on outbox bucket {}", bucket, e);
+            }
+        }
+    }
+
+    // Hands the buckets over right away instead of letting their leases run out
+    @PreDestroy
+    public void releaseLeases() {
+        for (Integer bucket : leases.keySet()) {
+            drop(bucket);
+            try {
+                cassandraOperations.delete(lease(bucket),
+                        DeleteOptions.builder().ifCondition(Criteria.where("owner").is(instanceId)).build());
+            } catch (RuntimeException e) {
+                log.warn("Could not release the lease on outbox bucket {}, it frees up when it expires", bucket, e);
+            }
+        }
+    }
+
+    private void drop(int bucket) {
+        leases.remove(bucket);
+        oldestUnsent.remove(bucket);
+        positions.remove(bucket);
+    }
+
+    private void loadPosition(int bucket) {
+        OutboxPosition position = cassandraOperations.selectOne(
+                Query.query(Criteria.where("bucket").is(bucket)), OutboxPosition.class);
+        if (position == null || position.getRelayedUpTo() == null) {
+            positions.remove(bucket);
+        } else {
+            positions.put(bucket, position.getRelayedUpTo());
+        }
+    }
+
+    private boolean owns(int bucket) {
+        Long validUntil = leases.get(bucket);
+        return validUntil != null && validUntil - System.nanoTime() > 0;
+    }
+
+    private boolean acquire(int bucket) {
+        return cassandraOperations.insert(lease(bucket), InsertOptions.builder().withIfNotExists().ttl(leaseTtl).build())
+                .wasApplied();
+    }
+
+    private boolean renew(int bucket) {
+        return cassandraOperations.update(lease(bucket), UpdateOptions.builder().ttl(leaseTtl)
+                .ifCondition(Criteria.where("owner").is(instanceId)).build()).wasApplied();
+    }
+
+    private OutboxLease lease(int bucket) {
+        OutboxLease lease = new OutboxLease();
+        lease.setBucket(bucket);
+        lease.setOwner(instanceId);
+        return lease;
+    }
+
+    private double lagMillis() {
+        Instant now = Instant.now();
+        return oldestUnsent.values().stream()
+                .mapToLong(oldest -> Duration.between(oldest, now).toMillis())
+                .max()
+                .orElse(0);
+    }
+
+    // Returns the creation time of the oldest event left in the bucket, or null if it was drained
+    private Instant relayBucket(int bucket) {
+        List<OutboxEvent> events = cassandraOperations.select(pending(bucket).limit(batchSize), OutboxEvent.class);
+        if (events.isEmpty()) {
+            return null;
+        }
+
+        // 1. Hand every event to the producer before waiting for any acknowledgement
+        List<CompletableFuture<SendResult<String, byte[]>>> sends = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            sends.add(kafkaTemplate.send(event.getTopic(), event.getMessageKey(), bytes(event.getPayload())));
+        }
+
+        // 2. Keep the acknowledged prefix; anything after a failure is retried next run
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        int acknowledged = 0;
+        try {
+            for (CompletableFuture<SendResult<String, byte[]>> send : sends) {
+                send.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                acknowledged++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Publishing outbox event {} failed, will retry", events.get(acknowledged).getId(), e);
+        }
+
+        // 3. Remove published events; the rows share a partition, so an unlogged batch is cheap
+        if (acknowledged > 0) {
+            cassandraOperations.batchOps(DefaultBatchType.UNLOGGED)
+                    .delete(events.subList(0, acknowledged))
+                    .execute();
+            relayed.increment(acknowledged);
+            advance(bucket, events.get(acknowledged - 1).getId());
+        }
+        if (acknowledged < events.size()) {
+            return events.get(acknowledged).getCreatedAt();
+        }
+        // A full batch may have more events behind it
+        return events.size() < batchSize ? null : oldestEvent(bucket);
+    }
+
+    private Instant oldestEvent(int bucket) {
+        OutboxEvent oldest = cassandraOperations.selectOne(pending(bucket).limit(1), OutboxEvent.class);
+        return oldest == null ? null : oldest.getCreatedAt();
+    }
+
+    // Events of the bucket from shortly before the last published one, skipping the tombstones further back
+    private Query pending(int bucket) {
+        Query query = Query.query(Criteria.where("bucket").is(bucket));
+        UUID position = positions.get(bucket);
+        if (position == null) {
+            return query;
+        }
+        return query.and(Criteria.where("id").gt(Uuids.startOf(Uuids.unixTimestamp(position) - lateWriteWindowMillis)));
+    }
+
+    private void advance(int bucket, UUID relayedUpTo) {
+        UUID current = positions.get(bucket);
+        // A late event found inside the window must not move the position back
+        if (current != null && Uuids.unixTimestamp(current) >= Uuids.unixTimestamp(relayedUpTo)) {
+            return;
+        }
+        positions.put(bucket, relayedUpTo);
+        OutboxPosition position = new OutboxPosition();
+        position.setBucket(bucket);
+        position.setRelayedUpTo(relayedUpTo);
+        cassandraOperations.insert(position);
+    }
+
+    private static byte[] bytes(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,37 @@
+package com.chuwa.orderservice.outbox;
+
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderSummary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of {@link OrderOutbox}: the order or its status change,
+ * its summary row and its event are written in one logged batch.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReactiveOrderOutbox {
+
+    private final ReactiveCassandraOperations reactiveCassandraOperations;
+    private final OrderOutbox orderOutbox;
+
+    public Mono<Order> save(Order order, String topic, byte[] payload) {
+        return Mono.defer(() -> reactiveCassandraOperations.batchOps()
+                        .insert(order)
+                        .insert(OrderSummary.of(order))
+                        .insert(orderOutbox.event(order, topic, payload))
+                        .execute())
+                .thenReturn(order);
+    }
+
+    public Mono<Order> recordStatusChange(Order order, String topic, byte[] payload) {
+        return Mono.defer(() -> reactiveCassandraOperations.batchOps()
+                        .insert(OrderSummary.of(order))
+                        .insert(orderOutbox.event(order, topic, payload))
+                        .execute())
+                .thenReturn(order);
+    }
+}
@@ -0,0 +1,22 @@
+package com.chuwa.orderservice.repository;
+
+import com.chuwa.orderservice.model.OrderStatus;
+
+import java.util.UUID;
+
+/**
+ * Order updates that are executed as single conditional Cassandra writes
+ * instead of a read-modify-write cycle in Java.
+ */
+public interface OrderRepositoryCustom {
+
+    /**
+     * Sets the order's status with a lightweight transaction
+     * ({@code UPDATE ... IF status = expected}), writing no other column.
+     * @param orderId The ID of the order.
+     * @param expected The status the order must currently have.
+     * @param next The new status.
+     * @return Whether the update was applied; false if the order is missing or its status is not {@code expected}.
+     */
+    boolean updateStatus(UUID orderId, OrderStatus expected, OrderStatus next);
+}
@@ -0,0 +1,29 @@
+package com.chuwa.orderservice.repository;
+
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.cassandra.core.query.Update;
+
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    private final CassandraOperations cassandraOperations;
+
+    @Override
+    public boolean updateStatus(UUID orderId, OrderStatus expected, OrderStatus next) {
+        return cassandraOperations.update(statusQuery(orderId, expected), Update.empty().set("status", next), Order.class);
+    }
+
+    // Shared with the reactive repository so both stacks issue the same statement
+    static Query statusQuery(UUID orderId, OrderStatus expected) {
+        return Query.query(Criteria.where("id").is(orderId))
+                .queryOptions(UpdateOptions.builder().ifCondition(Criteria.where("status").is(expected)).build());
+    }
+}
@@ -0,0 +1,20 @@
+package com.chuwa.orderservice.repository;
+
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.model.OrderSummaryKey;
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OrderSummaryRepository extends CassandraRepository<OrderSummary, OrderSummaryKey> {
+
+    /**
+     * Reads one page of a user's order history, newest first, from the
+     * user's partition of {@code orders_by_user}.
+     * @param userId The ID of the user.
+     * @return A slice of the user's order summaries.
+     */
+    Slice<OrderSummary> findByKeyUserId(Long userId, Pageable pageable);
+}
@@ -0,0 +1,11 @@
+package com.chuwa.orderservice.repository;
+
+import com.chuwa.orderservice.model.Order;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface ReactiveOrderRepository extends ReactiveCassandraRepository<Order, UUID>, ReactiveOrderRepositoryCustom {
+}
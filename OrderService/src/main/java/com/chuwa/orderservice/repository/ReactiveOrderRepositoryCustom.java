@@ -0,0 +1,14 @@
+package com.chuwa.orderservice.repository;
+
+import com.chuwa.orderservice.model.OrderStatus;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Reactive variant of {@link OrderRepositoryCustom}.
+ */
+public interface ReactiveOrderRepositoryCustom {
+
+    Mono<Boolean> updateStatus(UUID orderId, OrderStatus expected, OrderStatus next);
+}
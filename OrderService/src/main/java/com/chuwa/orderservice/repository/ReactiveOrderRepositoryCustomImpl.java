@@ -0,0 +1,22 @@
+package com.chuwa.orderservice.repository;
+
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class ReactiveOrderRepositoryCustomImpl implements ReactiveOrderRepositoryCustom {
+
+    private final ReactiveCassandraOperations reactiveCassandraOperations;
+
+    @Override
+    public Mono<Boolean> updateStatus(UUID orderId, OrderStatus expected, OrderStatus next) {
+        return reactiveCassandraOperations.update(OrderRepositoryCustomImpl.statusQuery(orderId, expected),
+                Update.empty().set("status", next), Order.class);
+    }
+}
@@ -0,0 +1,18 @@
+package com.chuwa.orderservice.repository;
+
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.model.OrderSummaryKey;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactiveOrderSummaryRepository extends ReactiveCassandraRepository<OrderSummary, OrderSummaryKey> {
+
+    /**
+     * Reactive variant of {@link OrderSummaryRepository#findByKeyUserId}.
+     */
+    Mono<Slice<OrderSummary>> findByKeyUserId(Long userId, Pageable pageable);
+}
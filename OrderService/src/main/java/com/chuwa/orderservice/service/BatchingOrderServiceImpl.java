@@ -0,0 +1,360 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import com.chuwa.orderservice.dto.OrderHistoryPage;
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderItem;
+import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.outbox.ReactiveOrderOutbox;
+import feign.FeignException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group-commit variant of {@link OrderServiceImpl#createOrder}, enabled with
+ * {@code order.batching.enabled=true}. Orders arriving within
+ * {@code order.batching.window} of each other (at most
+ * {@code order.batching.max-size}) are handled together:
+ * one item lookup and one inventory reservation for the whole window, then
+ * concurrent non-blocking writes of each order's logged batch. Every order is
+ * still checked on its own, so a missing or short product fails only the
+ * orders asking for it. Orders whose request deadline passed while they were
+ * queued are dropped; ItemService calls for the window carry the latest
+ * deadline among the rest. A caller waits until its request deadline (or
+ * {@code order.batching.timeout} without one); if its order has not been
+ * picked up by then it is withdrawn, so the order is never created after the
+ * caller was told it failed. Cancellation and history are delegated unchanged.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "order.batching.enabled", havingValue = "true")
+public class BatchingOrderServiceImpl implements OrderService {
+
+    private final OrderServiceImpl orderService;
+    private final ItemServiceClient itemServiceClient;
+    private final RequestHedger requestHedger;
+    private final ReactiveOrderOutbox orderOutbox;
+    private final BlockingQueue<PendingOrder> queue;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final int writeConcurrency;
+    private final Duration timeout;
+    private final Thread flusher = new Thread(this::run, "order-batcher");
+    private volatile boolean running = true;
+
+    public BatchingOrderServiceImpl(OrderServiceImpl orderService,
+                                    ItemServiceClient itemServiceClient,
+                                    RequestHedger requestHedger,
+                                    ReactiveOrderOutbox orderOutbox,
+                                    @Value("${order.batching.window:5ms}") Duration window,
+                                    @Value("${order.batching.max-size:100}") int maxBatchSize,
+                                    @Value("${order.batching.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${order.batching.write-concurrency:16}") int writeConcurrency,
+                                    @Value("${order.batching.timeout:10s}") Duration timeout) {
+        this.orderService = orderService;
+        this.itemServiceClient = itemServiceClient;
+        this.requestHedger = requestHedger;
+        this.orderOutbox = orderOutbox;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+        this.writeConcurrency = writeConcurrency;
+        this.timeout = timeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        flusher.interrupt();
+        PendingOrder pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException("Order service is shutting down"));
+        }
+    }
+
+    @Override
+    public Order createOrder(OrderRequest orderRequest) {
+        PendingOrder pending = new PendingOrder(orderRequest);
+        if (!queue.offer(pending)) {
+            throw new IllegalStateException("Too many orders in progress, try again later");
+        }
+        long waitMillis = pending.deadline.isPresent()
+                ? Math.max(0, RequestDeadline.remainingMillis().orElse(0))
+                : timeout.toMillis();
+        try {
+            return pending.future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (pending.withdraw()) {
+                queue.remove(pending);
+                throw pending.deadline.isPresent()
+                        ? RequestDeadline.exceeded("batch")
+                        : new IllegalStateException("Timed out waiting for the order to be processed");
+            }
+            // The flusher already took the order; its outcome is decided by the calls in progress
+            return awaitOutcome(pending);
+        } catch (ExecutionException e) {
+            throw failure(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (pending.withdraw()) {
+                queue.remove(pending);
+            }
+            throw new IllegalStateException("Interrupted while waiting for the order to be processed", e);
+        }
+    }
+
+    private static Order awaitOutcome(PendingOrder pending) {
+        try {
+            return pending.future.get();
+        } catch (ExecutionException e) {
+            throw failure(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the order to be processed", e);
+        }
+    }
+
+    private static RuntimeException failure(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        return new IllegalStateException("Order creation failed", e.getCause());
+    }
+
+    @Override
+    public OrderHistoryPage findOrdersByUserId(Long userId, int size, String cursor) {
+        return orderService.findOrdersByUserId(userId, size, cursor);
+    }
+
+    @Override
+    public Order cancelOrder(UUID orderId) {
+        return orderService.cancelOrder(orderId);
+    }
+
+    @Override
+    public Order updateStatus(UUID orderId, OrderStatus status) {
+        return orderService.updateStatus(orderId, status);
+    }
+
+    // Collects a window starting with the first waiting order, then processes it
+    private void run() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingOrder next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // No-op for orders that already have their outcome
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void flush(List<PendingOrder> batch) {
+        List<PendingOrder> live = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            if (!pending.claim()) {
+                // The caller gave up before the window was flushed
+                continue;
+            }
+            if (RequestDeadline.expired(pending.deadline)) {
+                pending.future.completeExceptionally(RequestDeadline.exceeded("batch"));
+            } else {
+                live.add(pending);
+            }
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+        // An order without a deadline leaves the whole window without one
+        OptionalLong deadline = live.stream().allMatch(pending -> pending.deadline.isPresent())
+                ? live.stream().mapToLong(pending -> pending.deadline.getAsLong()).reduce((a, b) -> a - b < 0 ? b : a)
+                : OptionalLong.empty();
+        RequestDeadline.set(deadline);
+        try {
+            process(live);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private void process(List<PendingOrder> batch) {
+        // 1. Fetch price and stock for every product in the window at once
+        Set<String> ids = new LinkedHashSet<>();
+        batch.forEach(pending -> ids.addAll(pending.quantities.keySet()));
+        Map<String, ItemSummary> items = new HashMap<>();
+        List<String> lookup = new ArrayList<>(ids);
+        for (ItemSummary item : requestHedger.call(() -> itemServiceClient.getItemSummaries(lookup))) {
+            items.put(item.id(), item);
+        }
+
+        // 2. Check and price each order against the stock left by the orders before it
+        Map<String, Integer> remaining = new HashMap<>();
+        items.values().forEach(item -> remaining.put(item.id(), item.availableUnits()));
+        List<PendingOrder> accepted = new ArrayList<>();
+        for (PendingOrder pending : batch) {
+            try {
+                List<ItemSummary> left = pending.quantities.keySet().stream()
+                        .filter(items::containsKey)
+                        .map(id -> new ItemSummary(id, items.get(id).unitPrice(), remaining.get(id)))
+                        .toList();
+                OrderRules.verify(pending.quantities, pending.quantities.keySet(), left);
+                pending.quantities.forEach((id, quantity) -> remaining.merge(id, -quantity, Integer::sum));
+                pending.order = OrderRules.newOrder(pending.request, items);
+                accepted.add(pending);
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        // 3. Reserve inventory for the whole window in a single ItemService call
+        List<PendingOrder> reserved = reserve(accepted);
+
+        // 4. Save every order with its event concurrently; the outbox relay publishes them to Kafka
+        List<PendingOrder> unsaved = Flux.fromIterable(reserved)
+                .flatMap(pending -> orderOutbox.save(pending.order, OrderRules.ORDER_CREATED_TOPIC, OrderRules.createdEvent(pending.order))
+                        .doOnNext(pending.future::complete)
+                        .then(Mono.<PendingOrder>empty())
+                        .onErrorResume(e -> {
+                            pending.future.completeExceptionally(e);
+                            return Mono.just(pending);
+                        }), writeConcurrency)
+                .collectList()
+                .block();
+
+        // 5. Give the reserved units back for orders that could not be recorded
+        if (unsaved != null && !unsaved.isEmpty()) {
+            try {
+                RequestDeadline.detached(() -> itemServiceClient.updateInventoryBatch(inventoryChanges(unsaved, 1)));
+            } catch (RuntimeException e) {
+                log.error("Could not release stock of {} unsaved orders", unsaved.size(), e);
+            }
+        }
+    }
+
+    /*
+     * All or nothing for the window. Only a 409 Conflict says for certain that no stock was taken, so only then are
+     * orders reserved one by one. Any other failure (a timeout, a 5xx) may come after ItemService applied the batch:
+     * retrying could take the stock twice, and releasing could return stock that was never taken, so the orders fail
+     * and the changes are logged for reconciliation.
+     */
+    private List<PendingOrder> reserve(List<PendingOrder> accepted) {
+        ItemServiceClient.BatchInventoryRequest changes = inventoryChanges(accepted, -1);
+        try {
+            itemServiceClient.updateInventoryBatch(changes);
+            return accepted;
+        } catch (FeignException.Conflict e) {
+            List<PendingOrder> reserved = new ArrayList<>();
+            for (int i = 0; i < accepted.size(); i++) {
+                PendingOrder pending = accepted.get(i);
+                ItemServiceClient.BatchInventoryRequest orderChanges = OrderRules.inventoryChanges(pending.order.getItems(), -1);
+                try {
+                    itemServiceClient.updateInventoryBatch(orderChanges);
+                    reserved.add(pending);
+                } catch (FeignException.Conflict rejected) {
+                    pending.future.completeExceptionally(new InsufficientStockException("Insufficient stock for the order", rejected));
+                } catch (RuntimeException unknown) {
+                    log.error("Outcome of stock reservation {} unknown, reconcile it with ItemService", orderChanges.adjustments(), unknown);
+                    accepted.subList(i, accepted.size()).forEach(rest -> rest.future.completeExceptionally(unknown));
+                    break;
+                }
+            }
+            return reserved;
+        } catch (RuntimeException unknown) {
+            log.error("Outcome of stock reservation {} unknown, reconcile it with ItemService", changes.adjustments(), unknown);
+            accepted.forEach(pending -> pending.future.completeExceptionally(unknown));
+            return List.of();
+        }
+    }
+
+    // Stock changes of several orders, added up per product
+    private static ItemServiceClient.BatchInventoryRequest inventoryChanges(List<PendingOrder> orders, int sign) {
+        Map<String, Integer> changes = new LinkedHashMap<>();
+        for (PendingOrder pending : orders) {
+            for (OrderItem item : pending.order.getItems()) {
+                changes.merge(item.getProductId(), sign * item.getQuantity(), Integer::sum);
+            }
+        }
+        return new ItemServiceClient.BatchInventoryRequest(changes.entrySet().stream()
+                .map(change -> new ItemServiceClient.InventoryAdjustment(change.getKey(), change.getValue()))
+                .toList());
+    }
+
+    static final class PendingOrder {
+        final OrderRequest request;
+        final Map<String, Integer> quantities;
+        final CompletableFuture<Order> future = new CompletableFuture<>();
+        final OptionalLong deadline = RequestDeadline.current();
+        // QUEUED until either the flusher claims the order or the caller withdraws it
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        Order order;
+
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int WITHDRAWN = 2;
+
+        PendingOrder(OrderRequest request) {
+            this.request = request;
+            this.quantities = OrderRules.quantities(request);
+        }
+
+        boolean claim() {
+            return state.compareAndSet(QUEUED, CLAIMED);
+        }
+
+        boolean withdraw() {
+            return state.compareAndSet(QUEUED, WITHDRAWN);
+        }
+    }
+}
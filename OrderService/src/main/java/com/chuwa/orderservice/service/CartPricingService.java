@@ -0,0 +1,18 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemSummary;
+
+import java.util.Map;
+
+public interface CartPricingService {
+
+    /**
+     * Looks up the price and stock of every product in the cart and checks
+     * that each one exists and has enough units.
+     * @param quantities The requested quantity per product ID.
+     * @return The price and stock of each product, keyed by product ID.
+     * @throws IllegalArgumentException if a product does not exist.
+     * @throws IllegalStateException if a product has insufficient stock, or the lookup timed out.
+     */
+    Map<String, ItemSummary> verifyAvailability(Map<String, Integer> quantities);
+}
@@ -0,0 +1,137 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits large carts into chunks of {@code order.item-lookup.chunk-size} IDs
+ * and looks the chunks up concurrently, so checkout latency stays close to
+ * one ItemService round trip as the cart grows. Each chunk is checked as soon
+ * as it arrives; the first missing or short product cancels the remaining
+ * lookups, and the whole lookup is bounded by {@code order.item-lookup.timeout}
+ * or the request deadline, whichever comes first. Each lookup goes through the
+ * {@link RequestHedger} and carries the request deadline.
+ */
+@Service
+public class CartPricingServiceImpl implements CartPricingService {
+
+    private final ItemServiceClient itemServiceClient;
+    private final RequestHedger requestHedger;
+    private final int chunkSize;
+    private final Duration timeout;
+    // Caps in-flight calls across all checkouts, whatever kind of thread runs them
+    private final Semaphore inFlight;
+    private final ExecutorService executor;
+
+    public CartPricingServiceImpl(ItemServiceClient itemServiceClient,
+                                  RequestHedger requestHedger,
+                                  @Value("${order.item-lookup.chunk-size:25}") int chunkSize,
+                                  @Value("${order.item-lookup.max-concurrency:32}") int maxConcurrency,
+                                  @Value("${order.item-lookup.timeout:2s}") Duration timeout) {
+        this.itemServiceClient = itemServiceClient;
+        this.requestHedger = requestHedger;
+        this.chunkSize = chunkSize;
+        this.timeout = timeout;
+        this.inFlight = new Semaphore(maxConcurrency);
+        this.executor = newExecutor(maxConcurrency);
+    }
+
+    @Override
+    public Map<String, ItemSummary> verifyAvailability(Map<String, Integer> quantities) {
+        List<String> ids = new ArrayList<>(quantities.keySet());
+        // Small carts need no fan-out
+        if (ids.size() <= chunkSize) {
+            return OrderRules.verify(quantities, ids, requestHedger.call(() -> itemServiceClient.getItemSummaries(ids)));
+        }
+
+        // 1. Submit one lookup per chunk
+        CompletionService<Map<String, ItemSummary>> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Map<String, ItemSummary>>> futures = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += chunkSize) {
+            List<String> chunk = ids.subList(start, Math.min(start + chunkSize, ids.size()));
+            Callable<Map<String, ItemSummary>> task = () -> lookup(quantities, chunk);
+            futures.add(completion.submit(RequestDeadline.wrapCallable(task)));
+        }
+
+        // 2. Collect chunks in completion order, stopping at the first failure or the deadline
+        Map<String, ItemSummary> items = new HashMap<>();
+        OptionalLong requestDeadline = RequestDeadline.current();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        if (requestDeadline.isPresent() && requestDeadline.getAsLong() - deadline < 0) {
+            deadline = requestDeadline.getAsLong();
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Map<String, ItemSummary>> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (RequestDeadline.expired(requestDeadline)) {
+                        throw RequestDeadline.exceeded("item-lookup");
+                    }
+                    throw new IllegalStateException("Timed out looking up items after " + timeout.toMillis() + " ms");
+                }
+                items.putAll(done.get());
+            }
+            return items;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while looking up items", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Item lookup failed", e.getCause());
+        } finally {
+            // 3. No-op once everything completed; otherwise stops the lookups still running
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Map<String, ItemSummary> lookup(Map<String, Integer> quantities, List<String> chunk) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            return OrderRules.verify(quantities, chunk, requestHedger.call(() -> itemServiceClient.getItemSummaries(chunk)));
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    // Virtual threads when the JDK has them (21+), otherwise a fixed pool of daemon threads
+    static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "item-lookup-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.chuwa.orderservice.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// A product of the order does not have enough stock; a business outcome, not a server failure
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InsufficientStockException extends IllegalStateException {
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+
+    public InsufficientStockException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,32 @@
+package com.chuwa.orderservice.service;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Encodes the driver's paging state as a URL-safe token. The user ID is
+ * stored in front of it, so a token can only resume the history it came from.
+ */
+final class OrderHistoryCursor {
+
+    private OrderHistoryCursor() {
+    }
+
+    static String encode(Long userId, ByteBuffer pagingState) {
+        ByteBuffer state = pagingState.duplicate();
+        ByteBuffer token = ByteBuffer.allocate(Long.BYTES + state.remaining());
+        token.putLong(userId).put(state);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.array());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed or belongs to another user.
+     */
+    static ByteBuffer decode(Long userId, String cursor) {
+        ByteBuffer token = ByteBuffer.wrap(Base64.getUrlDecoder().decode(cursor));
+        if (token.remaining() <= Long.BYTES || token.getLong() != userId) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return token.slice();
+    }
+}
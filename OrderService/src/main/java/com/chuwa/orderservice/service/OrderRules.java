@@ -0,0 +1,158 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.event.OrderEvent;
+import com.chuwa.orderservice.event.OrderEventCodec;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderItem;
+import com.chuwa.orderservice.model.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The order rules shared by the blocking and the reactive order services, so
+ * both stacks validate, price and cancel orders in exactly the same way.
+ */
+final class OrderRules {
+
+    static final String ORDER_CREATED_TOPIC = "order-created-topic";
+    static final String ORDER_CANCELLED_TOPIC = "order-cancelled-topic";
+    static final int MAX_PAGE_SIZE = 100;
+
+    private OrderRules() {
+    }
+
+    // Requested units per product; repeated products are added up
+    static Map<String, Integer> quantities(OrderRequest orderRequest) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (OrderRequest.ProductInfo p : orderRequest.getProducts()) {
+            quantities.merge(p.getProductId(), p.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    /**
+     * Checks that every product in {@code ids} was found and has enough stock.
+     * @return The found items keyed by ID.
+     * @throws IllegalArgumentException if a product does not exist.
+     * @throws InsufficientStockException if a product has insufficient stock.
+     */
+    static Map<String, ItemSummary> verify(Map<String, Integer> quantities, Collection<String> ids, List<ItemSummary> found) {
+        Map<String, ItemSummary> items = new HashMap<>();
+        for (ItemSummary item : found) {
+            items.put(item.id(), item);
+        }
+        for (String id : ids) {
+            ItemSummary item = items.get(id);
+            if (item == null) {
+                throw new IllegalArgumentException("Product not found: " + id);
+            }
+            if (item.availableUnits() < quantities.get(id)) {
+                throw new InsufficientStockException("Insufficient stock for product: " + id);
+            }
+        }
+        return items;
+    }
+
+    // Builds a new order, pricing each line with the price at time of purchase
+    static Order newOrder(OrderRequest orderRequest, Map<String, ItemSummary> items) {
+        List<OrderItem> orderItems = new ArrayList<>();
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (OrderRequest.ProductInfo p : orderRequest.getProducts()) {
+            ItemSummary item = items.get(p.getProductId());
+
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProductId(p.getProductId());
+            orderItem.setQuantity(p.getQuantity());
+            orderItem.setPriceAtPurchase(item.unitPrice());
+            orderItems.add(orderItem);
+
+            totalAmount = totalAmount.add(item.unitPrice().multiply(BigDecimal.valueOf(p.getQuantity())));
+        }
+
+        Order order = new Order();
+        order.setId(UUID.randomUUID());
+        order.setUserId(orderRequest.getUserId());
+        order.setItems(orderItems);
+        order.setTotalAmount(totalAmount);
+        order.setStatus(OrderStatus.CREATED);
+        order.setCreatedAt(Instant.now());
+        return order;
+    }
+
+    /**
+     * A CANCELLED order may be cancelled again, which finishes a restock that
+     * failed or timed out the first time.
+     * @throws IllegalStateException if the order is not in a state that can be cancelled.
+     */
+    static void checkCancellable(Order order) {
+        if (order.getStatus() != OrderStatus.CREATED && order.getStatus() != OrderStatus.CANCELLED) {
+            throw notCancellable();
+        }
+    }
+
+    // Identifies the restock of an order to ItemService, so repeated cancels return its stock only once
+    static String restockKey(UUID orderId) {
+        return "order-" + orderId + "-restock";
+    }
+
+    static IllegalStateException notCancellable() {
+        return new IllegalStateException("Cannot cancel an order that is not in CREATED state.");
+    }
+
+    /**
+     * @throws IllegalArgumentException for CANCELLED, which needs {@code cancelOrder} to restock.
+     * @throws IllegalStateException if the order cannot move from its current status to {@code next}.
+     */
+    static void checkTransition(Order order, OrderStatus next) {
+        if (next == OrderStatus.CANCELLED) {
+            throw new IllegalArgumentException("Orders are cancelled through the cancel endpoint");
+        }
+        if (!order.getStatus().canTransitionTo(next)) {
+            throw transitionRejected(order.getStatus(), next);
+        }
+    }
+
+    static IllegalStateException transitionRejected(OrderStatus current, OrderStatus next) {
+        return new IllegalStateException("Cannot move an order from " + current + " to " + next + ".");
+    }
+
+    static int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, MAX_PAGE_SIZE));
+    }
+
+    static IllegalArgumentException orderNotFound(UUID orderId) {
+        return new IllegalArgumentException("Order not found with id: " + orderId);
+    }
+
+    static byte[] createdEvent(Order order) {
+        return event(OrderEvent.Type.ORDER_CREATED, order);
+    }
+
+    static byte[] cancelledEvent(Order order) {
+        return event(OrderEvent.Type.ORDER_CANCELLED, order);
+    }
+
+    private static byte[] event(OrderEvent.Type type, Order order) {
+        long userId = order.getUserId() == null ? 0 : order.getUserId();
+        BigDecimal amount = order.getTotalAmount() == null ? BigDecimal.ZERO : order.getTotalAmount();
+        return OrderEventCodec.encode(new OrderEvent(type, order.getId(), userId, amount, Instant.now()));
+    }
+
+    // Stock changes for all lines of an order; sign -1 reserves, +1 gives back
+    static ItemServiceClient.BatchInventoryRequest inventoryChanges(List<OrderItem> items, int sign) {
+        return new ItemServiceClient.BatchInventoryRequest(items.stream()
+                .map(oi -> new ItemServiceClient.InventoryAdjustment(oi.getProductId(), sign * oi.getQuantity()))
+                .toList());
+    }
+}
@@ -1,9 +1,9 @@
 package com.chuwa.orderservice.service;
 
+import com.chuwa.orderservice.dto.OrderHistoryPage;
 import com.chuwa.orderservice.dto.OrderRequest;
 import com.chuwa.orderservice.model.Order;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Slice;
+import com.chuwa.orderservice.model.OrderStatus;
 
 import java.util.List;
 import java.util.UUID;
@@ -12,5 +12,6 @@ import java.util.UUID;
 public interface OrderService {
     Order createOrder(OrderRequest orderRequest);
     Order cancelOrder(UUID orderId); // <-- Add this
-    Slice<Order> findOrdersByUserId(Long userId, Pageable pageable);
+    Order updateStatus(UUID orderId, OrderStatus status);
+    OrderHistoryPage findOrdersByUserId(Long userId, int size, String cursor);
 }
\ No newline at end of file
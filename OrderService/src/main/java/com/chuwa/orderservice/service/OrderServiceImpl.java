@@ -1,22 +1,25 @@
 package com.chuwa.orderservice.service;
 
 import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import com.chuwa.orderservice.dto.OrderHistoryPage;
 import com.chuwa.orderservice.dto.OrderRequest;
 import com.chuwa.orderservice.model.Order;
-import com.chuwa.orderservice.model.OrderItem;
 import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.outbox.OrderOutbox;
 import com.chuwa.orderservice.repository.OrderRepository;
+import com.chuwa.orderservice.repository.OrderSummaryRepository;
+import feign.FeignException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Slice;
 
-import java.math.BigDecimal;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -24,62 +27,52 @@ import java.util.UUID;
 public class OrderServiceImpl implements OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderSummaryRepository orderSummaryRepository;
     private final ItemServiceClient itemServiceClient;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final CartPricingService cartPricingService;
+    private final OrderOutbox orderOutbox;
 
     @Override
     @Transactional
     public Order createOrder(OrderRequest orderRequest) {
-        List<OrderItem> orderItems = new ArrayList<>();
-        BigDecimal totalAmount = BigDecimal.ZERO;
-
-        // 1. Verify each product's availability and price from ItemService
-        for (OrderRequest.ProductInfo p : orderRequest.getProducts()) {
-            // Call ItemService using Feign client
-            var item = itemServiceClient.getItemById(p.getProductId());
-
-            if (item == null) {
-                throw new IllegalArgumentException("Product not found: " + p.getProductId());
-            }
-            if (item.getAvailableUnits() < p.getQuantity()) {
-                throw new IllegalStateException("Insufficient stock for product: " + item.getItemName());
-            }
-
-            // Create an OrderItem with the price at time of purchase
-            OrderItem orderItem = new OrderItem();
-            orderItem.setProductId(p.getProductId());
-            orderItem.setQuantity(p.getQuantity());
-            orderItem.setPriceAtPurchase(item.getUnitPrice());
-            orderItems.add(orderItem);
-
-            totalAmount = totalAmount.add(item.getUnitPrice().multiply(BigDecimal.valueOf(p.getQuantity())));
-        }
+        // 1. Fetch price and stock for the whole cart, failing on the first missing or short product
+        Map<String, ItemSummary> items = cartPricingService.verifyAvailability(OrderRules.quantities(orderRequest));
 
-        // 2. Create and save the order
-        Order order = new Order();
-        order.setId(UUID.randomUUID());
-        order.setUserId(orderRequest.getUserId());
-        order.setItems(orderItems);
-        order.setTotalAmount(totalAmount);
-        order.setStatus(OrderStatus.CREATED);
-        order.setCreatedAt(Instant.now());
-        orderRepository.save(order);
-
-        // 3. Update inventory in ItemService for each product
-        for (OrderItem oi : orderItems) {
-            var request = new ItemServiceClient.UpdateInventoryRequest(-oi.getQuantity());
-            itemServiceClient.updateInventory(oi.getProductId(), request);
-        }
+        // 2. Price each line with the price at time of purchase
+        Order order = OrderRules.newOrder(orderRequest, items);
 
-        // 4. Publish an event to Kafka
-        kafkaTemplate.send("order-created-topic", "Order created with ID: " + order.getId());
+        // 3. Reserve inventory for all products in a single ItemService call; 409 means another order took the stock first
+        try {
+            itemServiceClient.updateInventoryBatch(OrderRules.inventoryChanges(order.getItems(), -1));
+        } catch (FeignException.Conflict e) {
+            throw new InsufficientStockException("Insufficient stock for the order", e);
+        }
 
-        return order;
+        // 4. Save the order together with its event; the outbox relay publishes it to Kafka
+        try {
+            return orderOutbox.save(order, OrderRules.ORDER_CREATED_TOPIC, OrderRules.createdEvent(order));
+        } catch (RuntimeException e) {
+            // Give the reserved units back if the order could not be recorded, even past the deadline
+            RequestDeadline.detached(() -> itemServiceClient.updateInventoryBatch(OrderRules.inventoryChanges(order.getItems(), 1)));
+            throw e;
+        }
     }
 
     @Override
-    public Slice<Order> findOrdersByUserId(Long userId, Pageable pageable) {
-        return orderRepository.findByUserId(userId, pageable);
+    public OrderHistoryPage findOrdersByUserId(Long userId, int size, String cursor) {
+        // 1. Resume from the driver's paging state instead of skipping earlier rows
+        int pageSize = OrderRules.pageSize(size);
+        CassandraPageRequest request = cursor == null
+                ? CassandraPageRequest.first(pageSize)
+                : CassandraPageRequest.of(PageRequest.of(0, pageSize), OrderHistoryCursor.decode(userId, cursor));
+
+        // 2. Hand out the paging state of the next page as an opaque token
+        Slice<OrderSummary> slice = orderSummaryRepository.findByKeyUserId(userId, request);
+        String next = null;
+        if (slice.hasNext()) {
+            next = OrderHistoryCursor.encode(userId, ((CassandraPageRequest) slice.nextPageable()).getPagingState());
+        }
+        return new OrderHistoryPage(slice.getContent(), next);
     }
 
     @Override
@@ -87,27 +80,44 @@ public class OrderServiceImpl implements OrderService {
     public Order cancelOrder(UUID orderId) {
         // 1. Find the order or throw an exception
         Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new IllegalArgumentException("Order not found with id: " + orderId));
+                .orElseThrow(() -> OrderRules.orderNotFound(orderId));
 
         // 2. Check if the order is in a state that can be cancelled
-        if (order.getStatus() != OrderStatus.CREATED) {
-            throw new IllegalStateException("Cannot cancel an order that is not in CREATED state.");
-        }
+        OrderRules.checkCancellable(order);
 
-        // 3. Restock the items by calling the ItemService
-        for (OrderItem item : order.getItems()) {
-            // The quantityChange is positive to add the stock back
-            var request = new ItemServiceClient.UpdateInventoryRequest(item.getQuantity());
-            itemServiceClient.updateInventory(item.getProductId(), request);
+        // 3. Flip the status only if it is still CREATED; of two concurrent cancels, one loses here.
+        //    An order that is already CANCELLED goes straight on to finish its restock
+        if (order.getStatus() == OrderStatus.CREATED
+                && !orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED)) {
+            throw OrderRules.notCancellable();
         }
-
-        // 4. Update the order status and save
         order.setStatus(OrderStatus.CANCELLED);
-        Order cancelledOrder = orderRepository.save(order);
 
-        // 5. Publish an event to Kafka
-        kafkaTemplate.send("order-cancelled-topic", "Order cancelled with ID: " + orderId);
+        // 4. Restock all items with a single ItemService call (positive quantities add stock back),
+        //    even past the deadline. If it fails the order stays CANCELLED and the cancel can be sent
+        //    again; the key makes ItemService return the stock only once, even after a timeout
+        RequestDeadline.detached(() -> itemServiceClient.updateInventoryBatch(
+                OrderRules.restockKey(orderId), OrderRules.inventoryChanges(order.getItems(), 1)));
 
-        return cancelledOrder;
+        // 5. Update the history row and queue the event; a repeated cancel queues it again
+        return orderOutbox.recordStatusChange(order, OrderRules.ORDER_CANCELLED_TOPIC, OrderRules.cancelledEvent(order));
+    }
+
+    @Override
+    public Order updateStatus(UUID orderId, OrderStatus status) {
+        // 1. Find the order or throw an exception
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> OrderRules.orderNotFound(orderId));
+
+        // 2. Check the transition, then apply it only if nobody changed the status meanwhile
+        OrderRules.checkTransition(order, status);
+        if (!orderRepository.updateStatus(orderId, order.getStatus(), status)) {
+            throw OrderRules.transitionRejected(order.getStatus(), status);
+        }
+
+        // 3. Keep the history row in sync
+        order.setStatus(status);
+        orderSummaryRepository.save(OrderSummary.of(order));
+        return order;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.dto.OrderHistoryPage;
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderStatus;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public interface ReactiveOrderService {
+    Mono<Order> createOrder(OrderRequest orderRequest);
+    Mono<Order> cancelOrder(UUID orderId);
+    Mono<Order> updateStatus(UUID orderId, OrderStatus status);
+    Mono<OrderHistoryPage> findOrdersByUserId(Long userId, int size, String cursor);
+}
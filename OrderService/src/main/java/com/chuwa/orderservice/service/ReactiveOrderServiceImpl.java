@@ -0,0 +1,152 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.client.ReactiveItemServiceClient;
+import com.chuwa.orderservice.dto.OrderHistoryPage;
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.outbox.ReactiveOrderOutbox;
+import com.chuwa.orderservice.repository.ReactiveOrderRepository;
+import com.chuwa.orderservice.repository.ReactiveOrderSummaryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The order service for the reactive stack. It applies the same
+ * {@link OrderRules} as {@link OrderServiceImpl}, but every remote call and
+ * database access is non-blocking, so no thread waits on I/O.
+ */
+@Service
+public class ReactiveOrderServiceImpl implements ReactiveOrderService {
+
+    private final ReactiveOrderRepository orderRepository;
+    private final ReactiveOrderSummaryRepository orderSummaryRepository;
+    private final ReactiveItemServiceClient itemServiceClient;
+    private final ReactiveOrderOutbox orderOutbox;
+    private final int chunkSize;
+    private final int maxConcurrency;
+    private final Duration timeout;
+
+    public ReactiveOrderServiceImpl(ReactiveOrderRepository orderRepository,
+                                    ReactiveOrderSummaryRepository orderSummaryRepository,
+                                    ReactiveItemServiceClient itemServiceClient,
+                                    ReactiveOrderOutbox orderOutbox,
+                                    @Value("${order.item-lookup.chunk-size:25}") int chunkSize,
+                                    @Value("${order.item-lookup.max-concurrency:32}") int maxConcurrency,
+                                    @Value("${order.item-lookup.timeout:2s}") Duration timeout) {
+        this.orderRepository = orderRepository;
+        this.orderSummaryRepository = orderSummaryRepository;
+        this.itemServiceClient = itemServiceClient;
+        this.orderOutbox = orderOutbox;
+        this.chunkSize = chunkSize;
+        this.maxConcurrency = maxConcurrency;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Mono<Order> createOrder(OrderRequest orderRequest) {
+        return Mono.fromCallable(() -> OrderRules.quantities(orderRequest))
+                // 1. Fetch price and stock for the whole cart, failing on the first missing or short product
+                .flatMap(this::verifyAvailability)
+                // 2. Price each line with the price at time of purchase
+                .map(items -> OrderRules.newOrder(orderRequest, items))
+                // 3. Reserve inventory, then 4. save the order together with its event;
+                // 409 means another order took the stock first
+                .flatMap(order -> itemServiceClient.updateInventoryBatch(OrderRules.inventoryChanges(order.getItems(), -1))
+                        .onErrorMap(WebClientResponseException.Conflict.class,
+                                e -> new InsufficientStockException("Insufficient stock for the order", e))
+                        // Deferred so nothing is written unless the reservation succeeded
+                        .then(Mono.defer(() -> orderOutbox.save(order, OrderRules.ORDER_CREATED_TOPIC, OrderRules.createdEvent(order)))
+                                // Give the reserved units back if the order could not be recorded
+                                .onErrorResume(e -> itemServiceClient
+                                        .updateInventoryBatch(OrderRules.inventoryChanges(order.getItems(), 1))
+                                        .then(Mono.error(e)))));
+    }
+
+    @Override
+    public Mono<Order> cancelOrder(UUID orderId) {
+        // 1. Find the order or fail
+        return orderRepository.findById(orderId)
+                .switchIfEmpty(Mono.error(() -> OrderRules.orderNotFound(orderId)))
+                .flatMap(order -> {
+                    // 2. Check if the order is in a state that can be cancelled
+                    OrderRules.checkCancellable(order);
+
+                    // 3. Flip the status only if it is still CREATED; an order already CANCELLED finishes its restock
+                    if (order.getStatus() == OrderStatus.CANCELLED) {
+                        return Mono.just(order);
+                    }
+                    return orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED)
+                            .flatMap(applied -> applied ? Mono.just(order) : Mono.error(OrderRules.notCancellable()));
+                })
+                .flatMap(order -> {
+                    order.setStatus(OrderStatus.CANCELLED);
+                    // 4. Restock all items once per order; if this fails the order stays CANCELLED for a repeated cancel
+                    return itemServiceClient.updateInventoryBatch(OrderRules.restockKey(orderId),
+                                    OrderRules.inventoryChanges(order.getItems(), 1))
+                            // 5. Update the history row and queue the event
+                            .then(Mono.defer(() -> orderOutbox.recordStatusChange(
+                                    order, OrderRules.ORDER_CANCELLED_TOPIC, OrderRules.cancelledEvent(order))));
+                });
+    }
+
+    @Override
+    public Mono<Order> updateStatus(UUID orderId, OrderStatus status) {
+        return orderRepository.findById(orderId)
+                .switchIfEmpty(Mono.error(() -> OrderRules.orderNotFound(orderId)))
+                .flatMap(order -> {
+                    // Check the transition, then apply it only if nobody changed the status meanwhile
+                    OrderRules.checkTransition(order, status);
+                    OrderStatus current = order.getStatus();
+                    return orderRepository.updateStatus(orderId, current, status)
+                            .flatMap(applied -> {
+                                if (!applied) {
+                                    return Mono.error(OrderRules.transitionRejected(current, status));
+                                }
+                                order.setStatus(status);
+                                return orderSummaryRepository.save(OrderSummary.of(order)).thenReturn(order);
+                            });
+                });
+    }
+
+    @Override
+    public Mono<OrderHistoryPage> findOrdersByUserId(Long userId, int size, String cursor) {
+        return Mono.fromCallable(() -> cursor == null
+                        ? CassandraPageRequest.first(OrderRules.pageSize(size))
+                        : CassandraPageRequest.of(PageRequest.of(0, OrderRules.pageSize(size)),
+                                OrderHistoryCursor.decode(userId, cursor)))
+                .flatMap(request -> orderSummaryRepository.findByKeyUserId(userId, request))
+                .map(slice -> new OrderHistoryPage(slice.getContent(), slice.hasNext()
+                        ? OrderHistoryCursor.encode(userId, ((CassandraPageRequest) slice.nextPageable()).getPagingState())
+                        : null));
+    }
+
+    // Looks up the cart in chunks, at most maxConcurrency at a time; the first failing chunk cancels the rest
+    private Mono<Map<String, ItemSummary>> verifyAvailability(Map<String, Integer> quantities) {
+        List<String> ids = new ArrayList<>(quantities.keySet());
+        List<List<String>> chunks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += chunkSize) {
+            chunks.add(ids.subList(start, Math.min(start + chunkSize, ids.size())));
+        }
+        return Flux.fromIterable(chunks)
+                .flatMap(chunk -> itemServiceClient.getItemSummaries(chunk)
+                        .map(found -> OrderRules.verify(quantities, chunk, found)), maxConcurrency)
+                .flatMapIterable(Map::entrySet)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .timeout(timeout, Mono.error(() ->
+                        new IllegalStateException("Timed out looking up items after " + timeout.toMillis() + " ms")));
+    }
+}
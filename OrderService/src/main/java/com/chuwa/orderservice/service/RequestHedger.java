@@ -0,0 +1,211 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent ItemService reads, enabled with
+ * {@code item-service.hedging.enabled=true}. When a call has not answered
+ * within the {@code item-service.hedging.percentile} latency of recent calls
+ * (but at least {@code item-service.hedging.min-delay}), the same call is
+ * sent a second time and whichever answer arrives first is used.
+ * <p>
+ * Hedges are paid from a budget: every call adds
+ * {@code item-service.hedging.budget-percent} percent of a token, a hedge
+ * costs a whole one, and at most {@code item-service.hedging.max-burst}
+ * tokens are saved up. Extra load is therefore capped at that percentage of
+ * normal traffic; when ItemService is down and every call is slow, the
+ * budget runs dry and calls simply wait instead of doubling the load.
+ * <p>
+ * A call is handed straight to an idle thread and never queued; when every
+ * thread is busy it runs on the caller's thread and is not hedged. Hedges
+ * have a pool of their own with a short bounded queue, and a hedge that does
+ * not fit is dropped. Latencies are timed from the moment a call starts
+ * running, so waiting for a thread never moves the hedging delay.
+ * <p>
+ * {@code item-service.hedges} counts hedges by {@code result}: sent, won
+ * (the hedge answered first) and throttled (no budget or no room left).
+ */
+@Component
+public class RequestHedger {
+
+    private static final int WINDOW = 1000;
+    private static final int MIN_SAMPLES = 100;
+    private static final int RECOMPUTE_EVERY = 100;
+    private static final long TOKEN = 1000;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long deposit;
+    private final long maxBudget;
+    private final AtomicLong budget = new AtomicLong();
+    private final ExecutorService primaries;
+    private final ExecutorService hedges;
+    private final Counter sent;
+    private final Counter won;
+    private final Counter throttled;
+
+    // Latencies of recent calls, guarded by this
+    private final long[] samples = new long[WINDOW];
+    private long recorded;
+    // Negative until enough calls have been seen to pick a delay
+    private volatile long delayNanos = -1;
+
+    public RequestHedger(MeterRegistry meterRegistry,
+                         @Value("${item-service.hedging.enabled:false}") boolean enabled,
+                         @Value("${item-service.hedging.percentile:0.95}") double percentile,
+                         @Value("${item-service.hedging.min-delay:10ms}") Duration minDelay,
+                         @Value("${item-service.hedging.budget-percent:10}") int budgetPercent,
+                         @Value("${item-service.hedging.max-burst:20}") int maxBurst,
+                         @Value("${order.item-lookup.max-concurrency:32}") int maxConcurrency) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.deposit = TOKEN * budgetPercent / 100;
+        this.maxBudget = TOKEN * maxBurst;
+        // Without an idle thread the primary runs on the caller's thread, even during shutdown
+        this.primaries = enabled ? newExecutor("item-lookup-primary-", maxConcurrency, new SynchronousQueue<>(),
+                (task, pool) -> task.run()) : null;
+        this.hedges = enabled ? newExecutor("item-lookup-hedge-", maxConcurrency, new ArrayBlockingQueue<>(maxConcurrency),
+                new ThreadPoolExecutor.AbortPolicy()) : null;
+        this.sent = hedgeCounter(meterRegistry, "sent");
+        this.won = hedgeCounter(meterRegistry, "won");
+        this.throttled = hedgeCounter(meterRegistry, "throttled");
+    }
+
+    /**
+     * Runs every request once, without hedging.
+     */
+    public static RequestHedger disabled() {
+        return new RequestHedger(new SimpleMeterRegistry(), false, 0.95, Duration.ZERO, 0, 0, 1);
+    }
+
+    /**
+     * @param request An idempotent call; it may run twice.
+     * @return The first answer; an exception thrown by the first finishing call is rethrown.
+     */
+    public <T> T call(Supplier<T> request) {
+        if (!enabled) {
+            return request.get();
+        }
+        budget.getAndUpdate(tokens -> Math.min(maxBudget, tokens + deposit));
+
+        // 1. Start the call at once and remember how long it really took, whoever wins
+        Supplier<T> task = RequestDeadline.wrap(request);
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return task.get();
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        }, primaries);
+
+        try {
+            long delay = delayNanos;
+            if (delay < 0) {
+                return primary.get();
+            }
+            try {
+                return primary.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // 2. Slower than usual: hedge if the budget allows, otherwise keep waiting
+                if (!withdraw()) {
+                    throttled.increment();
+                    return primary.get();
+                }
+                CompletableFuture<T> hedge;
+                try {
+                    hedge = CompletableFuture.supplyAsync(task, hedges);
+                } catch (RejectedExecutionException full) {
+                    budget.addAndGet(TOKEN);
+                    throttled.increment();
+                    return primary.get();
+                }
+                sent.increment();
+                CompletableFuture.anyOf(primary, hedge).exceptionally(error -> null).get();
+                if (!primary.isDone()) {
+                    won.increment();
+                    return hedge.get();
+                }
+                return primary.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("ItemService call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling ItemService", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (primaries != null) {
+            primaries.shutdownNow();
+            hedges.shutdownNow();
+        }
+    }
+
+    private boolean withdraw() {
+        long tokens;
+        do {
+            tokens = budget.get();
+            if (tokens < TOKEN) {
+                return false;
+            }
+        } while (!budget.compareAndSet(tokens, tokens - TOKEN));
+        return true;
+    }
+
+    private synchronized void record(long nanos) {
+        samples[(int) (recorded++ % WINDOW)] = nanos;
+        if (recorded >= MIN_SAMPLES && recorded % RECOMPUTE_EVERY == 0) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(recorded, WINDOW));
+            Arrays.sort(sorted);
+            delayNanos = Math.max(minDelayNanos, sorted[(int) (percentile * (sorted.length - 1))]);
+        }
+    }
+
+    private static ExecutorService newExecutor(String name, int threads, BlockingQueue<Runnable> queue,
+                                               RejectedExecutionHandler whenFull) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, task -> {
+            Thread thread = new Thread(task, name + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, whenFull);
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("item-service.hedges")
+                .description("Second attempts of slow ItemService reads")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,83 @@
+package com.chuwa.orderservice;
+
+import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.service.CartPricingServiceImpl;
+import com.chuwa.orderservice.service.RequestHedger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares cart verification latency for growing carts against a stubbed
+ * ItemService whose response time is a fixed round trip plus a cost per ID:
+ * one lookup for the whole cart versus concurrent chunked lookups.
+ * Only runs with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CartPricingBenchmarkTests {
+
+    private static final Duration ROUND_TRIP = Duration.ofMillis(20);
+    private static final Duration PER_ITEM = Duration.ofNanos(400_000);
+    private static final int[] CART_SIZES = {10, 50, 200, 1000};
+    private static final int RUNS = 20;
+
+    @Test
+    void latencyByCartSize() {
+        ItemServiceClient itemServiceClient = mock(ItemServiceClient.class);
+        when(itemServiceClient.getItemSummaries(anyList())).thenAnswer(inv -> {
+            List<String> ids = inv.getArgument(0);
+            LockSupport.parkNanos(ROUND_TRIP.toNanos() + PER_ITEM.toNanos() * ids.size());
+            return ids.stream().map(id -> new ItemSummary(id, BigDecimal.ONE, 1_000)).toList();
+        });
+        CartPricingServiceImpl single = new CartPricingServiceImpl(itemServiceClient, RequestHedger.disabled(), Integer.MAX_VALUE, 32, Duration.ofMinutes(1));
+        CartPricingServiceImpl chunked = new CartPricingServiceImpl(itemServiceClient, RequestHedger.disabled(), 25, 64, Duration.ofMinutes(1));
+
+        try {
+            System.out.printf("%-10s %14s %14s%n", "cart size", "single (ms)", "chunked (ms)");
+            long[] chunkedMedians = new long[CART_SIZES.length];
+            for (int i = 0; i < CART_SIZES.length; i++) {
+                Map<String, Integer> cart = cart(CART_SIZES[i]);
+                long singleMs = median(() -> single.verifyAvailability(cart));
+                chunkedMedians[i] = median(() -> chunked.verifyAvailability(cart));
+                System.out.printf("%-10d %14d %14d%n", CART_SIZES[i], singleMs, chunkedMedians[i]);
+            }
+            // 100x more items should cost well under 2x the time
+            assertThat(chunkedMedians[CART_SIZES.length - 1]).isLessThan(2 * chunkedMedians[0]);
+        } finally {
+            single.shutdown();
+            chunked.shutdown();
+        }
+    }
+
+    private long median(Runnable lookup) {
+        long[] samples = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            lookup.run();
+            samples[run] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+
+    private Map<String, Integer> cart(int size) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            quantities.put("item-" + i, 1);
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,81 @@
+package com.chuwa.orderservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Places orders against two running OrderService instances, one started with
+ * the default servlet stack and one with
+ * {@code spring.main.web-application-type=reactive}, and prints latency
+ * percentiles and throughput at growing concurrency. The product given by
+ * {@code load.product-id} needs enough stock for every request.
+ * Only runs with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderStackLoadTests {
+
+    private static final int[] CONCURRENCY = {16, 64, 256, 1024};
+    private static final int REQUESTS_PER_CLIENT = 20;
+
+    @Test
+    void latencyByConcurrency() {
+        String productId = System.getProperty("load.product-id", "load-test-item");
+        Map<String, String> stacks = Map.of(
+                "blocking", System.getProperty("load.blocking-url", "http://localhost:8083"),
+                "reactive", System.getProperty("load.reactive-url", "http://localhost:8084"));
+
+        System.out.printf("%-10s %12s %10s %10s %10s %10s%n", "stack", "concurrency", "p50 (ms)", "p99 (ms)", "req/s", "errors");
+        stacks.forEach((stack, url) -> {
+            WebClient webClient = WebClient.create(url);
+            for (int concurrency : CONCURRENCY) {
+                run(stack, webClient, productId, concurrency);
+            }
+        });
+    }
+
+    private static void run(String stack, WebClient webClient, String productId, int concurrency) {
+        int requests = concurrency * REQUESTS_PER_CLIENT;
+        long start = System.nanoTime();
+        List<Long> latencies = Flux.range(0, requests)
+                .flatMap(i -> placeOrder(webClient, productId, i), concurrency)
+                .collectList()
+                .block();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] ok = latencies.stream().filter(nanos -> nanos >= 0).mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%-10s %12d %10d %10d %10.0f %10d%n", stack, concurrency,
+                percentile(ok, 0.50), percentile(ok, 0.99), ok.length / seconds, requests - ok.length);
+    }
+
+    // Emits the request latency in nanoseconds, or -1 for a failed request
+    private static Mono<Long> placeOrder(WebClient webClient, String productId, int i) {
+        Map<String, Object> order = Map.of(
+                "userId", (long) i,
+                "products", List.of(Map.of("productId", productId, "quantity", 1)));
+        return Mono.defer(() -> {
+            long sent = System.nanoTime();
+            return webClient.post().uri("/api/orders")
+                    .bodyValue(order)
+                    .retrieve()
+                    .toBodilessEntity()
+                    .map(response -> System.nanoTime() - sent);
+        })
+                .timeout(Duration.ofSeconds(30))
+                .onErrorReturn(-1L);
+    }
+
+    private static long percentile(long[] sortedNanos, double p) {
+        if (sortedNanos.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return Duration.ofNanos(sortedNanos[Math.max(0, index)]).toMillis();
+    }
+}
@@ -0,0 +1,98 @@
+package com.chuwa.orderservice.client;
+
+import com.chuwa.orderservice.deadline.DeadlineExceededException;
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import feign.RequestTemplate;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeadlineRequestInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeadlineRequestInterceptor interceptor = new DeadlineRequestInterceptor();
+
+    @BeforeEach
+    void setUp() {
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void apply_withoutDeadline_shouldNotAddHeader() {
+        // Arrange
+        RequestTemplate template = new RequestTemplate();
+
+        // Act
+        interceptor.apply(template);
+
+        // Assert
+        assertThat(template.headers()).doesNotContainKey(RequestDeadline.HEADER);
+    }
+
+    @Test
+    void apply_shouldSendTheTimeLeft() {
+        // Arrange
+        RequestDeadline.start(Duration.ofSeconds(2));
+        RequestTemplate template = new RequestTemplate();
+
+        // Act
+        interceptor.apply(template);
+
+        // Assert
+        long sent = Long.parseLong(template.headers().get(RequestDeadline.HEADER).iterator().next());
+        assertThat(sent).isBetween(1L, 2000L);
+    }
+
+    @Test
+    void apply_whenDeadlinePassed_shouldFailWithoutSendingAndCountIt() {
+        // Arrange
+        RequestDeadline.start(Duration.ZERO);
+
+        // Act & Assert
+        assertThrows(DeadlineExceededException.class, () -> interceptor.apply(new RequestTemplate()));
+        assertThat(meterRegistry.get("order.deadline.exceeded").tag("stage", "item-service").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void wrap_shouldCarryTheDeadlineToAnotherThread() {
+        // Arrange
+        RequestDeadline.start(Duration.ofSeconds(2));
+        Supplier<Boolean> task = RequestDeadline.wrap(() -> RequestDeadline.current().isPresent());
+
+        // Act & Assert
+        assertThat(CompletableFuture.supplyAsync(task).join()).isTrue();
+    }
+
+    @Test
+    void detached_shouldRunWithoutTheDeadlineAndRestoreIt() {
+        // Arrange
+        RequestDeadline.start(Duration.ZERO);
+        RequestTemplate template = new RequestTemplate();
+
+        // Act: a compensating call still goes out after the deadline
+        RequestDeadline.detached(() -> {
+            interceptor.apply(template);
+            return null;
+        });
+
+        // Assert
+        assertThat(template.headers()).doesNotContainKey(RequestDeadline.HEADER);
+        assertThat(RequestDeadline.current()).isPresent();
+    }
+}
@@ -0,0 +1,113 @@
+package com.chuwa.orderservice.client;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ItemServiceResilienceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ItemServiceResilience resilience;
+
+    @BeforeEach
+    void setUp() {
+        // One inventory call at a time, breaker opens at 50% failures over the last 4 calls
+        resilience = new ItemServiceResilience(meterRegistry, 4, 1, Duration.ZERO,
+                50, Duration.ofSeconds(1), 4, 4, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void enrich_whenItemServiceKeepsFailing_shouldOpenCircuitAndFailFast() throws Exception {
+        // Arrange
+        Client itemService = (request, options) -> response(request, 503);
+        Client client = resilience.enrich(itemService);
+
+        // Act: four 503s fill the window
+        for (int i = 0; i < 4; i++) {
+            assertThat(client.execute(request(Request.HttpMethod.POST), options()).status()).isEqualTo(503);
+        }
+
+        // Assert
+        assertThat(resilience.circuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThrows(CallNotPermittedException.class, () -> client.execute(request(Request.HttpMethod.POST), options()));
+        assertThat(meterRegistry.find("resilience4j.circuitbreaker.state").tag("state", "open").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void enrich_whenItemServiceAnswersConflict_shouldNotCountAsFailure() throws Exception {
+        // Arrange
+        Client itemService = (request, options) -> response(request, 409);
+        Client client = resilience.enrich(itemService);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            client.execute(request(Request.HttpMethod.PUT), options());
+        }
+
+        // Assert
+        assertThat(resilience.circuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void enrich_whenInventoryBulkheadIsFull_shouldRejectWritesButServeLookups() throws Exception {
+        // Arrange: one inventory write hangs inside ItemService
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Client itemService = (request, options) -> {
+            if (request.httpMethod() == Request.HttpMethod.PUT) {
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return response(request, 200);
+        };
+        Client client = resilience.enrich(itemService);
+        CompletableFuture<Response> hangingWrite = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.execute(request(Request.HttpMethod.PUT), options());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Act & Assert
+        assertThrows(BulkheadFullException.class, () -> client.execute(request(Request.HttpMethod.PUT), options()));
+        assertThat(client.execute(request(Request.HttpMethod.POST), options()).status()).isEqualTo(200);
+
+        release.countDown();
+        assertThat(hangingWrite.get(5, TimeUnit.SECONDS).status()).isEqualTo(200);
+    }
+
+    private static Request request(Request.HttpMethod method) {
+        return Request.create(method, "http://localhost:8082/api/items/inventory", Map.of(), new byte[0],
+                StandardCharsets.UTF_8, null);
+    }
+
+    private static Request.Options options() {
+        return new Request.Options(Duration.ofSeconds(1), Duration.ofSeconds(1), true);
+    }
+
+    private static Response response(Request request, int status) {
+        return Response.builder().request(request).status(status).headers(Map.of()).build();
+    }
+}
@@ -1,33 +1,43 @@
 package com.chuwa.orderservice.controller;
 
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import com.chuwa.orderservice.dto.OrderHistoryPage;
 import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.idempotency.IdempotencyKeyReusedException;
+import com.chuwa.orderservice.idempotency.IdempotencyStore;
 import com.chuwa.orderservice.model.Order;
 import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.model.OrderSummaryKey;
+import com.chuwa.orderservice.service.InsufficientStockException;
 import com.chuwa.orderservice.service.OrderService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Slice;
-import org.springframework.data.domain.SliceImpl;
 
 @WebMvcTest(OrderController.class)
+@Import(SimpleMeterRegistry.class) // The slice has no metrics auto-configuration; the concurrency limiter registers its meters here
 class OrderControllerTest {
 
     @Autowired
@@ -39,6 +49,9 @@ class OrderControllerTest {
     @MockBean
     private OrderService orderService;
 
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
     @Test
     void createOrder_shouldReturnCreatedOrder() throws Exception {
         // Arrange
@@ -59,6 +72,90 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.userId").value(1L));
     }
 
+    @Test
+    void createOrder_whenStockRunsOut_shouldReturnConflict() throws Exception {
+        // Arrange
+        when(orderService.createOrder(any(OrderRequest.class)))
+                .thenThrow(new InsufficientStockException("Insufficient stock for product: item-1"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new OrderRequest())))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void createOrder_withIdempotencyKey_shouldGoThroughIdempotencyStore() throws Exception {
+        // Arrange
+        Order storedOrder = new Order();
+        storedOrder.setId(UUID.randomUUID());
+        storedOrder.setStatus(OrderStatus.CREATED);
+
+        when(idempotencyStore.execute(eq("retry-1"), any(OrderRequest.class), any())).thenReturn(storedOrder);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new OrderRequest())))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(storedOrder.getId().toString()));
+        verify(orderService, never()).createOrder(any(OrderRequest.class));
+    }
+
+    @Test
+    void createOrder_whenIdempotencyKeyWasUsedForAnotherBody_shouldReturnUnprocessableEntity() throws Exception {
+        // Arrange
+        when(idempotencyStore.execute(eq("retry-1"), any(OrderRequest.class), any()))
+                .thenThrow(new IdempotencyKeyReusedException("Idempotency-Key retry-1 was already used for a different order"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new OrderRequest())))
+                .andExpect(status().isUnprocessableEntity());
+        verify(orderService, never()).createOrder(any(OrderRequest.class));
+    }
+
+    @Test
+    void createOrder_withBlankIdempotencyKey_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(post("/api/orders")
+                        .header("Idempotency-Key", " ")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new OrderRequest())))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void updateStatus_shouldReturnUpdatedOrder() throws Exception {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        Order paidOrder = new Order();
+        paidOrder.setId(orderId);
+        paidOrder.setStatus(OrderStatus.PAID);
+
+        when(orderService.updateStatus(orderId, OrderStatus.PAID)).thenReturn(paidOrder);
+
+        // Act & Assert
+        mockMvc.perform(put("/api/orders/{orderId}/status", orderId).param("status", "PAID"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PAID"));
+    }
+
+    @Test
+    void updateStatus_whenTransitionIsRejected_shouldReturnBadRequest() throws Exception {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        when(orderService.updateStatus(orderId, OrderStatus.COMPLETED))
+                .thenThrow(new IllegalStateException("Cannot move an order from CREATED to COMPLETED."));
+
+        // Act & Assert
+        mockMvc.perform(put("/api/orders/{orderId}/status", orderId).param("status", "COMPLETED"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void cancelOrder_shouldReturnCancelledOrder() throws Exception {
         // Arrange
@@ -76,26 +173,72 @@ class OrderControllerTest {
     }
 
     @Test
-    void getOrdersByUserId_shouldReturnPaginatedOrders() throws Exception {
+    void createOrder_withNoTimeLeft_shouldReturnGatewayTimeoutWithoutCallingService() throws Exception {
+        // Act & Assert
+        mockMvc.perform(post("/api/orders")
+                        .header(RequestDeadline.HEADER, "0")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new OrderRequest())))
+                .andExpect(status().isGatewayTimeout());
+
+        verify(orderService, never()).createOrder(any());
+    }
+
+    @Test
+    void createOrder_whenDeadlinePassesDuringProcessing_shouldReturnGatewayTimeout() throws Exception {
+        // Arrange
+        when(orderService.createOrder(any(OrderRequest.class))).thenThrow(RequestDeadline.exceeded("item-service"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/orders")
+                        .header(RequestDeadline.HEADER, "500")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new OrderRequest())))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    void cancelOrder_whenDeadlinePasses_shouldReturnGatewayTimeout() throws Exception {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        when(orderService.cancelOrder(orderId)).thenThrow(RequestDeadline.exceeded("item-service"));
+
+        // Act & Assert
+        mockMvc.perform(put("/api/orders/{orderId}/cancel", orderId))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    @Test
+    void getOrdersByUserId_shouldReturnPageWithNextCursor() throws Exception {
         // Arrange
         Long userId = 1L;
-        Pageable pageable = PageRequest.of(0, 1);
-        Order order = new Order();
-        order.setUserId(userId);
-        Slice<Order> orderSlice = new SliceImpl<>(List.of(order), pageable, false);
+        OrderSummary order = new OrderSummary();
+        order.setKey(new OrderSummaryKey(userId, Instant.parse("2026-01-01T00:00:00Z"), UUID.randomUUID()));
+        order.setItemCount(3);
 
-        when(orderService.findOrdersByUserId(eq(userId), any(Pageable.class))).thenReturn(orderSlice);
+        when(orderService.findOrdersByUserId(userId, 1, "abc"))
+                .thenReturn(new OrderHistoryPage(List.of(order), "def"));
 
         // Act & Assert
         mockMvc.perform(get("/api/orders/user/{userId}", userId)
-                        .param("page", "0")
-                        .param("size", "1"))
+                        .param("size", "1")
+                        .param("cursor", "abc"))
                 .andExpect(status().isOk())
-                // Check that the response contains the 'content' array for the items
-                .andExpect(jsonPath("$.content").isArray())
-                .andExpect(jsonPath("$.content[0].userId").value(userId))
-                // Check the pagination metadata
-                .andExpect(jsonPath("$.pageable.pageNumber").value(0))
-                .andExpect(jsonPath("$.size").value(1));
+                .andExpect(jsonPath("$.orders[0].userId").value(userId))
+                .andExpect(jsonPath("$.orders[0].itemCount").value(3))
+                .andExpect(jsonPath("$.next").value("def"))
+                // No Pageable metadata in the envelope
+                .andExpect(jsonPath("$.pageable").doesNotExist());
+    }
+
+    @Test
+    void getOrdersByUserId_withInvalidCursor_shouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(orderService.findOrdersByUserId(eq(1L), anyInt(), eq("bad")))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/orders/user/{userId}", 1L).param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package com.chuwa.orderservice.idempotency;
+
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.IdempotencyRecord;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.DeleteOptions;
+import org.springframework.data.cassandra.core.EntityWriteResult;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.query.Query;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+    @Mock
+    private CassandraOperations cassandraOperations;
+
+    @Mock
+    private EntityWriteResult<IdempotencyRecord> applied;
+
+    @Mock
+    private EntityWriteResult<IdempotencyRecord> notApplied;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private IdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new IdempotencyStore(cassandraOperations, objectMapper, Duration.ofHours(24), Duration.ofMinutes(5), 100,
+                Duration.ofMillis(300));
+        lenient().when(applied.wasApplied()).thenReturn(true);
+        lenient().when(notApplied.wasApplied()).thenReturn(false);
+    }
+
+    @Test
+    void execute_shouldClaimCreateOnceAndRecordWithTtl() {
+        // Arrange
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(applied);
+        when(cassandraOperations.update(any(IdempotencyRecord.class), any(UpdateOptions.class))).thenReturn(applied);
+        AtomicInteger creations = new AtomicInteger();
+        OrderRequest request = request(1L, "item-1");
+        Order order = order();
+
+        // Act
+        Order first = store.execute("key-1", request, () -> { creations.incrementAndGet(); return order; });
+        Order retry = store.execute("key-1", request, () -> { creations.incrementAndGet(); return order(); });
+
+        // Assert: the claim is conditional and short-lived, the outcome lives for the full TTL
+        assertThat(creations).hasValue(1);
+        assertThat(retry).isSameAs(first);
+        verify(cassandraOperations).insert(
+                argThat((IdempotencyRecord record) -> record.getUserId() == 1L && record.getKey().equals("key-1")
+                        && record.getResponse() == null),
+                argThat((InsertOptions options) -> options.isIfNotExists() && Duration.ofMinutes(5).equals(options.getTtl())));
+        verify(cassandraOperations).update(argThat((IdempotencyRecord record) -> record.getResponse() != null),
+                argThat((UpdateOptions options) -> Duration.ofHours(24).equals(options.getTtl())));
+    }
+
+    @Test
+    void execute_whenOutcomeIsStoredByAnotherInstance_shouldReplayItWithoutCreating() throws Exception {
+        // Arrange
+        OrderRequest request = request(1L, "item-1");
+        Order order = order();
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(notApplied);
+        when(cassandraOperations.selectOne(any(Query.class), eq(IdempotencyRecord.class)))
+                .thenReturn(stored(request, objectMapper.writeValueAsString(order)));
+
+        // Act
+        Order replayed = store.execute("key-1", request, () -> { throw new AssertionError("must not create"); });
+
+        // Assert
+        assertThat(replayed.getId()).isEqualTo(order.getId());
+        verify(cassandraOperations, never()).update(any(IdempotencyRecord.class), any(UpdateOptions.class));
+    }
+
+    @Test
+    void execute_whenKeyIsClaimedElsewhere_shouldWaitForTheOutcome() throws Exception {
+        // Arrange: the first read finds the claim still pending
+        OrderRequest request = request(1L, "item-1");
+        Order order = order();
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(notApplied);
+        when(cassandraOperations.selectOne(any(Query.class), eq(IdempotencyRecord.class)))
+                .thenReturn(stored(request, null), stored(request, objectMapper.writeValueAsString(order)));
+
+        // Act
+        Order replayed = store.execute("key-1", request, () -> { throw new AssertionError("must not create"); });
+
+        // Assert
+        assertThat(replayed.getId()).isEqualTo(order.getId());
+    }
+
+    @Test
+    void execute_whenClaimIsHeldTooLong_shouldReportTheKeyInProgress() {
+        // Arrange
+        OrderRequest request = request(1L, "item-1");
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(notApplied);
+        when(cassandraOperations.selectOne(any(Query.class), eq(IdempotencyRecord.class))).thenReturn(stored(request, null));
+
+        // Act & Assert
+        assertThrows(IdempotencyKeyInProgressException.class,
+                () -> store.execute("key-1", request, () -> { throw new AssertionError("must not create"); }));
+    }
+
+    @Test
+    void execute_whenKeyIsReusedForAnotherBody_shouldReject() {
+        // Arrange: the key was claimed for an order of a different product
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(notApplied);
+        when(cassandraOperations.selectOne(any(Query.class), eq(IdempotencyRecord.class)))
+                .thenReturn(stored(request(1L, "item-2"), null));
+
+        // Act & Assert
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> store.execute("key-1", request(1L, "item-1"), () -> { throw new AssertionError("must not create"); }));
+    }
+
+    @Test
+    void execute_shouldScopeKeysToTheUser() {
+        // Arrange
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(applied);
+        when(cassandraOperations.update(any(IdempotencyRecord.class), any(UpdateOptions.class))).thenReturn(applied);
+        AtomicInteger creations = new AtomicInteger();
+
+        // Act
+        store.execute("key-1", request(1L, "item-1"), () -> { creations.incrementAndGet(); return order(); });
+        store.execute("key-1", request(2L, "item-1"), () -> { creations.incrementAndGet(); return order(); });
+
+        // Assert
+        assertThat(creations).hasValue(2);
+        verify(cassandraOperations).insert(argThat((IdempotencyRecord record) -> record.getUserId() == 2L), any(InsertOptions.class));
+    }
+
+    @Test
+    void execute_whenCreationFails_shouldGiveTheClaimBack() {
+        // Arrange
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(applied);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> store.execute("key-1", request(1L, "item-1"),
+                () -> { throw new IllegalStateException("Insufficient stock for product: item-1"); }));
+        verify(cassandraOperations).delete(argThat((Object record) -> ((IdempotencyRecord) record).getKey().equals("key-1")),
+                any(DeleteOptions.class));
+    }
+
+    @Test
+    void execute_whenOutcomeCannotBeRecorded_shouldFailTheRequest() {
+        // Arrange
+        when(cassandraOperations.insert(any(IdempotencyRecord.class), any(InsertOptions.class))).thenReturn(applied);
+        when(cassandraOperations.update(any(IdempotencyRecord.class), any(UpdateOptions.class)))
+                .thenThrow(new IllegalStateException("Cassandra unavailable"));
+
+        // Act & Assert: the claim is kept, so a retry cannot create a second order
+        assertThrows(IllegalStateException.class, () -> store.execute("key-1", request(1L, "item-1"), IdempotencyStoreTest::order));
+        verify(cassandraOperations, never()).delete(any(), any(DeleteOptions.class));
+    }
+
+    private IdempotencyRecord stored(OrderRequest request, String response) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setUserId(request.getUserId());
+        record.setKey("key-1");
+        record.setRequestHash(store.fingerprint(request));
+        record.setResponse(response);
+        return record;
+    }
+
+    private static OrderRequest request(Long userId, String productId) {
+        OrderRequest.ProductInfo productInfo = new OrderRequest.ProductInfo();
+        productInfo.setProductId(productId);
+        productInfo.setQuantity(1);
+        OrderRequest request = new OrderRequest();
+        request.setUserId(userId);
+        request.setProducts(List.of(productInfo));
+        return request;
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.setId(UUID.randomUUID());
+        order.setUserId(1L);
+        order.setStatus(OrderStatus.CREATED);
+        order.setTotalAmount(new BigDecimal("20.00"));
+        order.setCreatedAt(Instant.now());
+        return order;
+    }
+}
@@ -0,0 +1,66 @@
+package com.chuwa.orderservice.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    private final AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter(4, 2, 6, Duration.ofMillis(100), 0.5);
+
+    @Test
+    void tryAcquire_shouldRejectOnceTheLimitIsInUse() {
+        // Act
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        // Assert
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.inFlight()).isEqualTo(4);
+    }
+
+    @Test
+    void release_whenFastUnderLoad_shouldRaiseTheLimitUpToTheMaximum() {
+        // Act: keep the limiter full and answer quickly
+        for (int i = 0; i < 10; i++) {
+            while (limiter.tryAcquire()) {
+                // fill every free slot
+            }
+            limiter.release(FAST, false);
+        }
+
+        // Assert
+        assertThat(limiter.limit()).isEqualTo(6);
+    }
+
+    @Test
+    void release_whenIdle_shouldKeepTheLimit() {
+        // Act: one request at a time never uses half the limit
+        limiter.tryAcquire();
+        limiter.release(FAST, false);
+
+        // Assert
+        assertThat(limiter.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void release_whenSlowOrFailed_shouldHalveTheLimitDownToTheMinimum() {
+        // Act & Assert
+        limiter.tryAcquire();
+        limiter.release(SLOW, false);
+        assertThat(limiter.limit()).isEqualTo(2);
+
+        limiter.tryAcquire();
+        limiter.release(FAST, true);
+        assertThat(limiter.limit()).isEqualTo(2);
+        assertThat(limiter.inFlight()).isZero();
+    }
+}
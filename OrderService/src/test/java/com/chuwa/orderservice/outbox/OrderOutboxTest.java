@@ -0,0 +1,69 @@
+package com.chuwa.orderservice.outbox;
+
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderItem;
+import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.model.OutboxEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.cassandra.core.CassandraBatchOperations;
+import org.springframework.data.cassandra.core.CassandraOperations;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderOutboxTest {
+
+    @Mock
+    private CassandraOperations cassandraOperations;
+    @Mock
+    private CassandraBatchOperations batchOperations;
+
+    @Test
+    void save_shouldWriteOrderSummaryAndEventInOneBatch() {
+        // Arrange
+        when(cassandraOperations.batchOps()).thenReturn(batchOperations);
+        when(batchOperations.insert(any(Object[].class))).thenReturn(batchOperations);
+        OrderOutbox orderOutbox = new OrderOutbox(cassandraOperations, 16);
+        Order order = order();
+
+        // Act
+        orderOutbox.save(order, "order-created-topic", new byte[]{1});
+
+        // Assert
+        verify(batchOperations).insert(order);
+        verify(batchOperations).insert(argThat((Object row) -> row instanceof OrderSummary summary
+                && summary.getKey().getUserId().equals(7L)
+                && summary.getItemCount() == 3
+                && summary.getStatus() == OrderStatus.CREATED));
+        verify(batchOperations).insert(argThat((Object row) -> row instanceof OutboxEvent event
+                && event.getMessageKey().equals(order.getId().toString())
+                && event.getTopic().equals("order-created-topic")));
+        verify(batchOperations).execute();
+    }
+
+    private static Order order() {
+        OrderItem first = new OrderItem();
+        first.setQuantity(1);
+        OrderItem second = new OrderItem();
+        second.setQuantity(2);
+        Order order = new Order();
+        order.setId(UUID.randomUUID());
+        order.setUserId(7L);
+        order.setItems(List.of(first, second));
+        order.setTotalAmount(new BigDecimal("30.00"));
+        order.setStatus(OrderStatus.CREATED);
+        order.setCreatedAt(Instant.now());
+        return order;
+    }
+}
@@ -0,0 +1,239 @@
+package com.chuwa.orderservice.outbox;
+
+import com.chuwa.orderservice.model.OutboxEvent;
+import com.chuwa.orderservice.model.OutboxLease;
+import com.chuwa.orderservice.model.OutboxPosition;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.cassandra.core.CassandraBatchOperations;
+import org.springframework.data.cassandra.core.CassandraOperations;
+import org.springframework.data.cassandra.core.EntityWriteResult;
+import org.springframework.data.cassandra.core.InsertOptions;
+import org.springframework.data.cassandra.core.UpdateOptions;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private CassandraOperations cassandraOperations;
+    @Mock
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    @Mock
+    private CassandraBatchOperations batchOperations;
+    @Mock
+    private EntityWriteResult<OutboxLease> applied;
+    @Mock
+    private EntityWriteResult<OutboxLease> notApplied;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = relay(100, meterRegistry);
+    }
+
+    @Test
+    void relay_shouldSendKeyedEventsAndDeleteAcknowledgedOnes() {
+        // Arrange
+        takeLease(relay);
+        OutboxEvent first = event("order-1", Instant.now());
+        OutboxEvent second = event("order-2", Instant.now());
+        when(cassandraOperations.select(any(Query.class), eq(OutboxEvent.class))).thenReturn(List.of(first, second));
+        when(kafkaTemplate.send(eq("order-created-topic"), eq("order-1"), aryEq(payload("order-1")))).thenReturn(acknowledged());
+        when(kafkaTemplate.send(eq("order-created-topic"), eq("order-2"), aryEq(payload("order-2")))).thenReturn(acknowledged());
+        when(cassandraOperations.batchOps(DefaultBatchType.UNLOGGED)).thenReturn(batchOperations);
+        when(batchOperations.delete(anyIterable())).thenReturn(batchOperations);
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(batchOperations).delete(List.of(first, second));
+        assertThat(meterRegistry.get("order.outbox.relayed").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("order.outbox.lag").gauge().value()).isZero();
+    }
+
+    @Test
+    void relay_whenSendFails_shouldKeepFailedEventAndReportLag() {
+        // Arrange
+        takeLease(relay);
+        OutboxEvent first = event("order-1", Instant.now());
+        OutboxEvent second = event("order-2", Instant.now().minusSeconds(30));
+        when(cassandraOperations.select(any(Query.class), eq(OutboxEvent.class))).thenReturn(List.of(first, second));
+        when(kafkaTemplate.send(eq("order-created-topic"), eq("order-1"), aryEq(payload("order-1")))).thenReturn(acknowledged());
+        when(kafkaTemplate.send(eq("order-created-topic"), eq("order-2"), aryEq(payload("order-2"))))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        when(cassandraOperations.batchOps(DefaultBatchType.UNLOGGED)).thenReturn(batchOperations);
+        when(batchOperations.delete(anyIterable())).thenReturn(batchOperations);
+
+        // Act
+        relay.relay();
+
+        // Assert: only the acknowledged event is deleted, the failed one is 30s old
+        verify(batchOperations).delete(List.of(first));
+        assertThat(meterRegistry.get("order.outbox.lag").gauge().value()).isGreaterThanOrEqualTo(30_000);
+    }
+
+    @Test
+    void relay_whenFullBatchIsSent_shouldReportLagOfTheEventsBehindIt() {
+        // Arrange: a batch of two goes out, and an older-than-expected event is still waiting after it
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OutboxRelay smallBatches = relay(2, registry);
+        takeLease(smallBatches);
+        OutboxEvent first = event("order-1", Instant.now());
+        OutboxEvent second = event("order-2", Instant.now());
+        when(cassandraOperations.select(any(Query.class), eq(OutboxEvent.class))).thenReturn(List.of(first, second));
+        when(kafkaTemplate.send(eq("order-created-topic"), anyString(), any(byte[].class))).thenReturn(acknowledged());
+        when(cassandraOperations.batchOps(DefaultBatchType.UNLOGGED)).thenReturn(batchOperations);
+        when(batchOperations.delete(anyIterable())).thenReturn(batchOperations);
+        when(cassandraOperations.selectOne(any(Query.class), eq(OutboxEvent.class)))
+                .thenReturn(event("order-3", Instant.now().minusSeconds(20)));
+
+        // Act
+        smallBatches.relay();
+
+        // Assert
+        assertThat(registry.get("order.outbox.lag").gauge().value()).isGreaterThanOrEqualTo(20_000);
+    }
+
+    @Test
+    void relay_shouldRecordPositionAndStartTheNextReadNearIt() {
+        // Arrange
+        takeLease(relay);
+        OutboxEvent first = event("order-1", Instant.now());
+        OutboxEvent second = event("order-2", Instant.now());
+        when(cassandraOperations.select(any(Query.class), eq(OutboxEvent.class)))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of());
+        when(kafkaTemplate.send(eq("order-created-topic"), anyString(), any(byte[].class))).thenReturn(acknowledged());
+        when(cassandraOperations.batchOps(DefaultBatchType.UNLOGGED)).thenReturn(batchOperations);
+        when(batchOperations.delete(anyIterable())).thenReturn(batchOperations);
+
+        // Act
+        relay.relay();
+        relay.relay();
+
+        // Assert: the first read starts at the head of the bucket, the second skips what was sent
+        verify(cassandraOperations).insert(argThat((OutboxPosition position) ->
+                position.getRelayedUpTo().equals(second.getId())));
+        List<Query> reads = reads(2);
+        assertThat(boundsId(reads.get(0))).isFalse();
+        assertThat(boundsId(reads.get(1))).isTrue();
+    }
+
+    @Test
+    void renewLeases_whenBucketWasRelayedBefore_shouldResumeFromItsPosition() {
+        // Arrange
+        OutboxPosition position = new OutboxPosition();
+        position.setBucket(0);
+        position.setRelayedUpTo(Uuids.timeBased());
+        when(cassandraOperations.selectOne(any(Query.class), eq(OutboxPosition.class))).thenReturn(position);
+        when(cassandraOperations.select(any(Query.class), eq(OutboxEvent.class))).thenReturn(List.of());
+
+        // Act
+        takeLease(relay);
+        relay.relay();
+
+        // Assert
+        assertThat(boundsId(reads(1).get(0))).isTrue();
+    }
+
+    @Test
+    void relay_whenAnotherInstanceHoldsTheBucket_shouldLeaveItAlone() {
+        // Arrange
+        when(notApplied.wasApplied()).thenReturn(false);
+        when(cassandraOperations.insert(any(OutboxLease.class), any(InsertOptions.class))).thenReturn(notApplied);
+        relay.renewLeases();
+
+        // Act
+        relay.relay();
+
+        // Assert
+        verify(cassandraOperations, never()).select(any(Query.class), eq(OutboxEvent.class));
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void renewLeases_whenAnotherInstanceTookTheBucketOver_shouldStopRelayingIt() {
+        // Arrange: the lease was ours, but it ran out and another instance took it
+        takeLease(relay);
+        when(notApplied.wasApplied()).thenReturn(false);
+        when(cassandraOperations.update(any(OutboxLease.class), any(UpdateOptions.class))).thenReturn(notApplied);
+
+        // Act
+        relay.renewLeases();
+        relay.relay();
+
+        // Assert
+        verify(cassandraOperations, never()).select(any(Query.class), eq(OutboxEvent.class));
+    }
+
+    private OutboxRelay relay(int batchSize, SimpleMeterRegistry registry) {
+        OrderOutbox orderOutbox = new OrderOutbox(cassandraOperations, 1);
+        return new OutboxRelay(cassandraOperations, kafkaTemplate, orderOutbox, registry, batchSize,
+                Duration.ofSeconds(1), Duration.ofSeconds(15), Duration.ofMinutes(1));
+    }
+
+    private List<Query> reads(int count) {
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(cassandraOperations, times(count)).select(queries.capture(), eq(OutboxEvent.class));
+        return queries.getAllValues();
+    }
+
+    private static boolean boundsId(Query query) {
+        return StreamSupport.stream(query.getCriteriaDefinitions().spliterator(), false)
+                .anyMatch(criteria -> criteria.getColumnName().toCql().equals("id"));
+    }
+
+    private void takeLease(OutboxRelay outboxRelay) {
+        when(applied.wasApplied()).thenReturn(true);
+        when(cassandraOperations.insert(any(OutboxLease.class), any(InsertOptions.class))).thenReturn(applied);
+        outboxRelay.renewLeases();
+    }
+
+    private static OutboxEvent event(String orderId, Instant createdAt) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(Uuids.timeBased());
+        event.setTopic("order-created-topic");
+        event.setMessageKey(orderId);
+        event.setPayload(ByteBuffer.wrap(payload(orderId)));
+        event.setCreatedAt(createdAt);
+        return event;
+    }
+
+    private static byte[] payload(String orderId) {
+        return ("payload-" + orderId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CompletableFuture<SendResult<String, byte[]>> acknowledged() {
+        return CompletableFuture.completedFuture(null);
+    }
+}
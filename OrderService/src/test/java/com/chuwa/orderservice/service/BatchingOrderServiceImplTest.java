@@ -0,0 +1,228 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.deadline.DeadlineExceededException;
+import com.chuwa.orderservice.deadline.RequestDeadline;
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.outbox.ReactiveOrderOutbox;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchingOrderServiceImplTest {
+
+    @Mock
+    private OrderServiceImpl orderService;
+    @Mock
+    private ItemServiceClient itemServiceClient;
+    @Mock
+    private ReactiveOrderOutbox orderOutbox;
+
+    private BatchingOrderServiceImpl batchingOrderService;
+
+    @BeforeEach
+    void setUp() {
+        batchingOrderService = new BatchingOrderServiceImpl(orderService, itemServiceClient, RequestHedger.disabled(), orderOutbox,
+                Duration.ofMillis(5), 100, 1000, 4, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void flush_shouldLookUpAndReserveOnceForTheWholeWindow() {
+        // Arrange: two orders for 3 units each of a product with 5 in stock
+        when(itemServiceClient.getItemSummaries(anyList()))
+                .thenReturn(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 5),
+                        new ItemSummary("item-2", new BigDecimal("2.00"), 100)));
+        when(orderOutbox.save(any(Order.class), anyString(), any(byte[].class)))
+                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        BatchingOrderServiceImpl.PendingOrder first = pending("item-1", 3);
+        BatchingOrderServiceImpl.PendingOrder second = pending("item-2", 1);
+        BatchingOrderServiceImpl.PendingOrder third = pending("item-1", 3);
+
+        // Act
+        batchingOrderService.flush(List.of(first, second, third));
+
+        // Assert: the first two succeed, the third finds only 2 units left
+        assertThat(first.future.join().getTotalAmount()).isEqualByComparingTo(new BigDecimal("30.00"));
+        assertThat(second.future.join().getTotalAmount()).isEqualByComparingTo(new BigDecimal("2.00"));
+        CompletionException failure = assertThrows(CompletionException.class, third.future::join);
+        assertThat(failure.getCause()).isInstanceOf(IllegalStateException.class);
+
+        verify(itemServiceClient, times(1)).getItemSummaries(anyList());
+        verify(itemServiceClient, times(1)).updateInventoryBatch(argThat(req -> req.adjustments().equals(List.of(
+                new ItemServiceClient.InventoryAdjustment("item-1", -3),
+                new ItemServiceClient.InventoryAdjustment("item-2", -1)))));
+    }
+
+    @Test
+    void flush_whenOneOrderCannotBeSaved_shouldFailOnlyThatOrderAndReleaseItsStock() {
+        // Arrange
+        when(itemServiceClient.getItemSummaries(anyList()))
+                .thenReturn(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 100),
+                        new ItemSummary("item-2", new BigDecimal("2.00"), 100)));
+        BatchingOrderServiceImpl.PendingOrder saved = pending("item-1", 1);
+        BatchingOrderServiceImpl.PendingOrder unsaved = pending("item-2", 4);
+        when(orderOutbox.save(any(Order.class), anyString(), any(byte[].class))).thenAnswer(inv -> {
+            Order order = inv.getArgument(0);
+            return order.getItems().get(0).getProductId().equals("item-2")
+                    ? Mono.error(new IllegalStateException("write failed"))
+                    : Mono.just(order);
+        });
+
+        // Act
+        batchingOrderService.flush(List.of(saved, unsaved));
+
+        // Assert
+        assertThat(saved.future.join()).isNotNull();
+        assertThrows(CompletionException.class, unsaved.future::join);
+        verify(itemServiceClient).updateInventoryBatch(argThat(req -> req.adjustments().equals(
+                List.of(new ItemServiceClient.InventoryAdjustment("item-2", 4)))));
+    }
+
+    @Test
+    void flush_whenWindowReservationIsRejected_shouldReserveOrdersOneByOne() {
+        // Arrange: ItemService rejects the combined batch and the second order alone
+        when(itemServiceClient.getItemSummaries(anyList()))
+                .thenReturn(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 100),
+                        new ItemSummary("item-2", new BigDecimal("2.00"), 100)));
+        when(itemServiceClient.updateInventoryBatch(any())).thenAnswer(inv -> {
+            ItemServiceClient.BatchInventoryRequest request = inv.getArgument(0);
+            if (request.adjustments().stream().anyMatch(a -> a.itemId().equals("item-2"))) {
+                throw conflict();
+            }
+            return new ItemServiceClient.BatchInventoryResponse(true, List.of());
+        });
+        when(orderOutbox.save(any(Order.class), anyString(), any(byte[].class)))
+                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        BatchingOrderServiceImpl.PendingOrder first = pending("item-1", 1);
+        BatchingOrderServiceImpl.PendingOrder second = pending("item-2", 1);
+
+        // Act
+        batchingOrderService.flush(List.of(first, second));
+
+        // Assert
+        assertThat(first.future.join()).isNotNull();
+        assertThrows(CompletionException.class, second.future::join);
+        verify(orderOutbox, times(1)).save(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void flush_shouldDropOrdersWhoseDeadlinePassedWhileQueued() {
+        // Arrange
+        RequestDeadline.start(Duration.ZERO);
+        BatchingOrderServiceImpl.PendingOrder expired;
+        try {
+            expired = pending("item-1", 1);
+        } finally {
+            RequestDeadline.clear();
+        }
+
+        // Act
+        batchingOrderService.flush(List.of(expired));
+
+        // Assert
+        CompletionException failure = assertThrows(CompletionException.class, expired.future::join);
+        assertThat(failure.getCause()).isInstanceOf(DeadlineExceededException.class);
+        verifyNoInteractions(itemServiceClient, orderOutbox);
+    }
+
+    @Test
+    void flush_whenWindowReservationOutcomeIsUnknown_shouldFailTheWindowWithoutRetrying() {
+        // Arrange: the call timed out, so ItemService may or may not have taken the stock
+        when(itemServiceClient.getItemSummaries(anyList()))
+                .thenReturn(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 100)));
+        FeignException timeout = error(504);
+        when(itemServiceClient.updateInventoryBatch(any())).thenThrow(timeout);
+        BatchingOrderServiceImpl.PendingOrder first = pending("item-1", 1);
+        BatchingOrderServiceImpl.PendingOrder second = pending("item-1", 2);
+
+        // Act
+        batchingOrderService.flush(List.of(first, second));
+
+        // Assert
+        assertThat(assertThrows(CompletionException.class, first.future::join).getCause()).isSameAs(timeout);
+        assertThat(assertThrows(CompletionException.class, second.future::join).getCause()).isSameAs(timeout);
+        verify(itemServiceClient, times(1)).updateInventoryBatch(any());
+        verifyNoInteractions(orderOutbox);
+    }
+
+    @Test
+    void createOrder_whenDeadlinePassesWhileQueued_shouldWithdrawTheOrder() {
+        // Arrange: the flusher is not running yet, so the order stays queued
+        RequestDeadline.start(Duration.ofMillis(20));
+        try {
+            // Act & Assert
+            assertThrows(DeadlineExceededException.class, () -> batchingOrderService.createOrder(orderRequest("item-1", 1)));
+        } finally {
+            RequestDeadline.clear();
+        }
+
+        // Assert: once the flusher runs there is nothing left to create
+        batchingOrderService.start();
+        try {
+            verify(itemServiceClient, after(200).never()).getItemSummaries(anyList());
+        } finally {
+            batchingOrderService.stop();
+        }
+    }
+
+    @Test
+    void flush_shouldSkipOrdersWithdrawnByTheirCaller() {
+        // Arrange
+        BatchingOrderServiceImpl.PendingOrder withdrawn = pending("item-1", 1);
+        assertThat(withdrawn.withdraw()).isTrue();
+
+        // Act
+        batchingOrderService.flush(List.of(withdrawn));
+
+        // Assert
+        verifyNoInteractions(itemServiceClient, orderOutbox);
+    }
+
+    private static FeignException conflict() {
+        return error(409);
+    }
+
+    private static FeignException error(int status) {
+        Request request = Request.create(Request.HttpMethod.PUT, "http://localhost:8082/api/items/inventory", Map.of(),
+                new byte[0], StandardCharsets.UTF_8, null);
+        Response response = Response.builder().request(request).status(status).headers(Map.of()).build();
+        return FeignException.errorStatus("ItemServiceClient#updateInventoryBatch", response);
+    }
+
+    private static BatchingOrderServiceImpl.PendingOrder pending(String productId, int quantity) {
+        return new BatchingOrderServiceImpl.PendingOrder(orderRequest(productId, quantity));
+    }
+
+    private static OrderRequest orderRequest(String productId, int quantity) {
+        OrderRequest.ProductInfo productInfo = new OrderRequest.ProductInfo();
+        productInfo.setProductId(productId);
+        productInfo.setQuantity(quantity);
+        OrderRequest orderRequest = new OrderRequest();
+        orderRequest.setUserId(1L);
+        orderRequest.setProducts(List.of(productInfo));
+        return orderRequest;
+    }
+}
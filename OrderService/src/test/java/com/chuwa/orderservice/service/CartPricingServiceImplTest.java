@@ -0,0 +1,119 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartPricingServiceImplTest {
+
+    @Mock
+    private ItemServiceClient itemServiceClient;
+
+    private CartPricingServiceImpl cartPricingService;
+
+    @AfterEach
+    void tearDown() {
+        cartPricingService.shutdown();
+    }
+
+    @Test
+    void verifyAvailability_withSmallCart_shouldUseSingleCall() {
+        // Arrange
+        cartPricingService = new CartPricingServiceImpl(itemServiceClient, RequestHedger.disabled(), 10, 4, Duration.ofSeconds(1));
+        when(itemServiceClient.getItemSummaries(List.of("a", "b"))).thenReturn(List.of(summary("a", 5), summary("b", 5)));
+
+        // Act
+        Map<String, ItemSummary> items = cartPricingService.verifyAvailability(cart("a", "b"));
+
+        // Assert
+        assertThat(items).containsOnlyKeys("a", "b");
+        verify(itemServiceClient, times(1)).getItemSummaries(anyList());
+    }
+
+    @Test
+    void verifyAvailability_withLargeCart_shouldLookUpChunksAndMergeResults() {
+        // Arrange: chunks of two IDs
+        cartPricingService = new CartPricingServiceImpl(itemServiceClient, RequestHedger.disabled(), 2, 4, Duration.ofSeconds(1));
+        when(itemServiceClient.getItemSummaries(anyList())).thenAnswer(inv -> inv.<List<String>>getArgument(0).stream()
+                .map(id -> summary(id, 5))
+                .toList());
+
+        // Act
+        Map<String, ItemSummary> items = cartPricingService.verifyAvailability(cart("a", "b", "c", "d", "e"));
+
+        // Assert
+        assertThat(items).containsOnlyKeys("a", "b", "c", "d", "e");
+        verify(itemServiceClient).getItemSummaries(List.of("a", "b"));
+        verify(itemServiceClient).getItemSummaries(List.of("c", "d"));
+        verify(itemServiceClient).getItemSummaries(List.of("e"));
+    }
+
+    @Test
+    void verifyAvailability_whenProductIsMissing_shouldFailWithoutWaitingForOtherChunks() {
+        // Arrange: the chunk with "c" is missing it, the other chunk never answers in time
+        cartPricingService = new CartPricingServiceImpl(itemServiceClient, RequestHedger.disabled(), 2, 4, Duration.ofSeconds(5));
+        when(itemServiceClient.getItemSummaries(List.of("a", "b"))).thenAnswer(inv -> {
+            Thread.sleep(10_000);
+            return List.of();
+        });
+        when(itemServiceClient.getItemSummaries(List.of("c"))).thenReturn(List.of());
+
+        // Act & Assert
+        long start = System.nanoTime();
+        assertThrows(IllegalArgumentException.class, () -> cartPricingService.verifyAvailability(cart("a", "b", "c")));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void verifyAvailability_whenStockIsInsufficient_shouldThrowIllegalState() {
+        // Arrange
+        cartPricingService = new CartPricingServiceImpl(itemServiceClient, RequestHedger.disabled(), 10, 4, Duration.ofSeconds(1));
+        when(itemServiceClient.getItemSummaries(List.of("a"))).thenReturn(List.of(summary("a", 0)));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> cartPricingService.verifyAvailability(cart("a")));
+    }
+
+    @Test
+    void verifyAvailability_whenLookupIsTooSlow_shouldTimeOut() {
+        // Arrange
+        cartPricingService = new CartPricingServiceImpl(itemServiceClient, RequestHedger.disabled(), 1, 4, Duration.ofMillis(100));
+        when(itemServiceClient.getItemSummaries(anyList())).thenAnswer(inv -> {
+            Thread.sleep(2_000);
+            return List.of();
+        });
+
+        // Act & Assert
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> cartPricingService.verifyAvailability(cart("a", "b")));
+        assertThat(e).hasMessageContaining("Timed out");
+    }
+
+    static Map<String, Integer> cart(String... ids) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (String id : ids) {
+            quantities.put(id, 1);
+        }
+        return quantities;
+    }
+
+    static ItemSummary summary(String id, int availableUnits) {
+        return new ItemSummary(id, new BigDecimal("10.00"), availableUnits);
+    }
+}
@@ -1,25 +1,33 @@
 package com.chuwa.orderservice.service;
 
-import com.chuwa.orderservice.client.Item;
 import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.dto.OrderHistoryPage;
 import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.event.OrderEvent;
+import com.chuwa.orderservice.event.OrderEventCodec;
 import com.chuwa.orderservice.model.Order;
 import com.chuwa.orderservice.model.OrderItem;
 import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.model.OrderSummary;
+import com.chuwa.orderservice.outbox.OrderOutbox;
 import com.chuwa.orderservice.repository.OrderRepository;
+import com.chuwa.orderservice.repository.OrderSummaryRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.cassandra.core.query.CassandraPageRequest;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.SliceImpl;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -35,9 +43,13 @@ class OrderServiceImplTest {
     @Mock
     private OrderRepository orderRepository;
     @Mock
+    private OrderSummaryRepository orderSummaryRepository;
+    @Mock
     private ItemServiceClient itemServiceClient;
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private CartPricingService cartPricingService;
+    @Mock
+    private OrderOutbox orderOutbox;
 
     @InjectMocks
     private OrderServiceImpl orderService;
@@ -53,15 +65,12 @@ class OrderServiceImplTest {
         orderRequest.setUserId(1L);
         orderRequest.setProducts(List.of(productInfo));
 
-        // 2. Mock the response from the ItemService
-        Item mockItem = new Item();
-        mockItem.setId("item-1");
-        mockItem.setUnitPrice(new BigDecimal("10.00"));
-        mockItem.setAvailableUnits(100); // Plenty of stock
-        when(itemServiceClient.getItemById("item-1")).thenReturn(mockItem);
+        // 2. Mock the response from the ItemService (plenty of stock)
+        ItemSummary mockItem = new ItemSummary("item-1", new BigDecimal("10.00"), 100);
+        when(cartPricingService.verifyAvailability(Map.of("item-1", 2))).thenReturn(Map.of("item-1", mockItem));
 
-        // 3. Mock the repository save operation
-        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // 3. Mock saving the order with its outbox event
+        when(orderOutbox.save(any(Order.class), anyString(), any(byte[].class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         Order createdOrder = orderService.createOrder(orderRequest);
@@ -72,10 +81,16 @@ class OrderServiceImplTest {
         assertThat(createdOrder.getItems().get(0).getProductId()).isEqualTo("item-1");
 
         // Verify that external services were called
-        verify(itemServiceClient).getItemById("item-1");
-        verify(itemServiceClient).updateInventory(eq("item-1"), any(ItemServiceClient.UpdateInventoryRequest.class));
-        verify(orderRepository).save(any(Order.class));
-        verify(kafkaTemplate).send(anyString(), anyString());
+        verify(cartPricingService).verifyAvailability(Map.of("item-1", 2));
+        verify(itemServiceClient).updateInventoryBatch(argThat(req -> req.adjustments().equals(
+                List.of(new ItemServiceClient.InventoryAdjustment("item-1", -2)))));
+        verify(orderOutbox).save(any(Order.class), eq("order-created-topic"), argThat((byte[] payload) -> {
+            OrderEvent event = OrderEventCodec.decode(payload);
+            return event.type() == OrderEvent.Type.ORDER_CREATED
+                    && event.orderId().equals(createdOrder.getId())
+                    && event.userId() == 1L
+                    && event.amount().compareTo(new BigDecimal("20.00")) == 0;
+        }));
     }
 
     @Test
@@ -87,9 +102,9 @@ class OrderServiceImplTest {
         OrderRequest orderRequest = new OrderRequest();
         orderRequest.setProducts(List.of(productInfo));
 
-        Item mockItem = new Item();
-        mockItem.setAvailableUnits(5); // Only 5 in stock
-        when(itemServiceClient.getItemById("item-1")).thenReturn(mockItem);
+        // Only 5 in stock
+        when(cartPricingService.verifyAvailability(Map.of("item-1", 10)))
+                .thenThrow(new IllegalStateException("Insufficient stock for product: item-1"));
 
         // Act & Assert
         assertThrows(IllegalStateException.class, () -> {
@@ -97,8 +112,43 @@ class OrderServiceImplTest {
         });
 
         // Verify that the order was never saved or published
-        verify(orderRepository, never()).save(any(Order.class));
-        verify(kafkaTemplate, never()).send(anyString(), anyString());
+        verify(orderOutbox, never()).save(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void createOrder_whenProductDoesNotExist_shouldThrowException() {
+        // Arrange
+        OrderRequest.ProductInfo productInfo = new OrderRequest.ProductInfo();
+        productInfo.setProductId("missing");
+        productInfo.setQuantity(1);
+        OrderRequest orderRequest = new OrderRequest();
+        orderRequest.setProducts(List.of(productInfo));
+
+        when(cartPricingService.verifyAvailability(Map.of("missing", 1)))
+                .thenThrow(new IllegalArgumentException("Product not found: missing"));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(orderRequest));
+        verify(orderOutbox, never()).save(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void createOrder_whenSavingFails_shouldReleaseReservedStock() {
+        // Arrange
+        OrderRequest.ProductInfo productInfo = new OrderRequest.ProductInfo();
+        productInfo.setProductId("item-1");
+        productInfo.setQuantity(2);
+        OrderRequest orderRequest = new OrderRequest();
+        orderRequest.setProducts(List.of(productInfo));
+
+        when(cartPricingService.verifyAvailability(Map.of("item-1", 2)))
+                .thenReturn(Map.of("item-1", new ItemSummary("item-1", new BigDecimal("10.00"), 100)));
+        when(orderOutbox.save(any(Order.class), anyString(), any(byte[].class))).thenThrow(new IllegalStateException("write failed"));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> orderService.createOrder(orderRequest));
+        verify(itemServiceClient).updateInventoryBatch(argThat(req -> req.adjustments().equals(
+                List.of(new ItemServiceClient.InventoryAdjustment("item-1", 2)))));
     }
 
     @Test
@@ -115,7 +165,8 @@ class OrderServiceImplTest {
         existingOrder.setItems(List.of(orderItem));
 
         when(orderRepository.findById(orderId)).thenReturn(Optional.of(existingOrder));
-        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED)).thenReturn(true);
+        when(orderOutbox.recordStatusChange(any(Order.class), anyString(), any(byte[].class))).thenAnswer(inv -> inv.getArgument(0));
 
         // Act
         Order cancelledOrder = orderService.cancelOrder(orderId);
@@ -123,10 +174,110 @@ class OrderServiceImplTest {
         // Assert
         assertThat(cancelledOrder.getStatus()).isEqualTo(OrderStatus.CANCELLED);
 
-        // Verify that inventory was restocked (positive quantity)
-        verify(itemServiceClient).updateInventory(eq("item-1"), argThat(req -> req.quantityChange() == 2));
-        verify(orderRepository).save(existingOrder);
-        verify(kafkaTemplate).send(eq("order-cancelled-topic"), anyString());
+        // Verify that inventory was restocked (positive quantity) under the order's restock key
+        verify(itemServiceClient).updateInventoryBatch(eq("order-" + orderId + "-restock"), argThat(req -> req.adjustments()
+                .equals(List.of(new ItemServiceClient.InventoryAdjustment("item-1", 2)))));
+        verify(orderOutbox).recordStatusChange(eq(existingOrder), eq("order-cancelled-topic"), any(byte[].class));
+        // The order row itself is only touched by the conditional status update
+        verify(orderOutbox, never()).save(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void cancelOrder_whenConcurrentCancelWins_shouldThrowWithoutRestocking() {
+        // Arrange: the order still reads as CREATED, but another request flips it first
+        UUID orderId = UUID.randomUUID();
+        Order existingOrder = new Order();
+        existingOrder.setId(orderId);
+        existingOrder.setStatus(OrderStatus.CREATED);
+
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(existingOrder));
+        when(orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> orderService.cancelOrder(orderId));
+        verify(itemServiceClient, never()).updateInventoryBatch(anyString(), any());
+        verify(orderOutbox, never()).recordStatusChange(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void cancelOrder_whenRestockFails_shouldKeepOrderCancelled() {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        OrderItem orderItem = new OrderItem();
+        orderItem.setProductId("item-1");
+        orderItem.setQuantity(2);
+        Order existingOrder = new Order();
+        existingOrder.setId(orderId);
+        existingOrder.setStatus(OrderStatus.CREATED);
+        existingOrder.setItems(List.of(orderItem));
+
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(existingOrder));
+        when(orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED)).thenReturn(true);
+        when(itemServiceClient.updateInventoryBatch(anyString(), any())).thenThrow(new IllegalStateException("ItemService unavailable"));
+
+        // Act & Assert: the order is not reopened; a second cancel restocks under the same key
+        assertThrows(IllegalStateException.class, () -> orderService.cancelOrder(orderId));
+        verify(orderRepository, never()).updateStatus(orderId, OrderStatus.CANCELLED, OrderStatus.CREATED);
+        verify(orderOutbox, never()).recordStatusChange(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void cancelOrder_whenOrderIsAlreadyCancelled_shouldRestockAgainUnderTheSameKey() {
+        // Arrange: an earlier cancel flipped the status but its restock failed
+        UUID orderId = UUID.randomUUID();
+        OrderItem orderItem = new OrderItem();
+        orderItem.setProductId("item-1");
+        orderItem.setQuantity(2);
+        Order existingOrder = new Order();
+        existingOrder.setId(orderId);
+        existingOrder.setStatus(OrderStatus.CANCELLED);
+        existingOrder.setItems(List.of(orderItem));
+
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(existingOrder));
+        when(orderOutbox.recordStatusChange(any(Order.class), anyString(), any(byte[].class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        Order cancelledOrder = orderService.cancelOrder(orderId);
+
+        // Assert: ItemService sees the same key as the first attempt and applies the restock only once
+        assertThat(cancelledOrder.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        verify(orderRepository, never()).updateStatus(any(), any(), any());
+        verify(itemServiceClient).updateInventoryBatch(eq("order-" + orderId + "-restock"), any());
+        verify(orderOutbox).recordStatusChange(eq(existingOrder), eq("order-cancelled-topic"), any(byte[].class));
+    }
+
+    @Test
+    void updateStatus_fromCreatedToPaid_shouldApplyConditionalUpdate() {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        Order existingOrder = new Order();
+        existingOrder.setId(orderId);
+        existingOrder.setUserId(1L);
+        existingOrder.setStatus(OrderStatus.CREATED);
+
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(existingOrder));
+        when(orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.PAID)).thenReturn(true);
+
+        // Act
+        Order paidOrder = orderService.updateStatus(orderId, OrderStatus.PAID);
+
+        // Assert
+        assertThat(paidOrder.getStatus()).isEqualTo(OrderStatus.PAID);
+        verify(orderSummaryRepository).save(argThat((OrderSummary summary) -> summary.getStatus() == OrderStatus.PAID));
+    }
+
+    @Test
+    void updateStatus_skippingAStep_shouldThrowException() {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        Order existingOrder = new Order();
+        existingOrder.setId(orderId);
+        existingOrder.setStatus(OrderStatus.CREATED);
+        when(orderRepository.findById(orderId)).thenReturn(Optional.of(existingOrder));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> orderService.updateStatus(orderId, OrderStatus.COMPLETED));
+        verify(orderRepository, never()).updateStatus(any(), any(), any());
     }
 
     @Test
@@ -145,26 +296,39 @@ class OrderServiceImplTest {
         });
 
         // Verify no external services were called
-        verify(itemServiceClient, never()).updateInventory(anyString(), any());
-        verify(orderRepository, never()).save(any(Order.class));
+        verify(itemServiceClient, never()).updateInventoryBatch(anyString(), any());
+        verify(orderOutbox, never()).recordStatusChange(any(Order.class), anyString(), any(byte[].class));
     }
 
     @Test
-    void findOrdersByUserId_shouldReturnSliceOfOrders() {
-        // Arrange
+    void findOrdersByUserId_shouldReturnCursorThatResumesFromPagingState() {
+        // Arrange: the first page reports more rows behind the driver's paging state
         Long userId = 1L;
-        Pageable pageable = PageRequest.of(0, 5); // Request first page, 5 items
-        Order order = new Order();
-        Slice<Order> expectedSlice = new SliceImpl<>(List.of(order), pageable, false);
-
-        when(orderRepository.findByUserId(userId, pageable)).thenReturn(expectedSlice);
+        ByteBuffer pagingState = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        OrderSummary order = new OrderSummary();
+        Slice<OrderSummary> firstPage = new SliceImpl<>(List.of(order),
+                CassandraPageRequest.of(PageRequest.of(0, 5), pagingState), true);
+        when(orderSummaryRepository.findByKeyUserId(eq(userId), any(Pageable.class))).thenReturn(firstPage);
 
         // Act
-        Slice<Order> result = orderService.findOrdersByUserId(userId, pageable);
+        OrderHistoryPage page = orderService.findOrdersByUserId(userId, 5, null);
+        orderService.findOrdersByUserId(userId, 5, page.next());
 
-        // Assert
-        assertThat(result).isNotNull();
-        assertThat(result.getContent()).hasSize(1);
-        assertThat(result.getNumber()).isEqualTo(0);
+        // Assert: the second call passes the same paging state back to the driver
+        assertThat(page.orders()).hasSize(1);
+        assertThat(page.next()).isNotNull();
+        verify(orderSummaryRepository).findByKeyUserId(eq(userId), argThat((Pageable request) ->
+                request instanceof CassandraPageRequest cassandra
+                        && pagingState.equals(cassandra.getPagingState())));
+    }
+
+    @Test
+    void findOrdersByUserId_withCursorOfAnotherUser_shouldThrowException() {
+        // Arrange
+        String otherUsersCursor = OrderHistoryCursor.encode(2L, ByteBuffer.wrap(new byte[]{1, 2, 3}));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> orderService.findOrdersByUserId(1L, 5, otherUsersCursor));
+        verify(orderSummaryRepository, never()).findByKeyUserId(any(), any());
     }
-}
\ No newline at end of file
+}
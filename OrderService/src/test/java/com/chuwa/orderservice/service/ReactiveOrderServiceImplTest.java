@@ -0,0 +1,181 @@
+package com.chuwa.orderservice.service;
+
+import com.chuwa.orderservice.client.ItemServiceClient;
+import com.chuwa.orderservice.client.ItemSummary;
+import com.chuwa.orderservice.client.ReactiveItemServiceClient;
+import com.chuwa.orderservice.dto.OrderRequest;
+import com.chuwa.orderservice.model.Order;
+import com.chuwa.orderservice.model.OrderItem;
+import com.chuwa.orderservice.model.OrderStatus;
+import com.chuwa.orderservice.outbox.ReactiveOrderOutbox;
+import com.chuwa.orderservice.repository.ReactiveOrderRepository;
+import com.chuwa.orderservice.repository.ReactiveOrderSummaryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveOrderServiceImplTest {
+
+    @Mock
+    private ReactiveOrderRepository orderRepository;
+    @Mock
+    private ReactiveOrderSummaryRepository orderSummaryRepository;
+    @Mock
+    private ReactiveItemServiceClient itemServiceClient;
+    @Mock
+    private ReactiveOrderOutbox orderOutbox;
+
+    private ReactiveOrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        orderService = new ReactiveOrderServiceImpl(orderRepository, orderSummaryRepository, itemServiceClient,
+                orderOutbox, 25, 32, Duration.ofSeconds(2));
+    }
+
+    @Test
+    void createOrder_shouldReserveStockAndSaveOrder() {
+        // Arrange
+        when(itemServiceClient.getItemSummaries(List.of("item-1")))
+                .thenReturn(Mono.just(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 100))));
+        when(itemServiceClient.updateInventoryBatch(any()))
+                .thenReturn(Mono.just(new ItemServiceClient.BatchInventoryResponse(true, List.of())));
+        when(orderOutbox.save(any(Order.class), anyString(), any(byte[].class)))
+                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        // Act
+        Order createdOrder = orderService.createOrder(request("item-1", 2)).block();
+
+        // Assert
+        assertThat(createdOrder.getTotalAmount()).isEqualByComparingTo(new BigDecimal("20.00"));
+        verify(itemServiceClient).updateInventoryBatch(argThat(req -> req.adjustments().equals(
+                List.of(new ItemServiceClient.InventoryAdjustment("item-1", -2)))));
+        verify(orderOutbox).save(any(Order.class), eq("order-created-topic"), any(byte[].class));
+    }
+
+    @Test
+    void createOrder_whenStockIsInsufficient_shouldFailWithoutReserving() {
+        // Arrange: only 5 in stock
+        when(itemServiceClient.getItemSummaries(List.of("item-1")))
+                .thenReturn(Mono.just(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 5))));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> orderService.createOrder(request("item-1", 10)).block());
+        verify(itemServiceClient, never()).updateInventoryBatch(any());
+        verify(orderOutbox, never()).save(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void createOrder_whenItemServiceRejectsTheReservation_shouldFailWithInsufficientStock() {
+        // Arrange: another order took the stock between the lookup and the reservation
+        when(itemServiceClient.getItemSummaries(List.of("item-1")))
+                .thenReturn(Mono.just(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 100))));
+        when(itemServiceClient.updateInventoryBatch(any())).thenReturn(Mono.error(
+                WebClientResponseException.create(409, "Conflict", HttpHeaders.EMPTY, new byte[0], null)));
+
+        // Act & Assert
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder(request("item-1", 2)).block());
+        verify(orderOutbox, never()).save(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void createOrder_whenSavingFails_shouldReleaseReservedStock() {
+        // Arrange
+        when(itemServiceClient.getItemSummaries(List.of("item-1")))
+                .thenReturn(Mono.just(List.of(new ItemSummary("item-1", new BigDecimal("10.00"), 100))));
+        when(itemServiceClient.updateInventoryBatch(any()))
+                .thenReturn(Mono.just(new ItemServiceClient.BatchInventoryResponse(true, List.of())));
+        when(orderOutbox.save(any(Order.class), anyString(), any(byte[].class)))
+                .thenReturn(Mono.error(new IllegalStateException("write failed")));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> orderService.createOrder(request("item-1", 2)).block());
+        verify(itemServiceClient).updateInventoryBatch(argThat(req -> req.adjustments().equals(
+                List.of(new ItemServiceClient.InventoryAdjustment("item-1", 2)))));
+    }
+
+    @Test
+    void cancelOrder_whenOrderIsCreated_shouldRestockAndSave() {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        OrderItem orderItem = new OrderItem();
+        orderItem.setProductId("item-1");
+        orderItem.setQuantity(2);
+        Order existingOrder = new Order();
+        existingOrder.setId(orderId);
+        existingOrder.setStatus(OrderStatus.CREATED);
+        existingOrder.setItems(List.of(orderItem));
+
+        when(orderRepository.findById(orderId)).thenReturn(Mono.just(existingOrder));
+        when(orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED)).thenReturn(Mono.just(true));
+        when(itemServiceClient.updateInventoryBatch(eq("order-" + orderId + "-restock"), any()))
+                .thenReturn(Mono.just(new ItemServiceClient.BatchInventoryResponse(true, List.of())));
+        when(orderOutbox.recordStatusChange(any(Order.class), anyString(), any(byte[].class)))
+                .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        // Act
+        Order cancelledOrder = orderService.cancelOrder(orderId).block();
+
+        // Assert
+        assertThat(cancelledOrder.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        verify(orderOutbox).recordStatusChange(eq(existingOrder), eq("order-cancelled-topic"), any(byte[].class));
+    }
+
+    @Test
+    void cancelOrder_whenRestockFails_shouldKeepOrderCancelled() {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        Order existingOrder = new Order();
+        existingOrder.setId(orderId);
+        existingOrder.setStatus(OrderStatus.CREATED);
+        existingOrder.setItems(List.of());
+
+        when(orderRepository.findById(orderId)).thenReturn(Mono.just(existingOrder));
+        when(orderRepository.updateStatus(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED)).thenReturn(Mono.just(true));
+        when(itemServiceClient.updateInventoryBatch(anyString(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("ItemService unavailable")));
+
+        // Act & Assert: a repeated cancel restocks under the same key instead of finding a reopened order
+        assertThrows(IllegalStateException.class, () -> orderService.cancelOrder(orderId).block());
+        verify(orderRepository, never()).updateStatus(orderId, OrderStatus.CANCELLED, OrderStatus.CREATED);
+        verify(orderOutbox, never()).recordStatusChange(any(Order.class), anyString(), any(byte[].class));
+    }
+
+    @Test
+    void cancelOrder_whenOrderDoesNotExist_shouldFail() {
+        // Arrange
+        UUID orderId = UUID.randomUUID();
+        when(orderRepository.findById(orderId)).thenReturn(Mono.empty());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> orderService.cancelOrder(orderId).block());
+        verify(itemServiceClient, never()).updateInventoryBatch(anyString(), any());
+    }
+
+    private static OrderRequest request(String productId, int quantity) {
+        OrderRequest.ProductInfo productInfo = new OrderRequest.ProductInfo();
+        productInfo.setProductId(productId);
+        productInfo.setQuantity(quantity);
+        OrderRequest orderRequest = new OrderRequest();
+        orderRequest.setUserId(1L);
+        orderRequest.setProducts(List.of(productInfo));
+        return orderRequest;
+    }
+}
@@ -0,0 +1,119 @@
+package com.chuwa.orderservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestHedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RequestHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        hedger.shutdown();
+    }
+
+    @Test
+    void call_whenFirstAttemptIsSlow_shouldReturnHedgedAnswer() {
+        // Arrange: 100 fast calls set the delay to the 10ms floor and save up 10 tokens
+        hedger = new RequestHedger(meterRegistry, true, 0.95, Duration.ofMillis(10), 10, 20, 4);
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Act: the first attempt stalls for 2s, the hedge answers at once
+        long start = System.nanoTime();
+        String answer = hedger.call(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                LockSupport.parkNanos(Duration.ofSeconds(2).toNanos());
+                return "slow";
+            }
+            return "hedge";
+        });
+
+        // Assert
+        assertThat(answer).isEqualTo("hedge");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(meterRegistry.get("item-service.hedges").tag("result", "won").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_whenBudgetIsExhausted_shouldWaitForFirstAttempt() {
+        // Arrange: no budget at all
+        hedger = new RequestHedger(meterRegistry, true, 0.95, Duration.ofMillis(10), 0, 20, 4);
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Act
+        String answer = hedger.call(() -> {
+            attempts.incrementAndGet();
+            LockSupport.parkNanos(Duration.ofMillis(100).toNanos());
+            return "slow";
+        });
+
+        // Assert
+        assertThat(answer).isEqualTo("slow");
+        assertThat(attempts).hasValue(1);
+        assertThat(meterRegistry.get("item-service.hedges").tag("result", "throttled").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void call_whenEveryThreadIsBusy_shouldRunOnCallerThreadWithoutHedging() throws Exception {
+        // Arrange: one primary thread, held by a call that waits for the latch
+        hedger = new RequestHedger(meterRegistry, true, 0.95, Duration.ofMillis(10), 10, 20, 1);
+        warmUp();
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> busy = CompletableFuture.supplyAsync(() -> hedger.call(() -> {
+            awaitQuietly(release);
+            return "busy";
+        }));
+        LockSupport.parkNanos(Duration.ofMillis(50).toNanos());
+        Thread caller = Thread.currentThread();
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Act: slower than the delay, but it already runs on the caller's thread
+        boolean onCaller = hedger.call(() -> {
+            attempts.incrementAndGet();
+            LockSupport.parkNanos(Duration.ofMillis(100).toNanos());
+            return Thread.currentThread() == caller;
+        });
+        release.countDown();
+
+        // Assert
+        assertThat(onCaller).isTrue();
+        assertThat(attempts).hasValue(1);
+        assertThat(busy.get()).isEqualTo("busy");
+    }
+
+    @Test
+    void call_whenDisabled_shouldRunOnceOnCallerThread() {
+        hedger = RequestHedger.disabled();
+        Thread caller = Thread.currentThread();
+
+        assertThat(hedger.call(() -> Thread.currentThread() == caller)).isTrue();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 100; i++) {
+            hedger.call(() -> "fast");
+        }
+        // The last latency is recorded right after the answer is handed back
+        LockSupport.parkNanos(Duration.ofMillis(50).toNanos());
+    }
+}
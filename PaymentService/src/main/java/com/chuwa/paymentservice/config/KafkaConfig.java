@@ -0,0 +1,63 @@
+package com.chuwa.paymentservice.config;
+
+import com.chuwa.paymentservice.event.OrderEventDeserializer;
+import com.chuwa.paymentservice.event.OrderEventSerializer;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaConsumerFactoryCustomizer;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.util.Map;
+
+/**
+ * Order and payment events travel as binary {@code OrderEvent} records keyed
+ * by order ID, so all events of one order land on the same partition in order.
+ * A record that cannot be decoded is handed to the container's error handler
+ * and skipped rather than retried forever. The payment topics are created with
+ * {@code payment.kafka.partitions} partitions, enough for consumers of other
+ * services to work through them in parallel.
+ */
+@Configuration
+public class KafkaConfig {
+
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer orderEventProducerCustomizer() {
+        return producerFactory -> producerFactory.updateConfigs(Map.of(
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, OrderEventSerializer.class));
+    }
+
+    @Bean
+    public NewTopic paymentProcessedTopic(@Value("${payment.kafka.partitions:12}") int partitions,
+                                          @Value("${payment.kafka.replication-factor:1}") short replicationFactor) {
+        return TopicBuilder.name("payment-processed-topic").partitions(partitions).replicas(replicationFactor).build();
+    }
+
+    @Bean
+    public NewTopic paymentRefundedTopic(@Value("${payment.kafka.partitions:12}") int partitions,
+                                         @Value("${payment.kafka.replication-factor:1}") short replicationFactor) {
+        return TopicBuilder.name("payment-refunded-topic").partitions(partitions).replicas(replicationFactor).build();
+    }
+
+    // Payments are created a polled batch at a time, so the poll size is the batch size.
+    // Cooperative rebalancing lets consumers keep their partitions while KafkaConsumerScaler restarts others.
+    @Bean
+    public DefaultKafkaConsumerFactoryCustomizer orderEventConsumerCustomizer(
+            @Value("${payment.consumer.max-poll-records:500}") int maxPollRecords) {
+        return consumerFactory -> consumerFactory.updateConfigs(Map.of(
+                ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class,
+                ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class,
+                ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, OrderEventDeserializer.class,
+                ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords,
+                ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, CooperativeStickyAssignor.class.getName()));
+    }
+}
@@ -0,0 +1,41 @@
+package com.chuwa.paymentservice.config;
+
+import com.chuwa.paymentservice.model.Payment;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Payments used to get AUTO_INCREMENT ids. Before the first payment is
+ * inserted with a sequence id, this moves the payment_seq table past the
+ * highest existing id plus one allocation block. That way the pooled ids
+ * Hibernate hands out cannot collide with existing rows. The step is
+ * idempotent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@DependsOn("entityManagerFactory") // Hibernate creates payment_seq first when it manages the schema
+public class PaymentIdSequenceInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Runs while the context starts, before the Kafka listeners and the web server take traffic
+    @PostConstruct
+    public void initialize() {
+        try {
+            int updated = jdbcTemplate.update(
+                    "UPDATE payment_seq SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + ? + 1 FROM payments))",
+                    Payment.ID_ALLOCATION_SIZE);
+            if (updated == 0) {
+                log.warn("payment_seq has no row yet; payment ids start at the sequence's initial value");
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not move payment_seq past existing payment ids", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.chuwa.paymentservice.event;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Fixed-size binary encoding of {@link OrderEvent}s, shared with OrderService.
+ * Version 1 is 43 bytes, all numbers big-endian:
+ * <pre>
+ *  0  version (1)
+ *  1  event type code
+ *  2  order ID, 16 bytes (most then least significant half)
+ * 18  user ID, 8 bytes
+ * 26  timestamp, epoch milliseconds, 8 bytes
+ * 34  amount scale, 1 byte
+ * 35  amount unscaled value, 8 bytes
+ * </pre>
+ * Later versions may only append fields, so a reader accepts any version from
+ * 1 up and ignores bytes it does not know. Encoding allocates only the output
+ * array; decoding reads the fields in place.
+ */
+public final class OrderEventCodec {
+
+    public static final byte VERSION = 1;
+    static final int LENGTH = 43;
+
+    private OrderEventCodec() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount does not fit in a scale byte and a 64-bit unscaled value.
+     */
+    public static byte[] encode(OrderEvent event) {
+        BigDecimal amount = event.amount();
+        if (amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE || amount.unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException("Amount out of range for an order event: " + amount);
+        }
+        byte[] out = new byte[LENGTH];
+        out[0] = VERSION;
+        out[1] = event.type().code();
+        putLong(out, 2, event.orderId().getMostSignificantBits());
+        putLong(out, 10, event.orderId().getLeastSignificantBits());
+        putLong(out, 18, event.userId());
+        putLong(out, 26, event.timestamp().toEpochMilli());
+        out[34] = (byte) amount.scale();
+        putLong(out, 35, amount.unscaledValue().longValue());
+        return out;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is not an order event of a known version and type.
+     */
+    public static OrderEvent decode(byte[] data) {
+        if (data == null || data.length < LENGTH) {
+            throw new IllegalArgumentException("Truncated order event: " + (data == null ? 0 : data.length) + " bytes");
+        }
+        if (data[0] < VERSION) {
+            throw new IllegalArgumentException("Unsupported order event version: " + data[0]);
+        }
+        return new OrderEvent(
+                OrderEvent.Type.of(data[1]),
+                new UUID(getLong(data, 2), getLong(data, 10)),
+                getLong(data, 18),
+                BigDecimal.valueOf(getLong(data, 35), data[34]),
+                Instant.ofEpochMilli(getLong(data, 26)));
+    }
+
+    private static void putLong(byte[] out, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            out[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,17 @@
+package com.chuwa.paymentservice.event;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Kafka value deserializer reading {@link OrderEventCodec} records. It throws
+ * on malformed data, so it is meant to be wrapped in an
+ * {@code ErrorHandlingDeserializer} that turns such records into errors
+ * instead of blocking the partition.
+ */
+public class OrderEventDeserializer implements Deserializer<OrderEvent> {
+
+    @Override
+    public OrderEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : OrderEventCodec.decode(data);
+    }
+}
@@ -0,0 +1,14 @@
+package com.chuwa.paymentservice.event;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer writing {@link OrderEventCodec} records.
+ */
+public class OrderEventSerializer implements Serializer<OrderEvent> {
+
+    @Override
+    public byte[] serialize(String topic, OrderEvent event) {
+        return event == null ? null : OrderEventCodec.encode(event);
+    }
+}
@@ -10,13 +10,20 @@ import java.time.Instant;
 @Table(name = "payments")
 public class Payment {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence ids let Hibernate batch inserts; IDENTITY needs a round trip per row.
+    // MySQL has no sequences, so Hibernate keeps the next value in a payment_seq table.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_seq")
+    @SequenceGenerator(name = "payment_seq", sequenceName = "payment_seq", allocationSize = Payment.ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false, unique = true)
     private String orderId;
 
+    private Long userId;
+
     @Column(nullable = false)
     private BigDecimal amount;
 
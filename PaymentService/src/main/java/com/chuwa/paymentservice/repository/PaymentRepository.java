@@ -1,13 +1,19 @@
 package com.chuwa.paymentservice.repository;
 
 import com.chuwa.paymentservice.model.Payment;
+import com.chuwa.paymentservice.model.PaymentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, Long> {
+public interface PaymentRepository extends JpaRepository<Payment, Long>, PaymentRepositoryCustom {
 
     /**
      * Finds a payment by its associated order ID.
@@ -16,4 +22,21 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
      * @return An Optional containing the payment if it exists.
      */
     Optional<Payment> findByOrderId(String orderId);
-}
\ No newline at end of file
+
+    /**
+     * Moves a payment to its next status in one conditional UPDATE, only if it is
+     * still in the expected one; of two concurrent transitions, one applies.
+     * @param orderId The unique ID of the order.
+     * @param expected The status the payment must have now.
+     * @param next The new status.
+     * @param updatedAt The time of the change.
+     * @return 1 if the transition applied, 0 if the payment is missing or in another status.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Payment p set p.status = :next, p.updatedAt = :updatedAt where p.orderId = :orderId and p.status = :expected")
+    int updateStatus(@Param("orderId") String orderId,
+                     @Param("expected") PaymentStatus expected,
+                     @Param("next") PaymentStatus next,
+                     @Param("updatedAt") Instant updatedAt);
+}
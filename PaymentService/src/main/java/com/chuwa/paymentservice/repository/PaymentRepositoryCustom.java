@@ -0,0 +1,26 @@
+package com.chuwa.paymentservice.repository;
+
+import com.chuwa.paymentservice.model.Payment;
+
+import java.util.List;
+
+public interface PaymentRepositoryCustom {
+
+    /**
+     * Inserts the payment with a plain INSERT; the unique orderId rejects a
+     * second payment for the same order, so concurrent duplicate events cannot
+     * both insert. Any other failure of the statement is thrown.
+     * @param payment A new payment; it gets its ID assigned here.
+     * @return true if it was inserted, false if the order already had a payment.
+     */
+    boolean insertIfAbsent(Payment payment);
+
+    /**
+     * Inserts the payments in one JDBC batch, keeping the existing row for every
+     * order that already has a payment, then finds out which rows were new with
+     * one query on the assigned IDs.
+     * @param payments New payments for distinct orders; they get their IDs assigned here.
+     * @return The payments that were inserted, in the given order.
+     */
+    List<Payment> insertAllIfAbsent(List<Payment> payments);
+}
@@ -0,0 +1,100 @@
+package com.chuwa.paymentservice.repository;
+
+import com.chuwa.paymentservice.model.Payment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PaymentRepositoryCustomImpl implements PaymentRepositoryCustom {
+
+    private static final String INSERT = "INSERT INTO payments "
+            + "(id, order_id, user_id, amount, status, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+    // A duplicate key keeps the existing row; truncation, NOT NULL and every other error still fail the statement
+    private static final String INSERT_KEEPING_DUPLICATES = INSERT + " ON DUPLICATE KEY UPDATE order_id = order_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate sequenceTransaction;
+
+    // The block of IDs this instance took from payment_seq and has not handed out yet
+    private long nextId = 1;
+    private long lastId = 0;
+
+    public PaymentRepositoryCustomImpl(JdbcTemplate jdbcTemplate,
+                                       NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                                       PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.sequenceTransaction = new TransactionTemplate(transactionManager);
+        // Like Hibernate, move the sequence outside the caller's transaction so its row is locked only briefly
+        this.sequenceTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public boolean insertIfAbsent(Payment payment) {
+        payment.setId(nextId());
+        try {
+            jdbcTemplate.update(INSERT, values(payment));
+            return true;
+        } catch (DuplicateKeyException e) {
+            // IDs come from the sequence, so the key that clashed is the orderId
+            return false;
+        }
+    }
+
+    @Override
+    public List<Payment> insertAllIfAbsent(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return List.of();
+        }
+        payments.forEach(payment -> payment.setId(nextId()));
+        jdbcTemplate.batchUpdate(INSERT_KEEPING_DUPLICATES, payments.stream().map(PaymentRepositoryCustomImpl::values).toList());
+
+        // Update counts cannot tell an insert from a kept duplicate, so look up which new IDs now hold their order
+        Map<Long, String> inserted = new HashMap<>();
+        namedParameterJdbcTemplate.query("SELECT id, order_id FROM payments WHERE id IN (:ids)",
+                Map.of("ids", payments.stream().map(Payment::getId).toList()),
+                rs -> {
+                    inserted.put(rs.getLong("id"), rs.getString("order_id"));
+                });
+        return payments.stream()
+                .filter(payment -> payment.getOrderId().equals(inserted.get(payment.getId())))
+                .toList();
+    }
+
+    // Takes IDs from payment_seq in blocks the way Hibernate's pooled optimizer does, so they never overlap with persist()
+    private synchronized long nextId() {
+        if (nextId > lastId) {
+            long allocationSize = Payment.ID_ALLOCATION_SIZE;
+            Long next = sequenceTransaction.execute(status -> {
+                if (jdbcTemplate.update("UPDATE payment_seq SET next_val = LAST_INSERT_ID(next_val + ?)", allocationSize) == 0) {
+                    throw new IllegalStateException("payment_seq has no row to take payment IDs from");
+                }
+                return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+            });
+            // The value before the increment is the highest ID of the block
+            lastId = next - allocationSize;
+            nextId = Math.max(1, lastId - allocationSize + 1);
+        }
+        return nextId++;
+    }
+
+    private static Object[] values(Payment payment) {
+        return new Object[]{
+                payment.getId(),
+                payment.getOrderId(),
+                payment.getUserId(),
+                payment.getAmount(),
+                payment.getStatus().name(),
+                payment.getCreatedAt() == null ? null : Timestamp.from(payment.getCreatedAt())
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package com.chuwa.paymentservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sizes the order-created listener to its consumer lag. Every
+ * {@code payment.consumer.scale-interval-ms} it compares the group's committed
+ * offsets with the end of each partition and runs one consumer per
+ * {@code payment.consumer.lag-per-consumer} records behind. A single partition
+ * far behind therefore spreads the topic over more consumers, so it no longer
+ * holds up the partitions sharing its consumer.
+ * <p>
+ * Concurrency stays between {@code payment.consumer.min-concurrency} and this
+ * instance's share of the partitions, the partition count divided by the
+ * number of hosts in the group (capped by
+ * {@code payment.consumer.max-concurrency}); consumers beyond that share would
+ * sit idle. Every change restarts this instance's consumers and rebalances the
+ * group, so the count only shrinks after lag has stayed low for
+ * {@code payment.consumer.scale-down-checks} checks, and after a change it is
+ * left alone for {@code payment.consumer.scale-cooldown}. The group uses
+ * cooperative rebalancing (see KafkaConfig), so the other instances keep their
+ * partitions meanwhile.
+ */
+@Slf4j
+@Component
+public class KafkaConsumerScaler {
+
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final KafkaAdmin kafkaAdmin;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final long lagPerConsumer;
+    private final int scaleDownChecks;
+    private final long cooldownNanos;
+    private final long timeoutMillis;
+    private Admin admin;
+    private int lowLagChecks;
+    private boolean changed;
+    private long lastChange;
+
+    public KafkaConsumerScaler(KafkaListenerEndpointRegistry listenerRegistry,
+                               KafkaAdmin kafkaAdmin,
+                               @Value("${payment.consumer.min-concurrency:2}") int minConcurrency,
+                               @Value("${payment.consumer.max-concurrency:12}") int maxConcurrency,
+                               @Value("${payment.consumer.lag-per-consumer:1000}") long lagPerConsumer,
+                               @Value("${payment.consumer.scale-down-checks:3}") int scaleDownChecks,
+                               @Value("${payment.consumer.scale-cooldown:2m}") Duration cooldown,
+                               @Value("${payment.consumer.lag-timeout:5s}") Duration timeout) {
+        if (minConcurrency < 1 || minConcurrency > maxConcurrency) {
+            throw new IllegalArgumentException("Concurrency must satisfy 1 <= min <= max");
+        }
+        if (lagPerConsumer < 1) {
+            throw new IllegalArgumentException("Lag per consumer must be positive");
+        }
+        this.listenerRegistry = listenerRegistry;
+        this.kafkaAdmin = kafkaAdmin;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.lagPerConsumer = lagPerConsumer;
+        this.scaleDownChecks = Math.max(1, scaleDownChecks);
+        this.cooldownNanos = cooldown.toNanos();
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @Scheduled(initialDelayString = "${payment.consumer.scale-interval-ms:30000}",
+            fixedDelayString = "${payment.consumer.scale-interval-ms:30000}")
+    public void adjust() {
+        if (!(listenerRegistry.getListenerContainer(KafkaConsumerService.LISTENER_ID)
+                instanceof ConcurrentMessageListenerContainer<?, ?> container) || !container.isRunning()) {
+            return;
+        }
+
+        // 1. Measure how far the group is behind on each partition, and how many instances share them
+        Map<TopicPartition, Long> lag;
+        int instances;
+        try {
+            lag = lagByPartition();
+            instances = instances();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Could not read the lag of {}, keeping {} consumers", KafkaConsumerService.GROUP_ID,
+                    container.getConcurrency(), e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // 2. Decide on the number of consumers
+        int current = container.getConcurrency();
+        int next = decide(current, lag, instances, System.nanoTime());
+        if (next == current) {
+            return;
+        }
+
+        // 3. Concurrency is read when the container starts; consumers resume from the committed offsets
+        log.info("Lag of {} records over {} partitions shared by {} instances, changing consumers from {} to {}",
+                lag.values().stream().mapToLong(Long::longValue).sum(), lag.size(), instances, current, next);
+        container.stop();
+        container.setConcurrency(next);
+        container.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (admin != null) {
+            admin.close(Duration.ofMillis(timeoutMillis));
+        }
+    }
+
+    /**
+     * @param current The number of consumers running now.
+     * @param lag Records behind per partition of the topic.
+     * @param instances The number of instances sharing the partitions, this one included.
+     * @param now The current {@link System#nanoTime()}.
+     * @return The number of consumers to run, which is {@code current} while a scale-down is still pending
+     * or the last change is too recent.
+     */
+    int decide(int current, Map<TopicPartition, Long> lag, int instances, long now) {
+        int target = targetConcurrency(lag, instances);
+        if (target >= current) {
+            lowLagChecks = 0;
+        } else if (++lowLagChecks < scaleDownChecks) {
+            return current;
+        }
+        if (target == current || (changed && now - lastChange < cooldownNanos)) {
+            return current;
+        }
+        lowLagChecks = 0;
+        changed = true;
+        lastChange = now;
+        return target;
+    }
+
+    private int targetConcurrency(Map<TopicPartition, Long> lag, int instances) {
+        long totalLag = lag.values().stream().mapToLong(Long::longValue).sum();
+        long wanted = (totalLag + lagPerConsumer - 1) / lagPerConsumer;
+        // A consumer beyond this instance's share of the partitions would get no partition
+        int share = (lag.size() + instances - 1) / Math.max(1, instances);
+        int ceiling = Math.max(minConcurrency, Math.min(maxConcurrency, share));
+        return (int) Math.max(minConcurrency, Math.min(ceiling, wanted));
+    }
+
+    // Every consumer of the group is a member; consumers of one instance share its host
+    private int instances() throws ExecutionException, InterruptedException, TimeoutException {
+        ConsumerGroupDescription group = admin.describeConsumerGroups(List.of(KafkaConsumerService.GROUP_ID))
+                .describedGroups().get(KafkaConsumerService.GROUP_ID).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        long hosts = group.members().stream().map(MemberDescription::host).distinct().count();
+        return (int) Math.max(1, hosts);
+    }
+
+    private Map<TopicPartition, Long> lagByPartition() throws ExecutionException, InterruptedException, TimeoutException {
+        if (admin == null) {
+            admin = Admin.create(kafkaAdmin.getConfigurationProperties());
+        }
+        TopicDescription topic = admin.describeTopics(List.of(KafkaConsumerService.TOPIC))
+                .allTopicNames().get(timeoutMillis, TimeUnit.MILLISECONDS).get(KafkaConsumerService.TOPIC);
+        Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+        topic.partitions().forEach(info -> latest.put(new TopicPartition(topic.name(), info.partition()), OffsetSpec.latest()));
+
+        Map<TopicPartition, ListOffsetsResultInfo> endOffsets = admin.listOffsets(latest)
+                .all().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(KafkaConsumerService.GROUP_ID)
+                .partitionsToOffsetAndMetadata().get(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        Map<TopicPartition, Long> lag = new HashMap<>();
+        endOffsets.forEach((partition, end) -> {
+            OffsetAndMetadata offset = committed.get(partition);
+            // Without a committed offset the group has not consumed the partition yet and reads it from the start
+            long position = offset == null ? 0 : offset.offset();
+            lag.put(partition, Math.max(0, end.offset() - position));
+        });
+        return lag;
+    }
+}
@@ -1,34 +1,111 @@
 package com.chuwa.paymentservice.service;
 
-import lombok.RequiredArgsConstructor;
+import com.chuwa.paymentservice.event.OrderEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Creates payments for new orders a polled batch at a time: one query finds
+ * the orders that already have a payment and the rest are inserted together.
+ * When a batch takes longer than {@code payment.consumer.slow-batch}, the
+ * database is falling behind, so the listener pauses its partitions for
+ * {@code payment.consumer.pause} before fetching more.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class KafkaConsumerService {
 
+    static final String LISTENER_ID = "payment-order-created";
+    static final String TOPIC = "order-created-topic";
+    static final String GROUP_ID = "payment-group";
+
     private final PaymentService paymentService;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final long slowBatchNanos;
+    private final Duration pause;
+    private final ScheduledExecutorService resumer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "payment-consumer-resume");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public KafkaConsumerService(PaymentService paymentService,
+                                KafkaListenerEndpointRegistry listenerRegistry,
+                                @Value("${payment.consumer.slow-batch:2s}") Duration slowBatch,
+                                @Value("${payment.consumer.pause:5s}") Duration pause) {
+        this.paymentService = paymentService;
+        this.listenerRegistry = listenerRegistry;
+        this.slowBatchNanos = slowBatch.toNanos();
+        this.pause = pause;
+    }
 
-    @KafkaListener(topics = "order-created-topic", groupId = "payment-group")
-    public void handleOrderCreated(String message) {
-        System.out.println("Received Order Created Event: " + message);
+    // Starts with min-concurrency consumers; KafkaConsumerScaler adds more, up to one per partition, while lag grows
+    @KafkaListener(id = LISTENER_ID, topics = TOPIC, groupId = GROUP_ID, batch = "true",
+            concurrency = "${payment.consumer.min-concurrency:2}")
+    public void handleOrderCreated(List<ConsumerRecord<String, OrderEvent>> records) {
+        // 1. Records that could not be decoded arrive without a value; see KafkaConfig
+        List<OrderEvent> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, OrderEvent> record : records) {
+            if (record.value() == null) {
+                log.warn("Skipping undecodable record {}-{}@{}", record.topic(), record.partition(), record.offset());
+            } else {
+                events.add(record.value());
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
 
-        // This is a simple parser. A real application would use a structured
-        // format like JSON for Kafka messages.
+        // 2. Create the payments of the whole batch together
+        long start = System.nanoTime();
         try {
-            // Example message: "Order created with ID: uuid, Total Amount: 123.45"
-            String orderId = message.split(",")[0].split(": ")[1].trim();
-            BigDecimal amount = new BigDecimal(message.split(",")[1].split(": ")[1].trim());
+            paymentService.processPayments(events);
+        } catch (DataIntegrityViolationException e) {
+            // A redelivered order slipped in between the check and the insert; settle the batch order by order
+            events.forEach(this::processPayment);
+        }
 
-            // Call the service to process the payment
-            paymentService.processPayment(orderId, amount);
+        // 3. Give the database time to catch up before the next poll
+        long elapsed = System.nanoTime() - start;
+        if (elapsed > slowBatchNanos) {
+            pausePartitions(events.size(), elapsed);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resumer.shutdownNow();
+    }
+
+    private void processPayment(OrderEvent event) {
+        // User ID 0 means the order had none
+        Long userId = event.userId() == 0 ? null : event.userId();
+        paymentService.processPayment(event.orderId().toString(), userId, event.amount());
+    }
 
-        } catch (Exception e) {
-            System.err.println("Failed to parse order message: " + message);
-            // Handle parsing error, maybe send to a dead-letter queue
+    private void pausePartitions(int batchSize, long elapsedNanos) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null || container.isPauseRequested()) {
+            return;
         }
+        log.warn("Payments for {} orders took {} ms, pausing consumption for {} ms",
+                batchSize, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), pause.toMillis());
+        // Takes effect before the next poll; the consumer keeps its partitions while paused
+        container.pause();
+        resumer.schedule(container::resume, pause.toMillis(), TimeUnit.MILLISECONDS);
     }
-}
\ No newline at end of file
+}
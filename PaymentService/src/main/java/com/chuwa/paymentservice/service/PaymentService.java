@@ -1,12 +1,16 @@
 package com.chuwa.paymentservice.service;
 
+import com.chuwa.paymentservice.event.OrderEvent;
 import com.chuwa.paymentservice.model.Payment;
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 public interface PaymentService {
 
-    Payment processPayment(String orderId, BigDecimal amount);
+    Payment processPayment(String orderId, Long userId, BigDecimal amount);
+
+    List<Payment> processPayments(List<OrderEvent> orderCreatedEvents);
 
     Optional<Payment> getPaymentByOrderId(String orderId);
 
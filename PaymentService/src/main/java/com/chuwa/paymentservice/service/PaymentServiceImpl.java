@@ -1,38 +1,57 @@
 package com.chuwa.paymentservice.service;
 
+import com.chuwa.paymentservice.event.OrderEvent;
 import com.chuwa.paymentservice.model.Payment;
 import com.chuwa.paymentservice.model.PaymentStatus;
 import com.chuwa.paymentservice.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class PaymentServiceImpl implements PaymentService {
 
     private final PaymentRepository paymentRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaTemplate<String, OrderEvent> kafkaTemplate;
 
     @Override
-    public Payment processPayment(String orderId, BigDecimal amount) {
-        // ... existing idempotency logic ...
-        Optional<Payment> existingPayment = paymentRepository.findByOrderId(orderId);
-        if (existingPayment.isPresent()) {
-            return existingPayment.get();
+    public Payment processPayment(String orderId, Long userId, BigDecimal amount) {
+        // 1. Insert unless the order already has a payment; the unique orderId decides, so duplicates cannot race
+        Payment newPayment = newPayment(orderId, userId, amount);
+        if (paymentRepository.insertIfAbsent(newPayment)) {
+            return newPayment;
         }
 
-        Payment newPayment = new Payment();
-        newPayment.setOrderId(orderId);
-        newPayment.setAmount(amount);
-        newPayment.setStatus(PaymentStatus.PENDING);
-        newPayment.setCreatedAt(Instant.now());
+        // 2. A repeated event: return the payment created the first time
+        return paymentRepository.findByOrderId(orderId)
+                .orElseThrow(() -> new IllegalStateException("Payment for order " + orderId + " was rejected as a duplicate but does not exist"));
+    }
 
-        return paymentRepository.save(newPayment);
+    @Override
+    @Transactional
+    public List<Payment> processPayments(List<OrderEvent> orderCreatedEvents) {
+        // 1. Keep one event per order; Kafka may deliver the same event more than once
+        Map<String, OrderEvent> pending = new LinkedHashMap<>();
+        for (OrderEvent event : orderCreatedEvents) {
+            pending.putIfAbsent(event.orderId().toString(), event);
+        }
+
+        // 2. Insert them in one batch; orders that already have a payment keep it, so redelivered events cannot race
+        List<Payment> newPayments = new ArrayList<>(pending.size());
+        pending.forEach((orderId, event) ->
+                newPayments.add(newPayment(orderId, event.userId() == 0 ? null : event.userId(), event.amount())));
+        return paymentRepository.insertAllIfAbsent(newPayments);
     }
 
     @Override
@@ -42,44 +61,53 @@ public class PaymentServiceImpl implements PaymentService {
 
     @Override
     public Payment submitPayment(String orderId) {
-        // Find the PENDING payment record
-        Payment payment = paymentRepository.findByOrderId(orderId)
-                .orElseThrow(() -> new IllegalArgumentException("Payment record not found for order: " + orderId));
-
-        if (payment.getStatus() != PaymentStatus.PENDING) {
-            throw new IllegalStateException("Payment is not in PENDING state.");
-        }
-
-        // Simulate calling an external payment gateway and getting a successful response
-        payment.setStatus(PaymentStatus.COMPLETED);
-        payment.setUpdatedAt(Instant.now());
-        Payment savedPayment = paymentRepository.save(payment);
+        // 1. Complete the payment only if it is still PENDING; of two concurrent submits, one applies
+        Payment payment = transition(orderId, PaymentStatus.PENDING, PaymentStatus.COMPLETED,
+                "Payment is not in PENDING state.");
 
-        // Publish the payment result to a Kafka topic
-        kafkaTemplate.send("payment-processed-topic", "Payment COMPLETED for order: " + orderId);
+        // 2. Simulate calling an external payment gateway and getting a successful response,
+        //    then publish the payment result to a Kafka topic
+        kafkaTemplate.send("payment-processed-topic", orderId, event(OrderEvent.Type.PAYMENT_PROCESSED, payment));
 
-        return savedPayment;
+        return payment;
     }
 
     @Override
     public Payment reversePayment(String orderId) {
-        // 1. Find the payment or throw an exception
+        // 1. Business Rule: Only completed payments can be refunded, checked by the update itself
+        Payment payment = transition(orderId, PaymentStatus.COMPLETED, PaymentStatus.REFUNDED,
+                "Cannot refund a payment that is not in COMPLETED state.");
+
+        // 2. Publish a refund event to Kafka
+        kafkaTemplate.send("payment-refunded-topic", orderId, event(OrderEvent.Type.PAYMENT_REFUNDED, payment));
+
+        return payment;
+    }
+
+    // The conditional UPDATE runs first and alone decides whether the transition applies; the payment
+    // is read only afterwards, for the response and the event, or to tell a missing payment from a wrong state
+    private Payment transition(String orderId, PaymentStatus expected, PaymentStatus next, String invalidState) {
+        boolean applied = paymentRepository.updateStatus(orderId, expected, next, Instant.now()) == 1;
         Payment payment = paymentRepository.findByOrderId(orderId)
                 .orElseThrow(() -> new IllegalArgumentException("Payment record not found for order: " + orderId));
-
-        // 2. Business Rule: Only completed payments can be refunded
-        if (payment.getStatus() != PaymentStatus.COMPLETED) {
-            throw new IllegalStateException("Cannot refund a payment that is not in COMPLETED state.");
+        if (!applied) {
+            throw new IllegalStateException(invalidState);
         }
+        return payment;
+    }
 
-        // 3. Update status and save
-        payment.setStatus(PaymentStatus.REFUNDED);
-        payment.setUpdatedAt(Instant.now());
-        Payment refundedPayment = paymentRepository.save(payment);
-
-        // 4. Publish a refund event to Kafka
-        kafkaTemplate.send("payment-refunded-topic", "Payment REFUNDED for order: " + orderId);
+    private static Payment newPayment(String orderId, Long userId, BigDecimal amount) {
+        Payment payment = new Payment();
+        payment.setOrderId(orderId);
+        payment.setUserId(userId);
+        payment.setAmount(amount);
+        payment.setStatus(PaymentStatus.PENDING);
+        payment.setCreatedAt(Instant.now());
+        return payment;
+    }
 
-        return refundedPayment;
+    private static OrderEvent event(OrderEvent.Type type, Payment payment) {
+        long userId = payment.getUserId() == null ? 0 : payment.getUserId();
+        return new OrderEvent(type, UUID.fromString(payment.getOrderId()), userId, payment.getAmount(), payment.getUpdatedAt());
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.chuwa.paymentservice;
+
+import com.chuwa.paymentservice.event.OrderEvent;
+import com.chuwa.paymentservice.event.OrderEventCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the size and parse throughput of binary order events against the
+ * string messages they replace, parsed the way the old consumer did with
+ * {@code split}. Only runs with {@code -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OrderEventBenchmarkTests {
+
+    private static final int MESSAGES = 1_000;
+    private static final int ROUNDS = 2_000;
+
+    // Keeps the JIT from discarding parse results
+    private static volatile long blackhole;
+
+    @Test
+    void sizeAndParseThroughput() {
+        byte[][] binary = new byte[MESSAGES][];
+        byte[][] text = new byte[MESSAGES][];
+        for (int i = 0; i < MESSAGES; i++) {
+            UUID orderId = UUID.randomUUID();
+            BigDecimal amount = BigDecimal.valueOf(1_000 + i, 2);
+            binary[i] = OrderEventCodec.encode(new OrderEvent(OrderEvent.Type.ORDER_CREATED, orderId, i, amount, Instant.now()));
+            text[i] = ("Order created with ID: " + orderId + ", Total Amount: " + amount).getBytes(StandardCharsets.UTF_8);
+        }
+
+        // Warm up both parsers before measuring
+        blackhole += parseText(text) + parseBinary(binary);
+        double textRate = rate(() -> blackhole += parseText(text));
+        double binaryRate = rate(() -> blackhole += parseBinary(binary));
+
+        System.out.printf("%-8s %10s %18s%n", "format", "bytes", "parses/s");
+        System.out.printf("%-8s %10d %18.0f%n", "string", text[0].length, textRate);
+        System.out.printf("%-8s %10d %18.0f%n", "binary", binary[0].length, binaryRate);
+        assertThat(binary[0].length).isLessThan(text[0].length);
+        assertThat(binaryRate).isGreaterThan(textRate);
+    }
+
+    private static double rate(Runnable parseAll) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            parseAll.run();
+        }
+        return (double) MESSAGES * ROUNDS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static long parseText(byte[][] messages) {
+        long sink = 0;
+        for (byte[] message : messages) {
+            String text = new String(message, StandardCharsets.UTF_8);
+            String orderId = text.split(",")[0].split(": ")[1].trim();
+            BigDecimal amount = new BigDecimal(text.split(",")[1].split(": ")[1].trim());
+            sink += UUID.fromString(orderId).getLeastSignificantBits() + amount.unscaledValue().longValue();
+        }
+        return sink;
+    }
+
+    private static long parseBinary(byte[][] messages) {
+        long sink = 0;
+        for (byte[] message : messages) {
+            OrderEvent event = OrderEventCodec.decode(message);
+            sink += event.orderId().getLeastSignificantBits() + event.amount().unscaledValue().longValue();
+        }
+        return sink;
+    }
+}
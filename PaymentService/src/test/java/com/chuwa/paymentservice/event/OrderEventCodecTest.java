@@ -0,0 +1,55 @@
+package com.chuwa.paymentservice.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OrderEventCodecTest {
+
+    private final OrderEvent event = new OrderEvent(OrderEvent.Type.ORDER_CREATED, UUID.randomUUID(), 42L,
+            new BigDecimal("123.45"), Instant.ofEpochMilli(1_700_000_000_123L));
+
+    @Test
+    void encode_thenDecode_shouldRoundTrip() {
+        byte[] encoded = OrderEventCodec.encode(event);
+
+        assertThat(encoded).hasSize(43);
+        assertThat(OrderEventCodec.decode(encoded)).isEqualTo(event);
+    }
+
+    @Test
+    void decode_withTrailingFieldsOfANewerVersion_shouldReadKnownFields() {
+        // Arrange
+        byte[] newer = Arrays.copyOf(OrderEventCodec.encode(event), 60);
+        newer[0] = 2;
+
+        // Act & Assert
+        assertThat(OrderEventCodec.decode(newer)).isEqualTo(event);
+    }
+
+    @Test
+    void decode_withTruncatedOrUnknownData_shouldThrowException() {
+        byte[] encoded = OrderEventCodec.encode(event);
+        byte[] unknownType = encoded.clone();
+        unknownType[1] = 99;
+
+        assertThrows(IllegalArgumentException.class, () -> OrderEventCodec.decode(Arrays.copyOf(encoded, 20)));
+        assertThrows(IllegalArgumentException.class, () -> OrderEventCodec.decode(unknownType));
+        assertThrows(IllegalArgumentException.class, () -> OrderEventCodec.decode(
+                "Order created with ID: 1, Total Amount: 2.00".getBytes()));
+    }
+
+    @Test
+    void encode_withAmountTooLarge_shouldThrowException() {
+        OrderEvent huge = new OrderEvent(OrderEvent.Type.ORDER_CREATED, UUID.randomUUID(), 1L,
+                new BigDecimal("1e30").setScale(2), Instant.now());
+
+        assertThrows(IllegalArgumentException.class, () -> OrderEventCodec.encode(huge));
+    }
+}
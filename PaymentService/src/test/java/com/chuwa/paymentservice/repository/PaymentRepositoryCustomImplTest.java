@@ -0,0 +1,124 @@
+package com.chuwa.paymentservice.repository;
+
+import com.chuwa.paymentservice.model.Payment;
+import com.chuwa.paymentservice.model.PaymentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentRepositoryCustomImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PaymentRepositoryCustomImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new PaymentRepositoryCustomImpl(jdbcTemplate, namedParameterJdbcTemplate, transactionManager);
+        // payment_seq held 150 before this instance took its block, so the block is 101..150
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(jdbcTemplate.update(startsWith("UPDATE payment_seq"), eq((long) Payment.ID_ALLOCATION_SIZE))).thenReturn(1);
+        when(jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class)).thenReturn(200L);
+    }
+
+    @Test
+    void insertIfAbsent_shouldTakeIdsFromOneSequenceBlock() {
+        // Arrange
+        Payment first = payment("order-1");
+        Payment second = payment("order-2");
+
+        // Act
+        boolean firstInserted = repository.insertIfAbsent(first);
+        boolean secondInserted = repository.insertIfAbsent(second);
+
+        // Assert
+        assertThat(firstInserted).isTrue();
+        assertThat(secondInserted).isTrue();
+        assertThat(first.getId()).isEqualTo(101L);
+        assertThat(second.getId()).isEqualTo(102L);
+        verify(jdbcTemplate, times(1)).queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+    }
+
+    @Test
+    void insertIfAbsent_whenOrderAlreadyHasPayment_shouldReturnFalse() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("INSERT INTO payments"), any(Object[].class)))
+                .thenThrow(new DuplicateKeyException("Duplicate entry 'order-1' for key 'payments.order_id'"));
+
+        // Act
+        boolean inserted = repository.insertIfAbsent(payment("order-1"));
+
+        // Assert
+        assertThat(inserted).isFalse();
+    }
+
+    @Test
+    void insertIfAbsent_whenInsertFailsForAnotherReason_shouldThrow() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("INSERT INTO payments"), any(Object[].class)))
+                .thenThrow(new DataIntegrityViolationException("Column 'amount' cannot be null"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> repository.insertIfAbsent(payment("order-1")));
+    }
+
+    @Test
+    void insertAllIfAbsent_shouldReturnOnlyPaymentsWhoseIdHoldsTheirOrder() throws Exception {
+        // Arrange: order-2 already had a payment, so its row was kept and the new ID was not used
+        Payment first = payment("order-1");
+        Payment second = payment("order-2");
+        doAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong("id")).thenReturn(101L);
+            when(rs.getString("order_id")).thenReturn("order-1");
+            inv.<RowCallbackHandler>getArgument(2).processRow(rs);
+            return null;
+        }).when(namedParameterJdbcTemplate).query(startsWith("SELECT id, order_id FROM payments"), anyMap(), any(RowCallbackHandler.class));
+
+        // Act
+        List<Payment> inserted = repository.insertAllIfAbsent(List.of(first, second));
+
+        // Assert
+        assertThat(inserted).containsExactly(first);
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("INSERT INTO payments"), anyList());
+    }
+
+    private static Payment payment(String orderId) {
+        Payment payment = new Payment();
+        payment.setOrderId(orderId);
+        payment.setUserId(7L);
+        payment.setAmount(new BigDecimal("9.99"));
+        payment.setStatus(PaymentStatus.PENDING);
+        payment.setCreatedAt(Instant.now());
+        return payment;
+    }
+}
@@ -0,0 +1,104 @@
+package com.chuwa.paymentservice.service;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+class KafkaConsumerScalerTest {
+
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private KafkaAdmin kafkaAdmin;
+
+    private KafkaConsumerScaler scaler;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        // 2 to 12 consumers, one per 1000 records behind, shrinking after 3 low checks, changing at most once a minute
+        scaler = new KafkaConsumerScaler(listenerRegistry, kafkaAdmin, 2, 12, 1000, 3, Duration.ofMinutes(1),
+                Duration.ofSeconds(1));
+    }
+
+    @Test
+    void decide_whenLagGrows_shouldAddConsumersUpToThePartitionCount() {
+        // Act & Assert
+        assertEquals(5, decide(2, lag(6, 4_500)));
+        assertEquals(6, decide(5, lag(6, 50_000)));
+    }
+
+    @Test
+    void decide_whenOnePartitionFallsBehind_shouldGiveEveryPartitionItsOwnConsumer() {
+        // Arrange
+        Map<TopicPartition, Long> lag = lag(6, 0);
+        lag.put(partition(0), 10_000L);
+
+        // Act & Assert
+        assertEquals(6, decide(2, lag));
+    }
+
+    @Test
+    void decide_whenLagDrops_shouldShrinkOnlyAfterRepeatedLowChecks() {
+        // Act & Assert
+        assertEquals(6, decide(6, lag(6, 0)));
+        assertEquals(6, decide(6, lag(6, 0)));
+        assertEquals(2, decide(6, lag(6, 0)));
+    }
+
+    @Test
+    void decide_whenLagRisesDuringScaleDown_shouldStartTheCountOver() {
+        // Act & Assert
+        assertEquals(6, decide(6, lag(6, 0)));
+        assertEquals(6, decide(6, lag(6, 0)));
+        assertEquals(6, decide(6, lag(6, 6_000)));
+        assertEquals(6, decide(6, lag(6, 0)));
+    }
+
+    @Test
+    void decide_whenOtherInstancesShareTheTopic_shouldStopAtThisInstancesShare() {
+        // Act & Assert: 6 partitions over 2 instances leave 3 for this one
+        assertEquals(3, scaler.decide(2, lag(6, 50_000), 2, now));
+    }
+
+    @Test
+    void decide_whenLastChangeIsRecent_shouldWaitForTheCooldown() {
+        // Arrange
+        assertEquals(3, scaler.decide(2, lag(6, 3_000), 1, now));
+
+        // Act & Assert
+        assertEquals(3, scaler.decide(3, lag(6, 6_000), 1, now + Duration.ofSeconds(30).toNanos()));
+        assertEquals(6, scaler.decide(3, lag(6, 6_000), 1, now + Duration.ofSeconds(60).toNanos()));
+    }
+
+    // One instance, checked far enough apart that the cooldown never holds a change back
+    private int decide(int current, Map<TopicPartition, Long> lag) {
+        now += Duration.ofMinutes(10).toNanos();
+        return scaler.decide(current, lag, 1, now);
+    }
+
+    private static Map<TopicPartition, Long> lag(int partitions, long totalLag) {
+        Map<TopicPartition, Long> lag = new HashMap<>();
+        for (int i = 0; i < partitions; i++) {
+            lag.put(partition(i), totalLag / partitions);
+        }
+        return lag;
+    }
+
+    private static TopicPartition partition(int partition) {
+        return new TopicPartition(KafkaConsumerService.TOPIC, partition);
+    }
+}
@@ -0,0 +1,96 @@
+package com.chuwa.paymentservice.service;
+
+import com.chuwa.paymentservice.event.OrderEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KafkaConsumerServiceTest {
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private MessageListenerContainer container;
+
+    private KafkaConsumerService kafkaConsumerService;
+
+    @AfterEach
+    void tearDown() {
+        if (kafkaConsumerService != null) {
+            kafkaConsumerService.shutdown();
+        }
+    }
+
+    @Test
+    void handleOrderCreated_shouldProcessTheDecodedRecordsAsOneBatch() {
+        // Arrange
+        kafkaConsumerService = new KafkaConsumerService(paymentService, listenerRegistry, Duration.ofMinutes(1), Duration.ofSeconds(1));
+        OrderEvent first = event(7L, "20.00");
+        OrderEvent second = event(0L, "5.00");
+
+        // Act: the middle record could not be decoded
+        kafkaConsumerService.handleOrderCreated(List.of(record(0, first), record(1, null), record(2, second)));
+
+        // Assert
+        verify(paymentService).processPayments(List.of(first, second));
+        verifyNoInteractions(listenerRegistry);
+    }
+
+    @Test
+    void handleOrderCreated_whenBatchHitsUniqueConstraint_shouldProcessOrdersOneByOne() {
+        // Arrange
+        kafkaConsumerService = new KafkaConsumerService(paymentService, listenerRegistry, Duration.ofMinutes(1), Duration.ofSeconds(1));
+        OrderEvent first = event(7L, "20.00");
+        OrderEvent second = event(0L, "5.00");
+        when(paymentService.processPayments(anyList())).thenThrow(new DataIntegrityViolationException("duplicate orderId"));
+
+        // Act
+        kafkaConsumerService.handleOrderCreated(List.of(record(0, first), record(1, second)));
+
+        // Assert: user ID 0 means none
+        verify(paymentService).processPayment(first.orderId().toString(), 7L, new BigDecimal("20.00"));
+        verify(paymentService).processPayment(second.orderId().toString(), null, new BigDecimal("5.00"));
+    }
+
+    @Test
+    void handleOrderCreated_whenBatchIsSlow_shouldPauseAndLaterResume() {
+        // Arrange: every batch counts as slow
+        kafkaConsumerService = new KafkaConsumerService(paymentService, listenerRegistry, Duration.ZERO, Duration.ofMillis(20));
+        when(listenerRegistry.getListenerContainer(KafkaConsumerService.LISTENER_ID)).thenReturn(container);
+
+        // Act
+        kafkaConsumerService.handleOrderCreated(List.of(record(0, event(7L, "20.00"))));
+
+        // Assert
+        verify(container).pause();
+        verify(container, timeout(1000)).resume();
+    }
+
+    private static OrderEvent event(long userId, String amount) {
+        return new OrderEvent(OrderEvent.Type.ORDER_CREATED, UUID.randomUUID(), userId, new BigDecimal(amount), Instant.now());
+    }
+
+    private static ConsumerRecord<String, OrderEvent> record(long offset, OrderEvent event) {
+        return new ConsumerRecord<>("order-created-topic", 0, offset, event == null ? null : event.orderId().toString(), event);
+    }
+}
@@ -1,22 +1,29 @@
 package com.chuwa.paymentservice.service;
 
+import com.chuwa.paymentservice.event.OrderEvent;
 import com.chuwa.paymentservice.model.Payment;
 import com.chuwa.paymentservice.model.PaymentStatus;
 import com.chuwa.paymentservice.repository.PaymentRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,106 +33,172 @@ class PaymentServiceImplTest {
     private PaymentRepository paymentRepository;
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, OrderEvent> kafkaTemplate;
 
     @InjectMocks
     private PaymentServiceImpl paymentService;
 
+    private static final String ORDER_ID = "3f2c7d1e-8a4b-4c6d-9e0f-1a2b3c4d5e6f";
+
     @Test
     void processPayment_whenPaymentDoesNotExist_shouldCreateNewPayment() {
         // Arrange
-        String orderId = "order-123";
+        String orderId = ORDER_ID;
         BigDecimal amount = new BigDecimal("99.99");
-        when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.empty());
-        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(paymentRepository.insertIfAbsent(any(Payment.class))).thenReturn(true);
 
         // Act
-        Payment payment = paymentService.processPayment(orderId, amount);
+        Payment payment = paymentService.processPayment(orderId, 7L, amount);
 
-        // Assert
+        // Assert: a single insert-if-absent statement, no lookup first
         assertThat(payment).isNotNull();
         assertThat(payment.getStatus()).isEqualTo(PaymentStatus.PENDING);
         assertThat(payment.getOrderId()).isEqualTo(orderId);
-        verify(paymentRepository, times(1)).save(any(Payment.class));
+        assertThat(payment.getUserId()).isEqualTo(7L);
+        verify(paymentRepository, times(1)).insertIfAbsent(payment);
+        verify(paymentRepository, never()).findByOrderId(anyString());
     }
 
     @Test
     void processPayment_whenPaymentExists_shouldReturnExistingPayment() {
         // Arrange (Idempotency Test)
-        String orderId = "order-123";
+        String orderId = ORDER_ID;
         BigDecimal amount = new BigDecimal("99.99");
         Payment existingPayment = new Payment();
         existingPayment.setOrderId(orderId);
+        when(paymentRepository.insertIfAbsent(any(Payment.class))).thenReturn(false);
         when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.of(existingPayment));
 
         // Act
-        Payment payment = paymentService.processPayment(orderId, amount);
+        Payment payment = paymentService.processPayment(orderId, 7L, amount);
 
         // Assert
         assertThat(payment).isEqualTo(existingPayment);
-        verify(paymentRepository, never()).save(any(Payment.class)); // Verify save is NOT called
+        verify(paymentRepository, never()).save(any(Payment.class));
+    }
+
+    @Test
+    void processPayments_shouldInsertTheBatchOnceAndReturnOnlyNewPayments() {
+        // Arrange: the first order already has a payment, the second arrives twice
+        UUID paidOrder = UUID.randomUUID();
+        UUID newOrder = UUID.randomUUID();
+        OrderEvent paid = new OrderEvent(OrderEvent.Type.ORDER_CREATED, paidOrder, 7L, new BigDecimal("10.00"), Instant.now());
+        OrderEvent fresh = new OrderEvent(OrderEvent.Type.ORDER_CREATED, newOrder, 0L, new BigDecimal("5.00"), Instant.now());
+        when(paymentRepository.insertAllIfAbsent(anyList())).thenAnswer(inv -> {
+            List<Payment> payments = inv.getArgument(0);
+            return payments.stream().filter(p -> p.getOrderId().equals(newOrder.toString())).toList();
+        });
+
+        // Act
+        List<Payment> created = paymentService.processPayments(List.of(paid, fresh, fresh));
+
+        // Assert: one insert for both distinct orders, no lookup first
+        assertThat(created).singleElement().satisfies(payment -> {
+            assertThat(payment.getOrderId()).isEqualTo(newOrder.toString());
+            assertThat(payment.getUserId()).isNull();
+            assertThat(payment.getStatus()).isEqualTo(PaymentStatus.PENDING);
+        });
+        verify(paymentRepository, times(1)).insertAllIfAbsent(argThat(payments -> payments.size() == 2));
+        verify(paymentRepository, never()).findByOrderId(anyString());
     }
 
     @Test
     void submitPayment_whenPaymentIsPending_shouldCompletePayment() {
         // Arrange
-        String orderId = "order-123";
-        Payment pendingPayment = new Payment();
-        pendingPayment.setOrderId(orderId);
-        pendingPayment.setStatus(PaymentStatus.PENDING);
+        String orderId = ORDER_ID;
+        Payment completedPayment = new Payment();
+        completedPayment.setOrderId(orderId);
+        completedPayment.setUserId(7L);
+        completedPayment.setAmount(new BigDecimal("99.99"));
+        completedPayment.setStatus(PaymentStatus.COMPLETED);
+        completedPayment.setUpdatedAt(Instant.now());
 
-        when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.of(pendingPayment));
-        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(paymentRepository.updateStatus(eq(orderId), eq(PaymentStatus.PENDING), eq(PaymentStatus.COMPLETED), any(Instant.class)))
+                .thenReturn(1);
+        when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.of(completedPayment));
 
         // Act
-        Payment completedPayment = paymentService.submitPayment(orderId);
-
-        // Assert
-        assertThat(completedPayment.getStatus()).isEqualTo(PaymentStatus.COMPLETED);
-        verify(paymentRepository, times(1)).save(pendingPayment);
-        verify(kafkaTemplate, times(1)).send(eq("payment-processed-topic"), anyString());
+        Payment payment = paymentService.submitPayment(orderId);
+
+        // Assert: the conditional update runs first, then the updated payment is read once
+        assertThat(payment.getStatus()).isEqualTo(PaymentStatus.COMPLETED);
+        assertThat(payment.getUpdatedAt()).isNotNull();
+        InOrder inOrder = inOrder(paymentRepository);
+        inOrder.verify(paymentRepository).updateStatus(eq(orderId), eq(PaymentStatus.PENDING), eq(PaymentStatus.COMPLETED), any(Instant.class));
+        inOrder.verify(paymentRepository, times(1)).findByOrderId(orderId);
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verify(kafkaTemplate, times(1)).send(eq("payment-processed-topic"), eq(orderId), argThat(event ->
+                event.type() == OrderEvent.Type.PAYMENT_PROCESSED
+                        && event.orderId().toString().equals(orderId)
+                        && event.userId() == 7L
+                        && event.amount().equals(new BigDecimal("99.99"))));
     }
 
     @Test
     void submitPayment_whenPaymentIsNotPending_shouldThrowException() {
         // Arrange
-        String orderId = "order-123";
+        String orderId = ORDER_ID;
         Payment completedPayment = new Payment();
         completedPayment.setOrderId(orderId);
         completedPayment.setStatus(PaymentStatus.COMPLETED);
         when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.of(completedPayment));
 
-        // Act & Assert
+        // Act & Assert: the update matched no row, and the read tells the wrong state from a missing payment
         assertThrows(IllegalStateException.class, () -> {
             paymentService.submitPayment(orderId);
         });
-        verify(paymentRepository, never()).save(any(Payment.class));
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(OrderEvent.class));
     }
 
     @Test
-    void reversePayment_whenPaymentIsCompleted_shouldSucceed() {
-        // Arrange
-        String orderId = "order-123";
+    void submitPayment_whenAConcurrentSubmitWins_shouldThrowException() {
+        // Arrange: another submit completed the payment first, so this update matches no row
         Payment completedPayment = new Payment();
-        completedPayment.setOrderId(orderId);
+        completedPayment.setOrderId(ORDER_ID);
         completedPayment.setStatus(PaymentStatus.COMPLETED);
+        when(paymentRepository.findByOrderId(ORDER_ID)).thenReturn(Optional.of(completedPayment));
+        when(paymentRepository.updateStatus(eq(ORDER_ID), eq(PaymentStatus.PENDING), eq(PaymentStatus.COMPLETED), any(Instant.class)))
+                .thenReturn(0);
 
-        when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.of(completedPayment));
-        when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> inv.getArgument(0));
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> paymentService.submitPayment(ORDER_ID));
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(OrderEvent.class));
+    }
+
+    @Test
+    void submitPayment_whenPaymentIsMissing_shouldThrowIllegalArgument() {
+        // Arrange
+        when(paymentRepository.findByOrderId(ORDER_ID)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> paymentService.submitPayment(ORDER_ID));
+    }
+
+    @Test
+    void reversePayment_whenPaymentIsCompleted_shouldSucceed() {
+        // Arrange
+        String orderId = ORDER_ID;
+        Payment refundedPayment = new Payment();
+        refundedPayment.setOrderId(orderId);
+        refundedPayment.setAmount(new BigDecimal("99.99"));
+        refundedPayment.setStatus(PaymentStatus.REFUNDED);
+
+        when(paymentRepository.updateStatus(eq(orderId), eq(PaymentStatus.COMPLETED), eq(PaymentStatus.REFUNDED), any(Instant.class)))
+                .thenReturn(1);
+        when(paymentRepository.findByOrderId(orderId)).thenReturn(Optional.of(refundedPayment));
 
         // Act
-        Payment refundedPayment = paymentService.reversePayment(orderId);
+        Payment payment = paymentService.reversePayment(orderId);
 
         // Assert
-        assertThat(refundedPayment.getStatus()).isEqualTo(PaymentStatus.REFUNDED);
-        verify(paymentRepository, times(1)).save(completedPayment);
-        verify(kafkaTemplate, times(1)).send(eq("payment-refunded-topic"), anyString());
+        assertThat(payment.getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+        verify(kafkaTemplate, times(1)).send(eq("payment-refunded-topic"), eq(orderId), any(OrderEvent.class));
     }
 
     @Test
     void reversePayment_whenPaymentIsPending_shouldThrowException() {
         // Arrange
-        String orderId = "order-123";
+        String orderId = ORDER_ID;
         Payment pendingPayment = new Payment();
         pendingPayment.setOrderId(orderId);
         pendingPayment.setStatus(PaymentStatus.PENDING);
@@ -136,8 +209,7 @@ class PaymentServiceImplTest {
             paymentService.reversePayment(orderId);
         });
 
-        // Verify that no save or send operation was performed
-        verify(paymentRepository, never()).save(any(Payment.class));
-        verify(kafkaTemplate, never()).send(anyString(), anyString());
+        // Verify that no send operation was performed
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(OrderEvent.class));
     }
-}
\ No newline at end of file
+}